@@ -4,6 +4,8 @@ plugins {
     id("com.github.johnrengelman.shadow") version "7.0.0"
     // Jacoco
     id("jacoco")
+    // Benchmarks con JMH (src/jmh/java)
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -43,6 +45,14 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
+    // Pruebas de carga opcionales: -DloadTest=true -DloadTest.connections=20000
+    System.getProperties().filterKeys { it.toString().startsWith("loadTest") }.forEach { (key, value) ->
+        systemProperty(key.toString(), value)
+    }
+}
+// JMH: ./gradlew jmh
+jmh {
+    profilers.add("gc")
 }
 // Jacoco
 tasks.jacocoTestReport {
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import common.Response;
+import common.codec.Codecs;
+import model.Funko;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el formato JSON con el binario al codificar y decodificar una respuesta con Funkos.
+ * Al preparar cada caso muestra los bytes por Funko de cada formato.
+ * <p>
+ * Se ejecuta con: ./gradlew jmh (añadir -prof gc en jmh.profilers para ver la memoria reservada por operación)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FunkoCodecBenchmark {
+    @Param({"1", "100"})
+    int funkos;
+
+    private Response<List<Funko>> response;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        var content = new ArrayList<Funko>();
+        for (long i = 0; i < funkos; i++) {
+            content.add(Funko.builder().id(i).cod(UUID.randomUUID()).nombre("Funko " + i).modelo("MARVEL").precio(12.5)
+                    .fecha_lanzamiento(LocalDate.parse("2021-01-01")).build());
+        }
+        response = new Response<>(Response.Status.OK, content, "2023-01-01T00:00:00", 1L);
+        json = encodeJson();
+        binary = encodeBinary();
+        System.out.printf("%n%d Funkos: json %.1f bytes/Funko, binary %.1f bytes/Funko%n",
+                funkos, (double) json.length / funkos, (double) binary.length / funkos);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return Codecs.JSON.encode(response);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return Codecs.BINARY.encode(response);
+    }
+
+    @Benchmark
+    public Response decodeJson() {
+        return Codecs.JSON.decodeResponse(ByteBuffer.wrap(json));
+    }
+
+    @Benchmark
+    public Response decodeBinary() {
+        return Codecs.BINARY.decodeResponse(ByteBuffer.wrap(binary));
+    }
+}
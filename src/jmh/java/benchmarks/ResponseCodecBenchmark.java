@@ -0,0 +1,94 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import common.Response;
+import model.Funko;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.GsonFactory;
+import utils.LocalDateAdapter;
+import utils.LocalDateTimeAdapter;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el coste por petición de una respuesta con una lista de Funkos codificada dos veces
+ * (lista a cadena JSON y cadena dentro de la respuesta) frente a la respuesta tipada en una pasada.
+ * <p>
+ * Se ejecuta con: ./gradlew jmh (añadir -prof gc en jmh.profilers para ver la memoria reservada por operación)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCodecBenchmark {
+    private static final Type FUNKO_LIST = new TypeToken<List<Funko>>() {
+    }.getType();
+
+    @Param({"1", "100"})
+    int funkos;
+
+    private Gson reflectiveGson;
+    private Gson typedGson;
+    private List<Funko> content;
+    private byte[] doubleEncodedJson;
+    private byte[] typedJson;
+
+    @Setup
+    public void setup() {
+        reflectiveGson = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
+        typedGson = GsonFactory.create();
+        content = new ArrayList<>();
+        for (long i = 0; i < funkos; i++) {
+            content.add(Funko.builder().id(i).cod(UUID.randomUUID()).nombre("Funko " + i).modelo("MARVEL").precio(12.5)
+                    .fecha_lanzamiento(LocalDate.parse("2021-01-01")).build());
+        }
+        doubleEncodedJson = encodeDoubleEncoded();
+        typedJson = encodeTyped();
+    }
+
+    @Benchmark
+    public byte[] encodeDoubleEncoded() {
+        var json = reflectiveGson.toJson(content);
+        return reflectiveGson.toJson(new Response<>(Response.Status.OK, json, "2023-01-01T00:00:00")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeTyped() {
+        return typedGson.toJson(new Response<>(Response.Status.OK, content, "2023-01-01T00:00:00")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Funko> decodeDoubleEncoded() {
+        Response response = reflectiveGson.fromJson(new String(doubleEncodedJson, StandardCharsets.UTF_8), Response.class);
+        return reflectiveGson.fromJson((String) response.content(), FUNKO_LIST);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Funko> decodeTyped() {
+        Response response = typedGson.fromJson(new String(typedJson, StandardCharsets.UTF_8), Response.class);
+        return (List<Funko>) response.content();
+    }
+}
@@ -1,25 +1,38 @@
 package client;
 
 import client.exceptions.ClientException;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import common.Login;
+import common.PageRequest;
 import common.Request;
 import common.Response;
+import common.codec.Codecs;
+import common.codec.Compression;
+import common.codec.MessageCodec;
+import common.framing.Framing;
+import common.framing.MessageReader;
+import common.framing.MessageWriter;
 import model.Funko;
+import model.FunkoPage;
+import model.Projection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import utils.LocalDateAdapter;
-import utils.LocalDateTimeAdapter;
+import utils.PropertiesReader;
+import utils.TlsSessions;
 
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -34,17 +47,23 @@ public class Client {
     private static final String HOST = "localhost";
     private static final int PORT = 3000;
     private static final Logger logger = LoggerFactory.getLogger(Client.class);
-    private final Gson gson;
+    private static SSLContext sslContext;
+    private MessageCodec codec;
+    private String requestedCodec;
+    private Compression compression;
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private MessageWriter out;
+    private MessageReader in;
     private String token;
+    private long lastRequestId;
+    // Plazo en milisegundos que se pide al servidor para cada página, null sin plazo
+    private Long requestTimeout;
 
     /**
      * Constructor
      */
     public Client() {
-        this.gson = new Gson();
+        this.codec = Codecs.JSON;
     }
 
     /**
@@ -54,6 +73,7 @@ public class Client {
      */
     public static void main(String[] args) {
         Client client = new Client();
+        Codecs.warmUp();
         try {
             client.start();
         } catch (IOException e) {
@@ -83,12 +103,21 @@ public class Client {
             openConnection();
             token = sendRequestLogin();
             findAllFunkos(token);
+            findAllFunkosPaged(token, 25);
             findFunkoById(token, "2");
+            findFunkosById(token, "1", "2", "3");
+            findFunkosByIdBatch(token, "1", "2", "3");
             findFunkoByModel(token, "ANIME");
+            findFunkoByModel(token, "ANIME", "id", "nombre", "precio");
+            findFunkoByModelIfModified(token, "ANIME");
             findFunkoByYear(token, "2021");
             saveFunko(token, Funko.builder().cod(UUID.randomUUID()).nombre("Funko").modelo("MARVEL").precio(12.5).fecha_lanzamiento(LocalDate.now()).build());
+            saveFunkos(token, List.of(
+                    Funko.builder().nombre("Funko Iron Man").modelo("MARVEL").precio(15.0).fecha_lanzamiento(LocalDate.now()).build(),
+                    Funko.builder().nombre("Funko Goku").modelo("ANIME").precio(18.5).fecha_lanzamiento(LocalDate.now()).build()));
             updateFunko(token, funko);
             deleteFunko(token, "1");
+            watchFunkos(token, "MARVEL");
             closeConnection();
             System.exit(0);
         } catch (ClientException ex) {
@@ -113,8 +142,8 @@ public class Client {
     private void deleteFunko(String token, String number) throws ClientException, IOException {
         Request<String> request = new Request<>(DELETE_FUNKO, number, token, LocalDateTime.now().toString());
         logger.debug("Petición deleteFunko enviada: " + request);
-        out.println(gson.toJson(request));
-        Response response = gson.fromJson(in.readLine(), Response.class);
+        send(request);
+        Response response = receive();
         logger.debug("Respuesta deleteFunko recibida: " + response);
         responseFunko(response);
     }
@@ -134,6 +163,7 @@ public class Client {
             case ERROR -> {
                 System.err.println("🔴 Error: Tipo de respuesta no esperado: " + response.content());
             }
+            case BUSY -> System.err.println("🟠 Servidor ocupado: " + response.content());
             default -> throw new ClientException("Error: Tipo de respuesta no esperado: " + response.content());
         }
     }
@@ -145,14 +175,11 @@ public class Client {
      * @param funko Funko que se va a actualizar
      */
     private void updateFunko(String token, Funko funko) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
-        var funkoJson = gson.toJson(funko);
-        Request request = new Request<>(UPDATE_FUNKO, funkoJson, token, LocalDateTime.now().toString());
+        Request<Funko> request = new Request<>(UPDATE_FUNKO, funko, token, LocalDateTime.now().toString());
         logger.debug("Petición updateFunko enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta updateFunko recibida: " + response);
             responseFunko(response);
         } catch (IOException | ClientException e) {
@@ -166,14 +193,11 @@ public class Client {
      * @param funko Funko que se va a guardar
      */
     private void saveFunko(String token, Funko funko) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
-        var funkoJson = gson.toJson(funko);
-        Request request = new Request<>(SAVE_FUNKO, funkoJson, token, LocalDateTime.now().toString());
+        Request<Funko> request = new Request<>(SAVE_FUNKO, funko, token, LocalDateTime.now().toString());
         logger.debug("Petición saveFunko enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta saveFunko recibida: " + response);
             responseFunko(response);
         } catch (IOException | ClientException e) {
@@ -181,6 +205,71 @@ public class Client {
         }
     }
 
+    /**
+     * Método para suscribirse a los cambios de los funkos de un modelo. Después guarda un funko de
+     * ese modelo y espera a la vez su respuesta y el cambio que el servidor envía a la suscripción,
+     * que pueden llegar en cualquier orden. La suscripción dura hasta que se cierra la conexión.
+     *
+     * @param token Token del usuario
+     * @param model Modelo de los funkos
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void watchFunkos(String token, String model) throws ClientException, IOException {
+        long watchId = ++lastRequestId;
+        Request<String> request = new Request<>(WATCH_FUNKOS, model, token, LocalDateTime.now().toString()).withId(watchId);
+        logger.debug("Petición watchFunkos enviada: " + request);
+        send(request);
+        Response response = receive();
+        logger.debug("Respuesta watchFunkos recibida: " + response);
+        if (response == null || response.status() != Response.Status.OK) {
+            responseFunko(response);
+            return;
+        }
+        System.out.println("🟢 " + response.content());
+        Funko funko = Funko.builder().cod(UUID.randomUUID()).nombre("Funko Spider-Man").modelo(model).precio(14.0).fecha_lanzamiento(LocalDate.now()).build();
+        send(new Request<>(SAVE_FUNKO, funko, token, LocalDateTime.now().toString()).withId(++lastRequestId));
+        for (int i = 0; i < 2; i++) {
+            response = receive();
+            logger.debug("Respuesta recibida con la suscripción abierta: " + response);
+            if (response == null) {
+                throw new ClientException("El servidor ha cerrado la conexión");
+            }
+            if (response.status() == Response.Status.EVENT && Long.valueOf(watchId).equals(response.id())) {
+                System.out.println("🟢 Cambio recibido: " + response.content());
+            } else {
+                responseFunko(response);
+            }
+        }
+    }
+
+    /**
+     * Método para guardar varios funkos con una sola petición SAVE_FUNKOS: el servidor los inserta
+     * con sentencias por lotes y devuelve el resultado de cada uno en orden
+     *
+     * @param token  Token del usuario
+     * @param funkos Funkos que se van a guardar
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void saveFunkos(String token, List<Funko> funkos) throws ClientException, IOException {
+        Request<List<Funko>> request = new Request<>(SAVE_FUNKOS, funkos, token, LocalDateTime.now().toString()).withId(++lastRequestId);
+        logger.debug("Petición saveFunkos enviada: " + request);
+        send(request);
+        Response response = receive();
+        logger.debug("Respuesta saveFunkos recibida: " + response);
+        if (response == null) {
+            throw new ClientException("El servidor ha cerrado la conexión");
+        }
+        if (response.status() != Response.Status.OK) {
+            responseFunko(response);
+            return;
+        }
+        for (Object item : (List<?>) response.content()) {
+            responseFunko((Response) item);
+        }
+    }
+
     /**
      * Método para buscar un funko por año
      *
@@ -190,9 +279,9 @@ public class Client {
     private void findFunkoByYear(String token, String year) {
         Request<String> request = new Request<>(OBTAIN_FUNKO_YEAR, year, token, LocalDateTime.now().toString());
         logger.debug("Petición findFunkoByYear enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta findFunkoByYear recibida: " + response);
             responseFunko(response);
         } catch (IOException | ClientException e) {
@@ -209,9 +298,9 @@ public class Client {
     private void findFunkoByModel(String token, String model) {
         Request<String> request = new Request<>(OBTAIN_FUNKO_MODEL, model, token, LocalDateTime.now().toString());
         logger.debug("Petición findFunkoByModel enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta findFunkoByModel recibida: " + response);
             responseFunko(response);
         } catch (IOException | ClientException e) {
@@ -219,6 +308,55 @@ public class Client {
         }
     }
 
+    /**
+     * Método para buscar los funkos de un modelo trayendo solo algunos de sus campos
+     *
+     * @param token  Token del usuario
+     * @param model  Modelo del funko
+     * @param fields Campos que se piden de cada funko
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void findFunkoByModel(String token, String model, String... fields) throws ClientException, IOException {
+        Request<String> request = new Request<>(OBTAIN_FUNKO_MODEL, model, token, LocalDateTime.now().toString()).withId(++lastRequestId).withFields(List.of(fields));
+        logger.debug("Petición findFunkoByModel con campos enviada: " + request);
+        send(request);
+        Response response = receive();
+        logger.debug("Respuesta findFunkoByModel con campos recibida: " + response);
+        if (response != null && response.content() instanceof Projection projection) {
+            System.out.println("🟢 Funkos con los campos " + projection.fields() + ": " + projection.content());
+        } else {
+            responseFunko(response);
+        }
+    }
+
+    /**
+     * Método para volver a leer los funkos de un modelo solo si han cambiado: la segunda petición
+     * lleva la etiqueta de la primera respuesta en ifNoneMatch y, si el resultado es el mismo, el
+     * servidor responde NOT_MODIFIED sin enviar los funkos
+     *
+     * @param token Token del usuario
+     * @param model Modelo de los funkos
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void findFunkoByModelIfModified(String token, String model) throws ClientException, IOException {
+        String etag = null;
+        for (int i = 0; i < 2; i++) {
+            Request<String> request = new Request<>(OBTAIN_FUNKO_MODEL, model, token, LocalDateTime.now().toString()).withId(++lastRequestId).withIfNoneMatch(etag);
+            logger.debug("Petición findFunkoByModel condicional enviada: " + request);
+            send(request);
+            Response response = receive();
+            logger.debug("Respuesta findFunkoByModel condicional recibida: " + response);
+            if (response != null && response.status() == Response.Status.NOT_MODIFIED) {
+                System.out.println("🟢 Los funkos de " + model + " no han cambiado (" + response.etag() + ")");
+            } else {
+                responseFunko(response);
+                etag = response == null ? null : response.etag();
+            }
+        }
+    }
+
     /**
      * Método para buscar un funko por id
      *
@@ -228,9 +366,9 @@ public class Client {
     private void findFunkoById(String token, String id) {
         Request<String> request = new Request<>(OBTAIN_FUNKO_COD, id, token, LocalDateTime.now().toString());
         logger.debug("Petición findFunkoById enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta findFunkoById recibida: " + response);
             responseFunko(response);
         } catch (IOException | ClientException e) {
@@ -239,23 +377,142 @@ public class Client {
     }
 
     /**
-     * Método para buscar todos los funkos
+     * Método para buscar varios funkos por id en una sola ida y vuelta: se envían todas las
+     * peticiones seguidas y las respuestas, que llegan en orden de finalización, se emparejan por su id
+     *
+     * @param token Token del usuario
+     * @param ids   Ids de los funkos
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void findFunkosById(String token, String... ids) throws ClientException, IOException {
+        Map<Long, String> pending = new HashMap<>();
+        for (String id : ids) {
+            Request<String> request = new Request<>(OBTAIN_FUNKO_COD, id, token, LocalDateTime.now().toString()).withId(++lastRequestId);
+            pending.put(request.id(), id);
+            logger.debug("Petición findFunkosById enviada: " + request);
+            send(request);
+        }
+        while (!pending.isEmpty()) {
+            Response response = receive();
+            if (response == null) {
+                throw new ClientException("El servidor ha cerrado la conexión");
+            }
+            var id = pending.remove(response.id());
+            logger.debug("Respuesta findFunkosById " + id + " recibida: " + response);
+            responseFunko(response);
+        }
+    }
+
+    /**
+     * Método para buscar varios funkos por id con una sola petición BATCH: el servidor verifica el
+     * token una vez, ejecuta las búsquedas a la vez y devuelve la respuesta de cada una en orden
+     *
+     * @param token Token del usuario
+     * @param ids   Ids de los funkos
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void findFunkosByIdBatch(String token, String... ids) throws ClientException, IOException {
+        List<Request<String>> items = new ArrayList<>();
+        for (String id : ids) {
+            items.add(new Request<>(OBTAIN_FUNKO_COD, id, null, null).withId(++lastRequestId));
+        }
+        Request<List<Request<String>>> request = new Request<>(BATCH, items, token, LocalDateTime.now().toString()).withId(++lastRequestId);
+        logger.debug("Petición findFunkosByIdBatch enviada: " + request);
+        send(request);
+        Response response = receive();
+        logger.debug("Respuesta findFunkosByIdBatch recibida: " + response);
+        if (response == null) {
+            throw new ClientException("El servidor ha cerrado la conexión");
+        }
+        if (response.status() != Response.Status.OK) {
+            responseFunko(response);
+            return;
+        }
+        for (Object item : (List<?>) response.content()) {
+            responseFunko((Response) item);
+        }
+    }
+
+    /**
+     * Método para buscar todos los funkos. Se piden en streaming: el servidor los envía por trozos
+     * según los lee y termina con una respuesta END con el total.
      *
      * @param token Token del usuario
      */
     private void findAllFunkos(String token) {
-        Request<String> request = new Request<>(FIND_ALL_FUNKOS, null, token, LocalDateTime.now().toString());
+        Request<String> request = new Request<String>(FIND_ALL_FUNKOS, null, token, LocalDateTime.now().toString()).withId(++lastRequestId).withStream(true);
         logger.debug("Petición enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
-            logger.debug("Respuesta recibida: " + response);
-            responseFunko(response);
+            send(request);
+            receiveStream();
         } catch (IOException | ClientException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Método para buscar todos los funkos por páginas. Cada página trae el cursor de la siguiente,
+     * que se devuelve tal cual hasta que el servidor responde sin cursor. Cada página pide el plazo
+     * requestTimeout, para que el servidor no siga leyendo una página que ya no se espera.
+     *
+     * @param token    Token del usuario
+     * @param pageSize Número de funkos por página
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void findAllFunkosPaged(String token, int pageSize) throws ClientException, IOException {
+        String cursor = null;
+        long total = 0;
+        do {
+            Request<PageRequest> request = new Request<>(FIND_ALL_FUNKOS, new PageRequest(pageSize, cursor), token, LocalDateTime.now().toString(), ++lastRequestId, null, null, null, requestTimeout);
+            logger.debug("Petición findAllFunkosPaged enviada: " + request);
+            send(request);
+            Response response = receive();
+            logger.debug("Respuesta findAllFunkosPaged recibida: " + response);
+            if (response == null) {
+                throw new ClientException("El servidor ha cerrado la conexión");
+            }
+            if (response.status() != Response.Status.OK) {
+                responseFunko(response);
+                return;
+            }
+            var page = (FunkoPage) response.content();
+            System.out.println("🟢 Página de funkos: " + page.funkos());
+            total += page.funkos().size();
+            cursor = page.next();
+        } while (cursor != null);
+        System.out.println("🟢 Total de funkos por páginas: " + total);
+    }
+
+    /**
+     * Método para recibir una lista en streaming hasta su respuesta END
+     *
+     * @throws ClientException Excepción del cliente
+     * @throws IOException     Excepción de entrada/salida
+     */
+    private void receiveStream() throws ClientException, IOException {
+        while (true) {
+            Response response = receive();
+            if (response == null) {
+                throw new ClientException("El servidor ha cerrado la conexión");
+            }
+            logger.debug("Respuesta recibida: " + response);
+            switch (response.status()) {
+                case CHUNK -> System.out.println("🟢 Funkos: " + response.content());
+                case END -> {
+                    System.out.println("🟢 Total de funkos: " + ((Number) response.content()).longValue());
+                    return;
+                }
+                default -> {
+                    responseFunko(response);
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * Método para enviar la petición de login
      *
@@ -263,11 +520,11 @@ public class Client {
      */
     private String sendRequestLogin() {
         String myToken = null;
-        Request<Login> request = new Request<>(LOGIN, new Login("pepe", "pepe1234"), null, LocalDateTime.now().toString());
+        Request<Login> request = new Request<>(LOGIN, new Login("pepe", "pepe1234", requestedCodec, compression != null ? Compression.DEFLATE : null), null, LocalDateTime.now().toString());
         System.out.println("Petición enviada: " + request);
-        out.println(gson.toJson(request));
         try {
-            Response response = gson.fromJson(in.readLine(), Response.class);
+            send(request);
+            Response response = receive();
             logger.debug("Respuesta recibida: " + response);
             switch (response.status()) {
                 case TOKEN -> {
@@ -283,6 +540,50 @@ public class Client {
         return myToken;
     }
 
+    /**
+     * Método para enviar una petición al servidor
+     *
+     * @param request Petición
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void send(Request request) throws IOException {
+        out.write(codec.encode(request));
+    }
+
+    /**
+     * Método para recibir la siguiente respuesta del servidor. Los latidos que envía el servidor
+     * cuando la conexión está en silencio no responden a ninguna petición y se descartan. El
+     * servidor cambia de formato a partir de la respuesta TOKEN, así que el cliente usa desde
+     * entonces el formato en el que ha llegado esa respuesta. Las respuestas comprimidas se
+     * descomprimen antes de decodificarlas.
+     *
+     * @return Respuesta o null si el servidor ha cerrado la conexión
+     * @throws IOException Excepción de entrada/salida
+     */
+    private Response receive() throws IOException {
+        while (true) {
+            ByteBuffer message = in.read();
+            if (message == null) {
+                return null;
+            }
+            if (Compression.isCompressed(message)) {
+                if (compression == null) {
+                    throw new IOException("Respuesta comprimida sin haberla pedido");
+                }
+                message = compression.decompress(message);
+            }
+            MessageCodec received = Codecs.detect(message);
+            Response response = received.decodeResponse(message);
+            if (response.status() == Response.Status.TOKEN) {
+                codec = received;
+            }
+            if (response.status() != Response.Status.HEARTBEAT || response.id() != null) {
+                return response;
+            }
+            logger.debug("Latido recibido del servidor");
+        }
+    }
+
     /**
      * Método para cerrar la conexión
      *
@@ -291,9 +592,32 @@ public class Client {
     private void closeConnection() throws IOException {
         logger.debug("Cerrando la conexión con el servidor: " + HOST + ":" + PORT);
         System.out.println("🔵 Cerrando Cliente");
-        if (in != null) in.close();
-        if (out != null) out.close();
         if (socket != null) socket.close();
+        if (compression != null) compression.close();
+    }
+
+    /**
+     * Método que devuelve el SSLContext del cliente. Se crea una vez y se reutiliza en todas las
+     * conexiones de la JVM, porque la caché de sesiones es del SSLContext: así una nueva conexión
+     * al mismo servidor reanuda la sesión TLS anterior en lugar de repetir la negociación completa.
+     *
+     * @param properties Propiedades del cliente
+     * @return SSLContext del cliente
+     * @throws IOException si no se puede crear el SSLContext
+     */
+    private static synchronized SSLContext sslContext(PropertiesReader properties) throws IOException {
+        if (sslContext == null) {
+            TlsSessions.enableTickets(Boolean.parseBoolean(properties.getProperty("tlsSessionTickets", "true")));
+            try {
+                sslContext = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException("No se puede crear el contexto TLS: " + e.getMessage());
+            }
+            TlsSessions.configure(sslContext.getClientSessionContext(),
+                    Integer.parseInt(properties.getProperty("tlsSessionCacheSize", "20480")),
+                    Integer.parseInt(properties.getProperty("tlsSessionTimeout", "3600")));
+        }
+        return sslContext;
     }
 
     /**
@@ -309,18 +633,39 @@ public class Client {
         System.setProperty("javax.net.ssl.trustStore", myConfig.get("keyFile")); // llavero cliente
         System.setProperty("javax.net.ssl.trustStorePassword", myConfig.get("keyPassword")); // clave
 
-        SSLSocketFactory clientFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-        SSLSocket socket = (SSLSocket) clientFactory.createSocket(HOST, PORT);
+        PropertiesReader properties = new PropertiesReader("client.properties");
+        SSLSocketFactory clientFactory = sslContext(properties).getSocketFactory();
+        socket = clientFactory.createSocket(HOST, PORT);
+        var sslSocket = (SSLSocket) socket;
 
         // Opcionalmente podemos forzar el tipo de protocolo -> Poner el mismo que el cliente
-        logger.debug("Protocolos soportados: " + Arrays.toString(socket.getSupportedProtocols()));
-        socket.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
-        socket.setEnabledProtocols(new String[]{"TLSv1.3"});
+        logger.debug("Protocolos soportados: " + Arrays.toString(sslSocket.getSupportedProtocols()));
+        sslSocket.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
+        sslSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
 
         logger.debug("Abriendo conexión con el servidor: " + HOST + ":" + PORT);
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        sslSocket.startHandshake();
+        logger.debug("Sesión TLS " + (TlsSessions.isResumed(sslSocket.getSession(), startMillis) ? "reanudada" : "nueva") + " en " + (System.nanoTime() - start) / 1_000_000 + " ms");
 
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        var mode = Framing.Mode.valueOf(properties.getProperty("framing", "line").toUpperCase());
+        int maxFrameSize = Integer.parseInt(properties.getProperty("maxFrameSize", String.valueOf(Framing.DEFAULT_MAX_FRAME_SIZE)));
+        var input = new BufferedInputStream(socket.getInputStream());
+        var output = new BufferedOutputStream(socket.getOutputStream());
+        if (mode == Framing.Mode.FRAME) {
+            Framing.request(input, output);
+        }
+        out = Framing.writer(mode, output);
+        in = Framing.reader(mode, input, maxFrameSize);
+        // El formato binario solo se pide con tramas: sus bytes pueden contener saltos de línea
+        String codecName = properties.getProperty("codec", "json");
+        requestedCodec = mode == Framing.Mode.FRAME && !Codecs.JSON.name().equalsIgnoreCase(codecName) ? codecName : null;
+        if (mode == Framing.Mode.FRAME && Compression.DEFLATE.equalsIgnoreCase(properties.getProperty("compression", "none"))) {
+            compression = new Compression(maxFrameSize);
+        }
+        long timeout = Long.parseLong(properties.getProperty("requestTimeout", "0"));
+        requestTimeout = timeout > 0 ? timeout : null;
         logger.debug("Conexión establecida con el servidor: " + HOST + ":" + PORT);
     }
 }
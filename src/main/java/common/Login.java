@@ -3,9 +3,20 @@ package common;
 /**
  * Clase Longin que contiene los atributos username y password
  *
- * @param username usuario del login
- * @param password contraseña del login
+ * @param username    usuario del login
+ * @param password    contraseña del login
+ * @param codec       formato que pide el cliente para el resto de la conexión, null para JSON
+ * @param compression compresión que admite el cliente en las respuestas, null para ninguna
  */
-public record Login(String username, String password) {
+public record Login(String username, String password, String codec, String compression) {
 
+    /**
+     * Constructor de un login sin formato ni compresión, que mantiene JSON
+     *
+     * @param username usuario del login
+     * @param password contraseña del login
+     */
+    public Login(String username, String password) {
+        this(username, password, null, null);
+    }
 }
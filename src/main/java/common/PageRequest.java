@@ -0,0 +1,10 @@
+package common;
+
+/**
+ * Clase PageRequest con la página que pide el cliente en FIND_ALL_FUNKOS
+ *
+ * @param size   Número máximo de Funkos de la página
+ * @param cursor Cursor devuelto con la página anterior, null para la primera
+ */
+public record PageRequest(int size, String cursor) {
+}
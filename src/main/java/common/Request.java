@@ -1,16 +1,97 @@
 package common;
 
+import java.util.List;
+
 /**
- * Clase Request que contiene los atributos type, content, token y createdAt
+ * Clase Request que contiene los atributos type, content, token, createdAt, id, stream, fields, ifNoneMatch y timeout
  *
  * @param type      Accion que puede realizar el cliente
  * @param content   Contenido que se envia al servidor
  * @param token     Token de autenticacion
  * @param createdAt Fecha de creacion
+ * @param id        Identificador opcional de la peticion, el servidor lo devuelve en la respuesta
+ * @param stream    Si es true, las consultas de listas se responden por trozos (CHUNK) terminados en END
+ * @param fields    Campos de cada Funko que se quieren en la respuesta de una consulta, null para todos
+ * @param ifNoneMatch Etiqueta de la ultima respuesta que tiene el cliente; si no ha cambiado se responde NOT_MODIFIED
+ * @param timeout   Milisegundos que el cliente espera la respuesta; pasado ese plazo el servidor abandona la peticion
  * @param <T>       Tipo de contenido
  */
-public record Request<T>(Type type, T content, String token, String createdAt) {
+public record Request<T>(Type type, T content, String token, String createdAt, Long id, Boolean stream, List<String> fields, String ifNoneMatch, Long timeout) {
+    /**
+     * Constructor de una peticion con solo los campos basicos. El resto se anaden con los metodos with.
+     */
+    public Request(Type type, T content, String token, String createdAt) {
+        this(type, content, token, createdAt, null, null, null, null, null);
+    }
+
+    /**
+     * Metodo que devuelve la misma peticion con un identificador
+     *
+     * @param id Identificador de la peticion
+     * @return Peticion con el identificador
+     */
+    public Request<T> withId(Long id) {
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Metodo que devuelve la misma peticion pidiendo, o no, la respuesta por trozos
+     *
+     * @param stream true para recibir las listas por trozos
+     * @return Peticion con el modo de respuesta
+     */
+    public Request<T> withStream(Boolean stream) {
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Metodo que devuelve la misma peticion con los campos de cada Funko que se quieren
+     *
+     * @param fields Campos de cada Funko, null para todos
+     * @return Peticion con los campos
+     */
+    public Request<T> withFields(List<String> fields) {
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Metodo que devuelve la misma peticion con la etiqueta de la ultima respuesta que tiene el cliente
+     *
+     * @param ifNoneMatch Etiqueta de la ultima respuesta
+     * @return Peticion con la etiqueta
+     */
+    public Request<T> withIfNoneMatch(String ifNoneMatch) {
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Metodo que devuelve la misma peticion con un plazo
+     *
+     * @param timeout Milisegundos que el cliente espera la respuesta
+     * @return Peticion con el plazo
+     */
+    public Request<T> withTimeout(Long timeout) {
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Metodo que indica si el cliente quiere la respuesta por trozos
+     *
+     * @return true si se pide una respuesta en streaming
+     */
+    public boolean isStream() {
+        return Boolean.TRUE.equals(stream);
+    }
+
+    /**
+     * Tipos de peticion. BATCH lleva como contenido una lista de peticiones que se autentican con
+     * el token del lote y se responden juntas en una lista de respuestas. SAVE_FUNKOS y UPDATE_FUNKOS
+     * llevan una lista de Funkos y DELETE_FUNKOS una lista de ids; se ejecutan con sentencias por
+     * lotes y se responden con el resultado de cada fila. WATCH_FUNKOS suscribe la conexion a los
+     * cambios de los Funkos, de todos o de un modelo si lo lleva como contenido.
+     */
     public enum Type {
-        LOGIN, FIND_ALL_FUNKOS, OBTAIN_FUNKO_COD, OBTAIN_FUNKO_MODEL, OBTAIN_FUNKO_YEAR, SAVE_FUNKO, UPDATE_FUNKO, DELETE_FUNKO, SALIR
+        LOGIN, FIND_ALL_FUNKOS, OBTAIN_FUNKO_COD, OBTAIN_FUNKO_MODEL, OBTAIN_FUNKO_YEAR, SAVE_FUNKO, UPDATE_FUNKO, DELETE_FUNKO, SALIR, METRICS, PING, BATCH,
+        SAVE_FUNKOS, UPDATE_FUNKOS, DELETE_FUNKOS, WATCH_FUNKOS, RELOAD_USERS, REVOKE_TOKEN
     }
 }
@@ -1,15 +1,59 @@
 package common;
 
 /**
- * Clase Response que contiene los atributos status, content y createdAt
+ * Clase Response que contiene los atributos status, content, createdAt, id y etag
  *
  * @param status    Estado de la respuesta
  * @param content   Contenido de la respuesta
  * @param createdAt Fecha de creacion
+ * @param id        Identificador de la peticion a la que responde, si la peticion lo tenia
+ * @param etag      Etiqueta del contenido de una consulta, que el cliente puede enviar en ifNoneMatch
  * @param <T>       Tipo de contenido
  */
-public record Response<T>(Status status, T content, String createdAt) {
+public record Response<T>(Status status, T content, String createdAt, Long id, String etag) {
+    /**
+     * Constructor de una respuesta sin identificador
+     */
+    public Response(Status status, T content, String createdAt) {
+        this(status, content, createdAt, null);
+    }
+
+    /**
+     * Constructor de una respuesta sin etiqueta
+     */
+    public Response(Status status, T content, String createdAt, Long id) {
+        this(status, content, createdAt, id, null);
+    }
+
+    /**
+     * Metodo que devuelve la misma respuesta asociada a una peticion
+     *
+     * @param id Identificador de la peticion
+     * @return Respuesta con el identificador
+     */
+    public Response<T> withId(Long id) {
+        return new Response<>(status, content, createdAt, id, etag);
+    }
+
+    /**
+     * Metodo que devuelve la misma respuesta con la etiqueta de su contenido
+     *
+     * @param etag Etiqueta del contenido
+     * @return Respuesta con la etiqueta
+     */
+    public Response<T> withETag(String etag) {
+        return new Response<>(status, content, createdAt, id, etag);
+    }
+
+    /**
+     * Estados de la respuesta. CHUNK lleva un trozo de una lista en streaming y END la cierra
+     * con el numero total de elementos enviados. BUSY indica que el servidor ha rechazado la
+     * peticion por exceso de carga y que se puede reintentar mas tarde. HEARTBEAT es el latido que
+     * el servidor envia en una conexion sin trafico y la respuesta a una peticion PING. EVENT lleva
+     * un cambio de los Funkos a una conexion suscrita con WATCH_FUNKOS. NOT_MODIFIED responde sin
+     * contenido a una consulta cuyo ifNoneMatch coincide con la etiqueta del resultado.
+     */
     public enum Status {
-        OK, ERROR, CLOSE, TOKEN
+        OK, ERROR, CLOSE, TOKEN, CHUNK, END, BUSY, HEARTBEAT, EVENT, NOT_MODIFIED
     }
 }
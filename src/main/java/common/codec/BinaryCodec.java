@@ -0,0 +1,752 @@
+package common.codec;
+
+import common.Login;
+import common.PageRequest;
+import common.Request;
+import common.Response;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
+import model.Projection;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Formato binario compacto del protocolo. Cada mensaje empieza por MAGIC, después el tipo o el
+ * estado y un byte con los campos presentes. Los enteros van en varint con zigzag, el cod de un
+ * Funko como dos long, las fechas como días desde la época, las fechas con hora como segundos y
+ * nanosegundos UTC y el modelo como su posición en MODELOS. Los textos van en UTF-8 con su longitud
+ * más uno delante, de modo que 0 representa null. El formato del contenido de una petición lo
+ * decide su tipo, tanto al escribirla como al leerla.
+ */
+public class BinaryCodec implements MessageCodec {
+    // Atributos
+    public static final String NAME = "binary";
+    public static final byte MAGIC = (byte) 0xFB;
+    private static final List<String> MODELOS = List.of("MARVEL", "DISNEY", "ANIME", "OTROS");
+    private static final byte NULL = -1;
+    // Campos presentes de una petición o una respuesta
+    private static final int CONTENT = 1;
+    private static final int TOKEN = 1 << 1;
+    private static final int CREATED_AT = 1 << 2;
+    private static final int ID = 1 << 3;
+    private static final int STREAM = 1 << 4;
+    private static final int STREAM_VALUE = 1 << 5;
+    private static final int FIELDS = 1 << 6;
+    // ifNoneMatch de una petición o etag de una respuesta
+    private static final int ETAG = 1 << 7;
+    // Los campos presentes de una petición van en un varint, así que caben más de ocho
+    private static final int TIMEOUT = 1 << 8;
+    // Contenido de FIND_ALL_FUNKOS que no es una página y va como texto, igual que en JSON
+    private static final int TEXT_CONTENT = 1 << 9;
+    // Campos presentes de un Funko
+    private static final int FUNKO_ID = 1;
+    private static final int FUNKO_COD = 1 << 1;
+    private static final int FUNKO_NOMBRE = 1 << 2;
+    private static final int FUNKO_MODELO = 1 << 3;
+    private static final int FUNKO_FECHA = 1 << 4;
+    private static final int FUNKO_CREATED_AT = 1 << 5;
+    private static final int FUNKO_UPDATED_AT = 1 << 6;
+    // Solo en un Funko proyectado sin precio, que si no siempre va
+    private static final int FUNKO_NO_PRECIO = 1 << 7;
+    // Campos presentes de un cambio de WATCH_FUNKOS
+    private static final int EVENT_ID = 1;
+    private static final int EVENT_FUNKO = 1 << 1;
+
+    /**
+     * Tipos de contenido de una respuesta
+     */
+    private enum Kind {
+        TEXT, LONG, DOUBLE, FUNKO, FUNKOS, MAP, RESPONSES, PAGE, PROJECTION, EVENT
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Request request) {
+        var out = new Output();
+        out.writeByte(MAGIC);
+        writeRequest(out, request);
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encode(Response response) {
+        var out = new Output();
+        out.writeByte(MAGIC);
+        writeResponse(out, response);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Request decodeRequest(ByteBuffer message) {
+        if (!message.hasRemaining()) {
+            return null;
+        }
+        try {
+            readMagic(message);
+            return readRequest(message, false);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+            throw new CodecException("Petición binaria no válida", e);
+        }
+    }
+
+    @Override
+    public Response decodeResponse(ByteBuffer message) {
+        if (!message.hasRemaining()) {
+            return null;
+        }
+        try {
+            readMagic(message);
+            return readResponse(message);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+            throw new CodecException("Respuesta binaria no válida", e);
+        }
+    }
+
+    /**
+     * Método que escribe una petición sin MAGIC
+     *
+     * @param out     Salida
+     * @param request Petición
+     */
+    private static void writeRequest(Output out, Request request) {
+        out.writeByte(request.type() == null ? NULL : (byte) request.type().ordinal());
+        boolean text = request.type() == Request.Type.FIND_ALL_FUNKOS && request.content() != null && !(request.content() instanceof PageRequest);
+        int flags = (request.content() != null ? CONTENT : 0)
+                | (text ? TEXT_CONTENT : 0)
+                | (request.token() != null ? TOKEN : 0)
+                | (request.createdAt() != null ? CREATED_AT : 0)
+                | (request.id() != null ? ID : 0)
+                | (request.stream() != null ? STREAM : 0)
+                | (Boolean.TRUE.equals(request.stream()) ? STREAM_VALUE : 0)
+                | (request.fields() != null ? FIELDS : 0)
+                | (request.ifNoneMatch() != null ? ETAG : 0)
+                | (request.timeout() != null ? TIMEOUT : 0);
+        out.writeVarLong(flags);
+        if (text) {
+            out.writeString(request.content().toString());
+        } else if (request.content() != null) {
+            writeRequestContent(out, request.type(), request.content());
+        }
+        if (request.token() != null) {
+            out.writeString(request.token());
+        }
+        if (request.createdAt() != null) {
+            out.writeString(request.createdAt());
+        }
+        if (request.id() != null) {
+            out.writeVarLong(request.id());
+        }
+        if (request.fields() != null) {
+            out.writeVarLong(request.fields().size());
+            for (Object field : request.fields()) {
+                out.writeString(String.valueOf(field));
+            }
+        }
+        if (request.ifNoneMatch() != null) {
+            out.writeString(request.ifNoneMatch());
+        }
+        if (request.timeout() != null) {
+            out.writeVarLong(request.timeout());
+        }
+    }
+
+    /**
+     * Método que escribe el contenido de una petición con el formato que le corresponde por su tipo,
+     * el mismo con el que lo lee readRequest
+     *
+     * @param out     Salida
+     * @param type    Tipo de la petición, puede ser null
+     * @param content Contenido
+     * @throws CodecException si el contenido no es del tipo que lleva la petición
+     */
+    private static void writeRequestContent(Output out, Request.Type type, Object content) {
+        if (type == Request.Type.SAVE_FUNKO || type == Request.Type.UPDATE_FUNKO) {
+            writeFunko(out, as(Funko.class, content, type));
+        } else if (type == Request.Type.LOGIN) {
+            Login login = as(Login.class, content, type);
+            out.writeString(login.username());
+            out.writeString(login.password());
+            out.writeString(login.codec());
+            out.writeString(login.compression());
+        } else if (type == Request.Type.FIND_ALL_FUNKOS) {
+            PageRequest page = as(PageRequest.class, content, type);
+            out.writeVarLong(page.size());
+            out.writeString(page.cursor());
+        } else if (type == Request.Type.BATCH) {
+            List<?> items = as(List.class, content, type);
+            out.writeVarLong(items.size());
+            for (Object item : items) {
+                writeRequest(out, as(Request.class, item, type));
+            }
+        } else if (type == Request.Type.SAVE_FUNKOS || type == Request.Type.UPDATE_FUNKOS) {
+            List<?> items = as(List.class, content, type);
+            out.writeVarLong(items.size());
+            for (Object item : items) {
+                writeFunko(out, as(Funko.class, item, type));
+            }
+        } else if (type == Request.Type.DELETE_FUNKOS) {
+            List<?> items = as(List.class, content, type);
+            out.writeVarLong(items.size());
+            for (Object item : items) {
+                out.writeVarLong(id(item));
+            }
+        } else {
+            out.writeString(content.toString());
+        }
+    }
+
+    /**
+     * Método que comprueba que el contenido de una petición es del tipo esperado
+     *
+     * @param expected Clase esperada
+     * @param content  Contenido o elemento del contenido
+     * @param type     Tipo de la petición, para el mensaje de error
+     * @return El contenido con el tipo esperado
+     * @throws CodecException si no es del tipo esperado
+     */
+    private static <T> T as(Class<T> expected, Object content, Request.Type type) {
+        if (!expected.isInstance(content)) {
+            throw new CodecException("Contenido no válido para " + type + ": " + (content == null ? "null" : content.getClass().getSimpleName()));
+        }
+        return expected.cast(content);
+    }
+
+    /**
+     * Método que convierte un id de DELETE_FUNKOS en un long. Acepta números y texto, como en JSON.
+     *
+     * @param item Id
+     * @return Id como long
+     * @throws CodecException si no es un número ni un texto con un número
+     */
+    private static long id(Object item) {
+        if (item instanceof Number number) {
+            return number.longValue();
+        }
+        try {
+            return Long.parseLong(as(String.class, item, Request.Type.DELETE_FUNKOS));
+        } catch (NumberFormatException e) {
+            throw new CodecException("Id no válido para " + Request.Type.DELETE_FUNKOS + ": " + item, e);
+        }
+    }
+
+    /**
+     * Método que escribe una respuesta sin MAGIC
+     *
+     * @param out      Salida
+     * @param response Respuesta
+     */
+    private static void writeResponse(Output out, Response response) {
+        out.writeByte(response.status() == null ? NULL : (byte) response.status().ordinal());
+        int flags = (response.content() != null ? CONTENT : 0)
+                | (response.createdAt() != null ? CREATED_AT : 0)
+                | (response.id() != null ? ID : 0)
+                | (response.etag() != null ? ETAG : 0);
+        out.writeByte((byte) flags);
+        if (response.content() != null) {
+            writeContent(out, response.content());
+        }
+        if (response.createdAt() != null) {
+            out.writeString(response.createdAt());
+        }
+        if (response.id() != null) {
+            out.writeVarLong(response.id());
+        }
+        if (response.etag() != null) {
+            out.writeString(response.etag());
+        }
+    }
+
+    /**
+     * Método que lee una petición sin MAGIC
+     *
+     * @param message Mensaje
+     * @param inBatch true si la petición va dentro de un lote, que no puede contener otro lote
+     * @return Petición leída
+     */
+    private static Request readRequest(ByteBuffer message, boolean inBatch) {
+        byte type = message.get();
+        Request.Type requestType = type == NULL ? null : Request.Type.values()[type];
+        int flags = (int) readVarLong(message);
+        Object content = null;
+        if ((flags & TEXT_CONTENT) != 0) {
+            content = readString(message);
+        } else if ((flags & CONTENT) != 0) {
+            if (requestType == Request.Type.SAVE_FUNKO || requestType == Request.Type.UPDATE_FUNKO) {
+                content = readFunko(message);
+            } else if (requestType == Request.Type.LOGIN) {
+                content = new Login(readString(message), readString(message), readString(message), readString(message));
+            } else if (requestType == Request.Type.FIND_ALL_FUNKOS) {
+                content = new PageRequest((int) readVarLong(message), readString(message));
+            } else if (requestType == Request.Type.BATCH) {
+                if (inBatch) {
+                    throw new CodecException("Un lote no puede contener otro lote");
+                }
+                int size = (int) readVarLong(message);
+                List<Request> requests = new ArrayList<>(Math.min(size, message.remaining()));
+                for (int i = 0; i < size; i++) {
+                    requests.add(readRequest(message, true));
+                }
+                content = requests;
+            } else if (requestType == Request.Type.SAVE_FUNKOS || requestType == Request.Type.UPDATE_FUNKOS) {
+                int size = (int) readVarLong(message);
+                List<Funko> funkos = new ArrayList<>(Math.min(size, message.remaining()));
+                for (int i = 0; i < size; i++) {
+                    funkos.add(readFunko(message));
+                }
+                content = funkos;
+            } else if (requestType == Request.Type.DELETE_FUNKOS) {
+                int size = (int) readVarLong(message);
+                List<Long> ids = new ArrayList<>(Math.min(size, message.remaining()));
+                for (int i = 0; i < size; i++) {
+                    ids.add(readVarLong(message));
+                }
+                content = ids;
+            } else {
+                content = readString(message);
+            }
+        }
+        String token = (flags & TOKEN) != 0 ? readString(message) : null;
+        String createdAt = (flags & CREATED_AT) != 0 ? readString(message) : null;
+        Long id = (flags & ID) != 0 ? readVarLong(message) : null;
+        Boolean stream = (flags & STREAM) != 0 ? (flags & STREAM_VALUE) != 0 : null;
+        List<String> fields = null;
+        if ((flags & FIELDS) != 0) {
+            int size = (int) readVarLong(message);
+            fields = new ArrayList<>(Math.min(size, message.remaining()));
+            for (int i = 0; i < size; i++) {
+                fields.add(readString(message));
+            }
+        }
+        String ifNoneMatch = (flags & ETAG) != 0 ? readString(message) : null;
+        Long timeout = (flags & TIMEOUT) != 0 ? readVarLong(message) : null;
+        return new Request<>(requestType, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Método que lee una respuesta sin MAGIC
+     *
+     * @param message Mensaje
+     * @return Respuesta leída
+     */
+    private static Response readResponse(ByteBuffer message) {
+        byte status = message.get();
+        int flags = message.get();
+        Object content = (flags & CONTENT) != 0 ? readContent(message) : null;
+        String createdAt = (flags & CREATED_AT) != 0 ? readString(message) : null;
+        Long id = (flags & ID) != 0 ? readVarLong(message) : null;
+        String etag = (flags & ETAG) != 0 ? readString(message) : null;
+        return new Response<>(status == NULL ? null : Response.Status.values()[status], content, createdAt, id, etag);
+    }
+
+    /**
+     * Método que comprueba que el mensaje empieza por MAGIC
+     *
+     * @param message Bytes del mensaje
+     */
+    private static void readMagic(ByteBuffer message) {
+        if (message.get() != MAGIC) {
+            throw new CodecException("El mensaje no está en formato binario");
+        }
+    }
+
+    /**
+     * Método que escribe el contenido de una respuesta precedido de su tipo
+     *
+     * @param out     Salida
+     * @param content Contenido
+     */
+    private static void writeContent(Output out, Object content) {
+        writeContent(out, content, null);
+    }
+
+    /**
+     * Método que escribe el contenido de una respuesta con solo algunos campos de cada Funko
+     *
+     * @param out     Salida
+     * @param content Contenido
+     * @param fields  Campos de cada Funko que se escriben, null para todos
+     */
+    private static void writeContent(Output out, Object content, Set<FunkoField> fields) {
+        if (content instanceof Funko funko) {
+            out.writeByte((byte) Kind.FUNKO.ordinal());
+            writeFunko(out, funko, fields);
+        } else if (content instanceof Projection projection) {
+            out.writeByte((byte) Kind.PROJECTION.ordinal());
+            int mask = 0;
+            for (FunkoField field : projection.fields()) {
+                mask |= 1 << field.ordinal();
+            }
+            out.writeByte((byte) mask);
+            writeContent(out, projection.content(), projection.fields());
+        } else if (content instanceof FunkoEvent event) {
+            out.writeByte((byte) Kind.EVENT.ordinal());
+            out.writeByte((byte) event.type().ordinal());
+            out.writeByte((byte) ((event.id() != null ? EVENT_ID : 0) | (event.funko() != null ? EVENT_FUNKO : 0)));
+            if (event.id() != null) {
+                out.writeVarLong(event.id());
+            }
+            if (event.funko() != null) {
+                writeFunko(out, event.funko());
+            }
+        } else if (content instanceof FunkoPage page) {
+            out.writeByte((byte) Kind.PAGE.ordinal());
+            out.writeVarLong(page.funkos().size());
+            for (Funko funko : page.funkos()) {
+                writeFunko(out, funko, fields);
+            }
+            out.writeString(page.next());
+        } else if (content instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Response) {
+            out.writeByte((byte) Kind.RESPONSES.ordinal());
+            out.writeVarLong(list.size());
+            for (Object response : list) {
+                writeResponse(out, (Response) response);
+            }
+        } else if (content instanceof List<?> list) {
+            out.writeByte((byte) Kind.FUNKOS.ordinal());
+            out.writeVarLong(list.size());
+            for (Object funko : list) {
+                writeFunko(out, (Funko) funko, fields);
+            }
+        } else if (content instanceof Map<?, ?> map) {
+            out.writeByte((byte) Kind.MAP.ordinal());
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.writeString(String.valueOf(entry.getKey()));
+                writeScalar(out, entry.getValue());
+            }
+        } else {
+            writeScalar(out, content);
+        }
+    }
+
+    /**
+     * Método que escribe un número o un texto precedido de su tipo
+     *
+     * @param out   Salida
+     * @param value Valor
+     */
+    private static void writeScalar(Output out, Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            out.writeByte((byte) Kind.DOUBLE.ordinal());
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number number) {
+            out.writeByte((byte) Kind.LONG.ordinal());
+            out.writeVarLong(number.longValue());
+        } else {
+            out.writeByte((byte) Kind.TEXT.ordinal());
+            out.writeString(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Método que lee el contenido de una respuesta según su tipo
+     *
+     * @param in Mensaje
+     * @return Contenido leído
+     */
+    private static Object readContent(ByteBuffer in) {
+        Kind kind = Kind.values()[in.get()];
+        return switch (kind) {
+            case FUNKO -> readFunko(in);
+            case FUNKOS -> {
+                int size = (int) readVarLong(in);
+                List<Funko> funkos = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    funkos.add(readFunko(in));
+                }
+                yield funkos;
+            }
+            case PROJECTION -> {
+                int mask = in.get();
+                Set<FunkoField> fields = EnumSet.noneOf(FunkoField.class);
+                for (FunkoField field : FunkoField.values()) {
+                    if ((mask & (1 << field.ordinal())) != 0) {
+                        fields.add(field);
+                    }
+                }
+                yield new Projection(fields, readContent(in));
+            }
+            case EVENT -> {
+                var type = FunkoEvent.Type.values()[in.get()];
+                int flags = in.get();
+                Long id = (flags & EVENT_ID) != 0 ? readVarLong(in) : null;
+                Funko funko = (flags & EVENT_FUNKO) != 0 ? readFunko(in) : null;
+                yield new FunkoEvent(type, id, funko);
+            }
+            case PAGE -> {
+                int size = (int) readVarLong(in);
+                List<Funko> funkos = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    funkos.add(readFunko(in));
+                }
+                yield new FunkoPage(funkos, readString(in));
+            }
+            case RESPONSES -> {
+                int size = (int) readVarLong(in);
+                List<Response> responses = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    responses.add(readResponse(in));
+                }
+                yield responses;
+            }
+            case MAP -> {
+                int size = (int) readVarLong(in);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readContent(in));
+                }
+                yield map;
+            }
+            case LONG -> readVarLong(in);
+            case DOUBLE -> in.getDouble();
+            case TEXT -> readString(in);
+        };
+    }
+
+    /**
+     * Método que escribe un Funko
+     *
+     * @param out   Salida
+     * @param funko Funko
+     */
+    private static void writeFunko(Output out, Funko funko) {
+        writeFunko(out, funko, null);
+    }
+
+    /**
+     * Método que escribe solo algunos campos de un Funko. Un Funko proyectado no lleva fechas de
+     * creación ni de actualización, y si no lleva precio lo indica con FUNKO_NO_PRECIO.
+     *
+     * @param out    Salida
+     * @param funko  Funko
+     * @param fields Campos que se escriben, null para todos
+     */
+    private static void writeFunko(Output out, Funko funko, Set<FunkoField> fields) {
+        boolean all = fields == null;
+        Long id = all || fields.contains(FunkoField.ID) ? funko.getId() : null;
+        UUID cod = all || fields.contains(FunkoField.COD) ? funko.getCod() : null;
+        String nombre = all || fields.contains(FunkoField.NOMBRE) ? funko.getNombre() : null;
+        String modelo = all || fields.contains(FunkoField.MODELO) ? funko.getModelo() : null;
+        boolean precio = all || fields.contains(FunkoField.PRECIO);
+        LocalDate fecha = all || fields.contains(FunkoField.FECHA_LANZAMIENTO) ? funko.getFecha_lanzamiento() : null;
+        LocalDateTime createdAt = all ? funko.getCreatedAt() : null;
+        LocalDateTime updatedAt = all ? funko.getUpdatedAt() : null;
+        int flags = (id != null ? FUNKO_ID : 0)
+                | (cod != null ? FUNKO_COD : 0)
+                | (nombre != null ? FUNKO_NOMBRE : 0)
+                | (modelo != null ? FUNKO_MODELO : 0)
+                | (fecha != null ? FUNKO_FECHA : 0)
+                | (createdAt != null ? FUNKO_CREATED_AT : 0)
+                | (updatedAt != null ? FUNKO_UPDATED_AT : 0)
+                | (precio ? 0 : FUNKO_NO_PRECIO);
+        out.writeByte((byte) flags);
+        if (id != null) {
+            out.writeVarLong(id);
+        }
+        if (cod != null) {
+            out.writeLong(cod.getMostSignificantBits());
+            out.writeLong(cod.getLeastSignificantBits());
+        }
+        if (nombre != null) {
+            out.writeString(nombre);
+        }
+        if (modelo != null) {
+            // Posición del modelo más uno; 0 si no es uno de los conocidos y va como texto
+            int posicion = MODELOS.indexOf(modelo) + 1;
+            out.writeByte((byte) posicion);
+            if (posicion == 0) {
+                out.writeString(modelo);
+            }
+        }
+        if (precio) {
+            out.writeDouble(funko.getPrecio());
+        }
+        if (fecha != null) {
+            out.writeVarLong(fecha.toEpochDay());
+        }
+        if (createdAt != null) {
+            writeDateTime(out, createdAt);
+        }
+        if (updatedAt != null) {
+            writeDateTime(out, updatedAt);
+        }
+    }
+
+    /**
+     * Método que lee un Funko
+     *
+     * @param in Mensaje
+     * @return Funko leído
+     */
+    private static Funko readFunko(ByteBuffer in) {
+        int flags = in.get();
+        var builder = Funko.builder().createdAt(null).updatedAt(null);
+        if ((flags & FUNKO_ID) != 0) {
+            builder.id(readVarLong(in));
+        }
+        if ((flags & FUNKO_COD) != 0) {
+            builder.cod(new UUID(in.getLong(), in.getLong()));
+        }
+        if ((flags & FUNKO_NOMBRE) != 0) {
+            builder.nombre(readString(in));
+        }
+        if ((flags & FUNKO_MODELO) != 0) {
+            int modelo = in.get();
+            builder.modelo(modelo == 0 ? readString(in) : MODELOS.get(modelo - 1));
+        }
+        if ((flags & FUNKO_NO_PRECIO) == 0) {
+            builder.precio(in.getDouble());
+        }
+        if ((flags & FUNKO_FECHA) != 0) {
+            builder.fecha_lanzamiento(LocalDate.ofEpochDay(readVarLong(in)));
+        }
+        if ((flags & FUNKO_CREATED_AT) != 0) {
+            builder.createdAt(readDateTime(in));
+        }
+        if ((flags & FUNKO_UPDATED_AT) != 0) {
+            builder.updatedAt(readDateTime(in));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Método que escribe una fecha con hora como segundos y nanosegundos UTC
+     *
+     * @param out      Salida
+     * @param dateTime Fecha con hora
+     */
+    private static void writeDateTime(Output out, LocalDateTime dateTime) {
+        out.writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeVarLong(dateTime.getNano());
+    }
+
+    /**
+     * Método que lee una fecha con hora
+     *
+     * @param in Mensaje
+     * @return Fecha con hora
+     */
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(readVarLong(in), (int) readVarLong(in), ZoneOffset.UTC);
+    }
+
+    /**
+     * Método que lee un entero en varint con zigzag
+     *
+     * @param in Mensaje
+     * @return Entero leído
+     */
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new CodecException("Entero varint demasiado largo");
+    }
+
+    /**
+     * Método que lee un texto en UTF-8 precedido de su longitud más uno
+     *
+     * @param in Mensaje
+     * @return Texto, o null
+     */
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(in.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Buffer de salida que crece según se escribe
+     */
+    private static class Output {
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[length++] = value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[length++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
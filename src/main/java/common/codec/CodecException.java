@@ -0,0 +1,14 @@
+package common.codec;
+
+/**
+ * Exception para los mensajes que no se pueden decodificar
+ */
+public class CodecException extends RuntimeException {
+    public CodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public CodecException(String message) {
+        super(message);
+    }
+}
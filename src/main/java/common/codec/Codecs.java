@@ -0,0 +1,97 @@
+package common.codec;
+
+import common.Login;
+import common.PageRequest;
+import common.Request;
+import common.Response;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
+import model.Projection;
+import utils.GsonFactory;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Clase con los formatos del protocolo. Cada mensaje binario empieza por BinaryCodec.MAGIC, que
+ * no puede empezar un JSON, así que quien recibe distingue el formato de cada mensaje sin estado:
+ * solo hace falta negociar qué formato envía cada lado.
+ */
+public final class Codecs {
+    // Atributos
+    public static final MessageCodec JSON = new JsonCodec(GsonFactory.shared());
+    public static final MessageCodec BINARY = new BinaryCodec();
+
+    private Codecs() {
+    }
+
+    /**
+     * Método que devuelve un formato por su nombre
+     *
+     * @param name Nombre del formato, json o binary
+     * @return Formato; JSON si el nombre es nulo o desconocido
+     */
+    public static MessageCodec forName(String name) {
+        return BinaryCodec.NAME.equalsIgnoreCase(name) ? BINARY : JSON;
+    }
+
+    /**
+     * Método que devuelve el formato en el que está escrito un mensaje
+     *
+     * @param message Bytes del mensaje
+     * @return BINARY si empieza por BinaryCodec.MAGIC, JSON en otro caso
+     */
+    public static MessageCodec detect(ByteBuffer message) {
+        return message.hasRemaining() && message.get(message.position()) == BinaryCodec.MAGIC ? BINARY : JSON;
+    }
+
+    /**
+     * Método que devuelve el formato que pide un cliente en su LOGIN
+     *
+     * @param request Petición del cliente
+     * @return Formato pedido, o null si la petición no es un LOGIN o no pide ninguno
+     */
+    public static MessageCodec requested(Request request) {
+        if (request == null || request.type() != Request.Type.LOGIN || !(request.content() instanceof Login login) || login.codec() == null) {
+            return null;
+        }
+        return forName(login.codec());
+    }
+
+    /**
+     * Método que calienta los formatos antes de atender la primera conexión: escribe y lee un
+     * mensaje de cada tipo en cada formato, de modo que la carga de clases y la creación de los
+     * adaptadores no recaen sobre las primeras peticiones
+     */
+    public static void warmUp() {
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).nombre("Funko").modelo("MARVEL").precio(10.0)
+                .fecha_lanzamiento(LocalDate.now()).build();
+        String now = LocalDateTime.now().toString();
+        List<Request> requests = List.of(
+                new Request<>(Request.Type.LOGIN, new Login("usuario", "clave", JsonCodec.NAME, null), null, now),
+                new Request<>(Request.Type.SAVE_FUNKO, funko, "token", now).withId(1L),
+                new Request<>(Request.Type.FIND_ALL_FUNKOS, new PageRequest(10, null), "token", now, 2L, null, List.of("id"), "etag", 1000L),
+                new Request<>(Request.Type.BATCH, List.of(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", null, now).withId(3L)), "token", now).withId(4L));
+        List<Response> responses = List.of(
+                new Response<>(Response.Status.OK, funko, now, 1L, "etag"),
+                new Response<>(Response.Status.OK, List.of(funko), now, 2L),
+                new Response<>(Response.Status.OK, new FunkoPage(List.of(funko), "cursor"), now, 3L),
+                new Response<>(Response.Status.OK, new Projection(EnumSet.of(FunkoField.ID), List.of(funko)), now, 4L),
+                new Response<>(Response.Status.EVENT, FunkoEvent.created(funko), now, 5L),
+                new Response<>(Response.Status.ERROR, "error", now, 6L));
+        for (MessageCodec codec : List.of(JSON, BINARY)) {
+            for (Request request : requests) {
+                codec.decodeRequest(ByteBuffer.wrap(codec.encode(request)));
+            }
+            for (Response response : responses) {
+                codec.decodeResponse(ByteBuffer.wrap(codec.encode(response)));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package common.codec;
+
+import common.Login;
+import common.Request;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión Deflate de mensajes de una conexión. Un mensaje comprimido empieza por MAGIC, sigue
+ * su tamaño original en 4 bytes big-endian y después los datos en Deflate sin cabecera zlib. Como
+ * ni un JSON ni un mensaje binario empiezan por MAGIC, quien recibe distingue cada mensaje
+ * comprimido sin estado. El Deflater y el Inflater se reutilizan en todos los mensajes de la
+ * conexión y hay que liberarlos con close() al cerrarla.
+ */
+public class Compression implements AutoCloseable {
+    // Atributos
+    public static final String DEFLATE = "deflate";
+    public static final byte MAGIC = (byte) 0xFC;
+    private static final int HEADER_SIZE = 5;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+    private final int maxSize;
+    private byte[] deflated = new byte[1024];
+    private byte[] inflated = new byte[1024];
+    private boolean closed;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxSize Tamaño máximo de un mensaje descomprimido en bytes
+     */
+    public Compression(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Método que indica si el cliente admite respuestas comprimidas según su LOGIN
+     *
+     * @param request Petición del cliente
+     * @return true si la petición es un LOGIN que admite Deflate
+     */
+    public static boolean requested(Request request) {
+        return request != null && request.type() == Request.Type.LOGIN && request.content() instanceof Login login
+                && DEFLATE.equalsIgnoreCase(login.compression());
+    }
+
+    /**
+     * Método que indica si un mensaje está comprimido
+     *
+     * @param message Bytes del mensaje
+     * @return true si empieza por MAGIC
+     */
+    public static boolean isCompressed(ByteBuffer message) {
+        return message.hasRemaining() && message.get(message.position()) == MAGIC;
+    }
+
+    /**
+     * Método que comprime un mensaje
+     *
+     * @param message Bytes del mensaje
+     * @return Mensaje comprimido, o el original si comprimido no ocupa menos
+     */
+    public synchronized byte[] compress(byte[] message) {
+        if (closed) {
+            return message;
+        }
+        deflater.reset();
+        deflater.setInput(message);
+        deflater.finish();
+        int length = HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (length == deflated.length) {
+                if (length >= message.length) {
+                    return message;
+                }
+                deflated = Arrays.copyOf(deflated, deflated.length * 2);
+            }
+            length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        if (length >= message.length) {
+            return message;
+        }
+        deflated[0] = MAGIC;
+        deflated[1] = (byte) (message.length >>> 24);
+        deflated[2] = (byte) (message.length >>> 16);
+        deflated[3] = (byte) (message.length >>> 8);
+        deflated[4] = (byte) message.length;
+        return Arrays.copyOf(deflated, length);
+    }
+
+    /**
+     * Método que descomprime un mensaje. El resultado usa un buffer interno que se reutiliza en la
+     * siguiente llamada, así que hay que decodificarlo antes de descomprimir otro mensaje.
+     *
+     * @param message Mensaje comprimido
+     * @return Bytes del mensaje original
+     * @throws CodecException si el mensaje no es válido o supera el tamaño máximo
+     */
+    public synchronized ByteBuffer decompress(ByteBuffer message) {
+        if (closed) {
+            throw new CodecException("La conexión está cerrada");
+        }
+        if (message.remaining() < HEADER_SIZE || message.get(message.position()) != MAGIC) {
+            throw new CodecException("Mensaje comprimido no válido");
+        }
+        int size = message.getInt(message.position() + 1);
+        if (size < 0 || size > maxSize) {
+            throw new CodecException("Mensaje comprimido de " + size + " bytes, el máximo es " + maxSize);
+        }
+        if (size > inflated.length) {
+            inflated = new byte[Math.min(Math.max(size, inflated.length * 2), maxSize)];
+        }
+        inflater.reset();
+        inflater.setInput(message.array(), message.arrayOffset() + message.position() + HEADER_SIZE, message.remaining() - HEADER_SIZE);
+        try {
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int read = inflater.inflate(inflated, length, size - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != size || !inflater.finished()) {
+                throw new CodecException("Mensaje comprimido incompleto: " + length + " de " + size + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new CodecException("Mensaje comprimido no válido", e);
+        }
+        return ByteBuffer.wrap(inflated, 0, size);
+    }
+
+    /**
+     * Método que libera la memoria nativa del Deflater y del Inflater
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            deflater.end();
+            inflater.end();
+        }
+    }
+}
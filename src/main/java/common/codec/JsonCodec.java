@@ -0,0 +1,63 @@
+package common.codec;
+
+import com.google.gson.Gson;
+import common.Request;
+import common.Response;
+import common.framing.Framing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato JSON del protocolo, con los adaptadores de GsonFactory. Un mensaje que es JSON válido
+ * pero no un mensaje del protocolo (un tipo desconocido, un id que no es un número, una fecha mal
+ * escrita) hace fallar a los adaptadores con excepciones de todo tipo, así que cualquier error al
+ * leer se convierte en CodecException.
+ */
+public class JsonCodec implements MessageCodec {
+    // Atributos
+    public static final String NAME = "json";
+    private final Gson gson;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param gson Gson con los adaptadores del protocolo
+     */
+    public JsonCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Request request) {
+        return gson.toJson(request).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encode(Response response) {
+        return gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Request decodeRequest(ByteBuffer message) {
+        try {
+            return gson.fromJson(Framing.toReader(message), Request.class);
+        } catch (RuntimeException e) {
+            throw new CodecException("Petición JSON no válida", e);
+        }
+    }
+
+    @Override
+    public Response decodeResponse(ByteBuffer message) {
+        try {
+            return gson.fromJson(Framing.toReader(message), Response.class);
+        } catch (RuntimeException e) {
+            throw new CodecException("Respuesta JSON no válida", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package common.codec;
+
+import common.Request;
+import common.Response;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interfaz que convierte peticiones y respuestas en los bytes de un mensaje y al revés.
+ * La separación de mensajes (líneas o tramas) es cosa de common.framing.
+ */
+public interface MessageCodec {
+    /**
+     * Método que devuelve el nombre del formato, el que se negocia en el LOGIN
+     *
+     * @return Nombre del formato
+     */
+    String name();
+
+    /**
+     * Método que codifica una petición
+     *
+     * @param request Petición
+     * @return Bytes del mensaje
+     */
+    byte[] encode(Request request);
+
+    /**
+     * Método que codifica una respuesta
+     *
+     * @param response Respuesta
+     * @return Bytes del mensaje
+     */
+    byte[] encode(Response response);
+
+    /**
+     * Método que decodifica una petición
+     *
+     * @param message Bytes del mensaje
+     * @return Petición, o null si el mensaje está vacío
+     * @throws CodecException si el mensaje no es válido
+     */
+    Request decodeRequest(ByteBuffer message);
+
+    /**
+     * Método que decodifica una respuesta
+     *
+     * @param message Bytes del mensaje
+     * @return Respuesta, o null si el mensaje está vacío
+     * @throws CodecException si el mensaje no es válido
+     */
+    Response decodeResponse(ByteBuffer message);
+}
@@ -0,0 +1,66 @@
+package common.framing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Lector de tramas con prefijo de longitud: 4 bytes big-endian con el tamaño y después el mensaje.
+ * Reutiliza el mismo buffer para todas las tramas y rechaza las que superan el tamaño máximo.
+ * Si una lectura se corta por un timeout del socket, la siguiente llamada continúa la trama donde se quedó.
+ */
+public class FrameMessageReader implements MessageReader {
+    // Atributos
+    private final InputStream in;
+    private final int maxFrameSize;
+    private final byte[] header = new byte[Framing.HEADER_SIZE];
+    private int headerLength;
+    private byte[] frame = new byte[1024];
+    private int frameLength = -1;
+    private int frameRead;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param in           Flujo de entrada
+     * @param maxFrameSize Tamaño máximo de una trama en bytes
+     */
+    public FrameMessageReader(InputStream in, int maxFrameSize) {
+        this.in = in;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        while (frameLength < 0) {
+            int read = in.read(header, headerLength, header.length - headerLength);
+            if (read < 0) {
+                return null;
+            }
+            headerLength += read;
+            if (headerLength == header.length) {
+                headerLength = 0;
+                int length = ByteBuffer.wrap(header).getInt();
+                if (length < 0 || length > maxFrameSize) {
+                    throw new IOException("Trama no válida de " + length + " bytes, el máximo es " + maxFrameSize);
+                }
+                if (length > frame.length) {
+                    frame = new byte[Math.min(Math.max(length, frame.length * 2), maxFrameSize)];
+                }
+                frameLength = length;
+            }
+        }
+        while (frameRead < frameLength) {
+            int read = in.read(frame, frameRead, frameLength - frameRead);
+            if (read < 0) {
+                throw new EOFException("Trama incompleta: " + frameRead + " de " + frameLength + " bytes");
+            }
+            frameRead += read;
+        }
+        ByteBuffer result = ByteBuffer.wrap(frame, 0, frameLength);
+        frameLength = -1;
+        frameRead = 0;
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package common.framing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escritor de tramas con prefijo de longitud: 4 bytes big-endian con el tamaño y después el mensaje
+ */
+public class FrameMessageWriter implements MessageWriter {
+    // Atributos
+    private final OutputStream out;
+    private final byte[] header = new byte[Framing.HEADER_SIZE];
+
+    /**
+     * Constructor de la clase
+     *
+     * @param out Flujo de salida
+     */
+    public FrameMessageWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void append(byte[] message) throws IOException {
+        Framing.writeHeader(header, message.length);
+        out.write(header);
+        out.write(message);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,122 @@
+package common.framing;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Negociación del tipo de separación de mensajes de una conexión.
+ * <p>
+ * Por defecto los mensajes son JSON separados por saltos de línea. Un cliente que quiera tramas
+ * con prefijo de longitud envía el preámbulo {@link #PREAMBLE} nada más conectar; el servidor lo
+ * devuelve para confirmarlo y a partir de ahí ambos usan tramas. Como un JSON nunca empieza por
+ * el byte 0, el servidor distingue los dos modos mirando el primer byte.
+ */
+public final class Framing {
+    public static final byte[] PREAMBLE = {0, 'F', 'K', 1};
+    public static final int HEADER_SIZE = 4;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 1024 * 1024;
+
+    /**
+     * Modos de separación de mensajes
+     */
+    public enum Mode {
+        LINE, FRAME
+    }
+
+    private Framing() {
+    }
+
+    /**
+     * Método del servidor que detecta el modo pedido por el cliente y confirma el preámbulo
+     *
+     * @param in  Flujo de entrada del cliente, debe admitir mark/reset
+     * @param out Flujo de salida hacia el cliente
+     * @return Modo de la conexión
+     * @throws IOException si el cliente envía un preámbulo no válido
+     */
+    public static Mode accept(BufferedInputStream in, OutputStream out) throws IOException {
+        in.mark(PREAMBLE.length);
+        int first = in.read();
+        if (first != PREAMBLE[0]) {
+            in.reset();
+            return Mode.LINE;
+        }
+        byte[] preamble = new byte[PREAMBLE.length];
+        preamble[0] = (byte) first;
+        if (in.readNBytes(preamble, 1, PREAMBLE.length - 1) != PREAMBLE.length - 1 || !Arrays.equals(preamble, PREAMBLE)) {
+            throw new IOException("Preámbulo de tramas no válido");
+        }
+        out.write(PREAMBLE);
+        out.flush();
+        return Mode.FRAME;
+    }
+
+    /**
+     * Método del cliente que pide el modo de tramas y espera la confirmación del servidor
+     *
+     * @param in  Flujo de entrada desde el servidor
+     * @param out Flujo de salida hacia el servidor
+     * @throws IOException si el servidor no confirma el preámbulo
+     */
+    public static void request(InputStream in, OutputStream out) throws IOException {
+        out.write(PREAMBLE);
+        out.flush();
+        if (!Arrays.equals(in.readNBytes(PREAMBLE.length), PREAMBLE)) {
+            throw new IOException("El servidor no admite tramas con prefijo de longitud");
+        }
+    }
+
+    /**
+     * Método que crea el lector de mensajes de un modo
+     *
+     * @param mode           Modo de la conexión
+     * @param in             Flujo de entrada
+     * @param maxMessageSize Tamaño máximo de un mensaje
+     * @return Lector de mensajes
+     */
+    public static MessageReader reader(Mode mode, InputStream in, int maxMessageSize) {
+        return mode == Mode.FRAME ? new FrameMessageReader(in, maxMessageSize) : new LineMessageReader(in, maxMessageSize);
+    }
+
+    /**
+     * Método que crea el escritor de mensajes de un modo
+     *
+     * @param mode Modo de la conexión
+     * @param out  Flujo de salida, conviene que tenga buffer
+     * @return Escritor de mensajes
+     */
+    public static MessageWriter writer(Mode mode, OutputStream out) {
+        return mode == Mode.FRAME ? new FrameMessageWriter(out) : new LineMessageWriter(out);
+    }
+
+    /**
+     * Método que escribe la cabecera de longitud de una trama
+     *
+     * @param header Array de al menos 4 bytes
+     * @param length Longitud del mensaje
+     */
+    public static void writeHeader(byte[] header, int length) {
+        header[0] = (byte) (length >>> 24);
+        header[1] = (byte) (length >>> 16);
+        header[2] = (byte) (length >>> 8);
+        header[3] = (byte) length;
+    }
+
+    /**
+     * Método que permite leer un mensaje como texto UTF-8 sin copiarlo a un String
+     *
+     * @param message Mensaje leído
+     * @return Reader sobre el mensaje
+     */
+    public static Reader toReader(ByteBuffer message) {
+        return new InputStreamReader(new ByteArrayInputStream(message.array(), message.arrayOffset() + message.position(), message.remaining()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,89 @@
+package common.framing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lector de mensajes separados por saltos de línea (JSON por líneas).
+ * Reutiliza el mismo buffer para todos los mensajes y limita su tamaño. Si una lectura se corta
+ * por un timeout del socket, la siguiente llamada continúa el mensaje donde se quedó.
+ */
+public class LineMessageReader implements MessageReader {
+    // Atributos
+    private final InputStream in;
+    private final int maxMessageSize;
+    private final byte[] input = new byte[8192];
+    private int inputPosition;
+    private int inputLimit;
+    private byte[] message = new byte[256];
+    private int length;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param in             Flujo de entrada
+     * @param maxMessageSize Tamaño máximo de una línea en bytes
+     */
+    public LineMessageReader(InputStream in, int maxMessageSize) {
+        this.in = in;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    @Override
+    public ByteBuffer read() throws IOException {
+        while (true) {
+            if (inputPosition == inputLimit) {
+                int read = in.read(input);
+                if (read < 0) {
+                    return length == 0 ? null : complete();
+                }
+                inputPosition = 0;
+                inputLimit = read;
+            }
+            int end = inputPosition;
+            while (end < inputLimit && input[end] != '\n') {
+                end++;
+            }
+            int chunk = end - inputPosition;
+            ensureCapacity(length + chunk);
+            System.arraycopy(input, inputPosition, message, length, chunk);
+            length += chunk;
+            inputPosition = end;
+            if (end < inputLimit) {
+                inputPosition++;
+                if (length > 0 && message[length - 1] == '\r') {
+                    length--;
+                }
+                return complete();
+            }
+        }
+    }
+
+    /**
+     * Método que devuelve el mensaje leído y prepara el buffer para el siguiente
+     *
+     * @return Buffer con el mensaje
+     */
+    private ByteBuffer complete() {
+        ByteBuffer result = ByteBuffer.wrap(message, 0, length);
+        length = 0;
+        return result;
+    }
+
+    /**
+     * Método que amplía el buffer del mensaje sin pasar del tamaño máximo
+     *
+     * @param capacity Capacidad necesaria
+     * @throws IOException si se supera el tamaño máximo
+     */
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity > maxMessageSize) {
+            throw new IOException("Mensaje demasiado grande: más de " + maxMessageSize + " bytes");
+        }
+        if (capacity > message.length) {
+            message = Arrays.copyOf(message, Math.min(Math.max(capacity, message.length * 2), maxMessageSize));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package common.framing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escritor de mensajes separados por saltos de línea (JSON por líneas)
+ */
+public class LineMessageWriter implements MessageWriter {
+    // Atributos
+    private final OutputStream out;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param out Flujo de salida
+     */
+    public LineMessageWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void append(byte[] message) throws IOException {
+        out.write(message);
+        out.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
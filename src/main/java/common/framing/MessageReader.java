@@ -0,0 +1,17 @@
+package common.framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interfaz que lee mensajes completos de un flujo de bytes
+ */
+public interface MessageReader {
+    /**
+     * Método que lee el siguiente mensaje
+     *
+     * @return Buffer con el mensaje, válido solo hasta la siguiente lectura, o null si se cierra el flujo
+     * @throws IOException Excepción de entrada/salida o si el mensaje supera el tamaño máximo
+     */
+    ByteBuffer read() throws IOException;
+}
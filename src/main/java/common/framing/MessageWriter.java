@@ -0,0 +1,35 @@
+package common.framing;
+
+import java.io.IOException;
+
+/**
+ * Interfaz que escribe mensajes completos en un flujo de bytes. No es segura entre hilos:
+ * cada conexión debe tener un único escritor.
+ */
+public interface MessageWriter {
+    /**
+     * Método que añade un mensaje al flujo sin vaciarlo, para poder enviar varios juntos
+     *
+     * @param message Bytes del mensaje
+     * @throws IOException Excepción de entrada/salida
+     */
+    void append(byte[] message) throws IOException;
+
+    /**
+     * Método que vacía el flujo enviando los mensajes añadidos
+     *
+     * @throws IOException Excepción de entrada/salida
+     */
+    void flush() throws IOException;
+
+    /**
+     * Método que escribe un mensaje y vacía el flujo
+     *
+     * @param message Bytes del mensaje
+     * @throws IOException Excepción de entrada/salida
+     */
+    default void write(byte[] message) throws IOException {
+        append(message);
+        flush();
+    }
+}
@@ -5,9 +5,11 @@ import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
 import io.r2dbc.spi.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.*;
@@ -108,7 +110,8 @@ public class DatabaseManager implements AutoCloseable {
                     }
                 }
                 Statement statement = connection.createStatement(scriptContent);
-                return Mono.from(statement.execute());
+                // Un script puede tener varias sentencias: se consumen todos sus resultados para que se ejecuten todas
+                return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated).then();
             } catch (IOException e) {
                 return Mono.error(e);
             }
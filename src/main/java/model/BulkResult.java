@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * Clase BulkResult con el resultado de una fila de una operación masiva
+ *
+ * @param value Valor guardado, actualizado o borrado, nulo si la fila ha fallado
+ * @param error Motivo del fallo, nulo si la fila se ha procesado
+ * @param <T>   Tipo del valor
+ */
+public record BulkResult<T>(T value, String error) {
+    /**
+     * Método que construye el resultado de una fila procesada
+     *
+     * @param value Valor de la fila
+     * @param <T>   Tipo del valor
+     * @return Resultado correcto
+     */
+    public static <T> BulkResult<T> ok(T value) {
+        return new BulkResult<>(value, null);
+    }
+
+    /**
+     * Método que construye el resultado de una fila que ha fallado
+     *
+     * @param error Motivo del fallo
+     * @param <T>   Tipo del valor
+     * @return Resultado con error
+     */
+    public static <T> BulkResult<T> failed(String error) {
+        return new BulkResult<>(null, error);
+    }
+
+    /**
+     * Método que indica si la fila se ha procesado
+     *
+     * @return true si no hay error
+     */
+    public boolean isOk() {
+        return error == null;
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Clase que calcula la etiqueta (ETag) del contenido de una respuesta: un hash FNV-1a de 64 bits
+ * de los campos de cada Funko. Dos respuestas con los mismos Funkos tienen la misma etiqueta, así
+ * que un cliente que la envía en ifNoneMatch recibe NOT_MODIFIED si nada ha cambiado. Las fechas
+ * de creación y de actualización no cuentan, porque no se leen de la base de datos.
+ */
+public final class ETag {
+    // Atributos
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Constructor privado: la clase solo tiene métodos estáticos
+     */
+    private ETag() {
+    }
+
+    /**
+     * Método que devuelve la etiqueta de un Funko
+     *
+     * @param funko Funko
+     * @return Etiqueta
+     */
+    public static String of(Funko funko) {
+        return format(hash(FNV_OFFSET, funko));
+    }
+
+    /**
+     * Método que devuelve la etiqueta de una lista de Funkos, que depende también de su orden
+     *
+     * @param funkos Funkos
+     * @return Etiqueta
+     */
+    public static String of(List<Funko> funkos) {
+        long hash = mix(FNV_OFFSET, String.valueOf(funkos.size()));
+        for (Funko funko : funkos) {
+            hash = hash(hash, funko);
+        }
+        return format(hash);
+    }
+
+    /**
+     * Método que devuelve la etiqueta de una página de Funkos, incluido su cursor
+     *
+     * @param page Página
+     * @return Etiqueta
+     */
+    public static String of(FunkoPage page) {
+        long hash = mix(FNV_OFFSET, String.valueOf(page.funkos().size()));
+        for (Funko funko : page.funkos()) {
+            hash = hash(hash, funko);
+        }
+        return format(mix(hash, String.valueOf(page.next())));
+    }
+
+    /**
+     * Método que añade los campos de un Funko a un hash
+     *
+     * @param hash  Hash acumulado
+     * @param funko Funko
+     * @return Hash con el Funko
+     */
+    private static long hash(long hash, Funko funko) {
+        hash = mix(hash, String.valueOf(funko.getId()));
+        hash = mix(hash, String.valueOf(funko.getCod()));
+        hash = mix(hash, String.valueOf(funko.getNombre()));
+        hash = mix(hash, String.valueOf(funko.getModelo()));
+        hash = mix(hash, String.valueOf(funko.getPrecio()));
+        return mix(hash, String.valueOf(funko.getFecha_lanzamiento()));
+    }
+
+    /**
+     * Método que añade un texto a un hash, seguido de un separador para que "ab" + "c" no coincida
+     * con "a" + "bc"
+     *
+     * @param hash  Hash acumulado
+     * @param value Texto
+     * @return Hash con el texto
+     */
+    private static long mix(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0x1F) * FNV_PRIME;
+    }
+
+    /**
+     * Método que da formato a un hash
+     *
+     * @param hash Hash
+     * @return Hash en hexadecimal con 16 cifras
+     */
+    private static String format(long hash) {
+        return String.format("%016x", hash);
+    }
+}
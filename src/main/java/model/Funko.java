@@ -12,7 +12,7 @@ import java.util.UUID;
  * Clase Funko que representa un Funko
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Funko {
     private Long id;
     private UUID cod;
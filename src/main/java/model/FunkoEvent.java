@@ -0,0 +1,69 @@
+package model;
+
+/**
+ * Clase FunkoEvent con un cambio de los Funkos que se envía a las conexiones suscritas
+ *
+ * @param type  Tipo de cambio
+ * @param id    Id del Funko cambiado, null en un RESYNC
+ * @param funko Funko creado o actualizado, o el borrado si se conoce; null en un RESYNC
+ */
+public record FunkoEvent(Type type, Long id, Funko funko) {
+    /**
+     * Tipos de cambio. RESYNC indica que se han perdido cambios y el cliente debe volver a leer los
+     * Funkos y a suscribirse.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED, RESYNC
+    }
+
+    /**
+     * Método que construye el cambio de un Funko creado
+     *
+     * @param funko Funko creado
+     * @return Cambio
+     */
+    public static FunkoEvent created(Funko funko) {
+        return new FunkoEvent(Type.CREATED, funko.getId(), funko);
+    }
+
+    /**
+     * Método que construye el cambio de un Funko actualizado
+     *
+     * @param funko Funko actualizado
+     * @return Cambio
+     */
+    public static FunkoEvent updated(Funko funko) {
+        return new FunkoEvent(Type.UPDATED, funko.getId(), funko);
+    }
+
+    /**
+     * Método que construye el cambio de un Funko borrado
+     *
+     * @param id    Id del Funko
+     * @param funko Funko borrado, null si solo se conoce su id
+     * @return Cambio
+     */
+    public static FunkoEvent deleted(Long id, Funko funko) {
+        return new FunkoEvent(Type.DELETED, id, funko);
+    }
+
+    /**
+     * Método que construye el aviso de cambios perdidos
+     *
+     * @return Cambio
+     */
+    public static FunkoEvent resync() {
+        return new FunkoEvent(Type.RESYNC, null, null);
+    }
+
+    /**
+     * Método que indica si el cambio interesa a una suscripción a un modelo. Los avisos de cambios
+     * perdidos y los borrados de los que solo se conoce el id llegan a todas las suscripciones.
+     *
+     * @param modelo Modelo de la suscripción, null para todos
+     * @return true si el cambio se envía a la suscripción
+     */
+    public boolean matches(String modelo) {
+        return modelo == null || funko == null || modelo.equals(funko.getModelo());
+    }
+}
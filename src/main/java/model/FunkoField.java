@@ -0,0 +1,69 @@
+package model;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Campos de un Funko que se pueden pedir en una consulta, con su columna en la tabla FUNKOS. Solo
+ * se aceptan estos nombres, así que la lista de columnas de una consulta nunca viene del cliente.
+ */
+public enum FunkoField {
+    ID("id"), COD("cod"), NOMBRE("nombre"), MODELO("modelo"), PRECIO("precio"), FECHA_LANZAMIENTO("fecha_lanzamiento");
+
+    // Atributos
+    public static final Set<FunkoField> ALL = EnumSet.allOf(FunkoField.class);
+    private final String column;
+
+    /**
+     * Constructor del campo
+     *
+     * @param column Nombre de la columna y del campo en el protocolo
+     */
+    FunkoField(String column) {
+        this.column = column;
+    }
+
+    /**
+     * Método que devuelve la columna del campo
+     *
+     * @return Nombre de la columna
+     */
+    public String column() {
+        return column;
+    }
+
+    /**
+     * Método que convierte la lista de campos de una petición
+     *
+     * @param names Nombres de los campos, null o vacía para todos
+     * @return Campos pedidos
+     * @throws IllegalArgumentException si algún nombre no es un campo de Funko
+     */
+    public static Set<FunkoField> parse(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return ALL;
+        }
+        Set<FunkoField> fields = EnumSet.noneOf(FunkoField.class);
+        for (String name : names) {
+            fields.add(of(name));
+        }
+        return fields;
+    }
+
+    /**
+     * Método que busca un campo por su nombre
+     *
+     * @param name Nombre del campo
+     * @return Campo
+     * @throws IllegalArgumentException si el nombre no es un campo de Funko
+     */
+    public static FunkoField of(String name) {
+        for (FunkoField field : values()) {
+            if (field.column.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Campo de Funko desconocido: " + name);
+    }
+}
@@ -0,0 +1,20 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Clase FunkoPage con una página de Funkos ordenados por id
+ *
+ * @param funkos Funkos de la página
+ * @param next   Cursor para pedir la página siguiente, null si es la última
+ */
+public record FunkoPage(List<Funko> funkos, String next) {
+    /**
+     * Método que indica si hay más páginas
+     *
+     * @return true si hay cursor para la página siguiente
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+}
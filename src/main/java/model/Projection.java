@@ -0,0 +1,23 @@
+package model;
+
+import java.util.Set;
+
+/**
+ * Clase Projection con el contenido de una respuesta de la que solo se envían algunos campos de
+ * cada Funko. El contenido puede ser un Funko, una lista de Funkos o una página.
+ *
+ * @param fields  Campos que se envían
+ * @param content Contenido de la respuesta
+ */
+public record Projection(Set<FunkoField> fields, Object content) {
+    /**
+     * Método que proyecta un contenido solo si no se piden todos los campos
+     *
+     * @param fields  Campos pedidos
+     * @param content Contenido de la respuesta
+     * @return El contenido tal cual si se piden todos los campos, o su proyección
+     */
+    public static Object of(Set<FunkoField> fields, Object content) {
+        return fields.containsAll(FunkoField.ALL) ? content : new Projection(fields, content);
+    }
+}
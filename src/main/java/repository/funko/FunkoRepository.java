@@ -1,10 +1,14 @@
 package repository.funko;
 
+import model.BulkResult;
 import model.Funko;
+import model.FunkoField;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import repository.curd.CrudRepository;
 
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -12,6 +16,23 @@ import java.util.UUID;
  */
 public interface FunkoRepository extends CrudRepository<Funko, Long> {
 
+    /**
+     * Busca todos los funkos leyendo solo algunas columnas
+     *
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Flux de funkos
+     */
+    Flux<Funko> findAll(Set<FunkoField> fields);
+
+    /**
+     * Busca un funko por id leyendo solo algunas columnas
+     *
+     * @param id     Id del funko
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Mono de funko
+     */
+    Mono<Funko> findById(Long id, Set<FunkoField> fields);
+
     Flux<Funko> findByName(String nombre);
 
     Mono<Funko> findByUuid(UUID uuid);
@@ -20,5 +41,52 @@ public interface FunkoRepository extends CrudRepository<Funko, Long> {
 
     Flux<Funko> findByModel(String model);
 
+    Flux<Funko> findByModel(String model, Set<FunkoField> fields);
+
     Flux<Funko> findByYear(int myYear);
+
+    Flux<Funko> findByYear(int myYear, Set<FunkoField> fields);
+
+    /**
+     * Busca los funkos con id mayor que uno dado, ordenados por id, usando la clave primaria
+     *
+     * @param lastId Último id ya leído, 0 para empezar por el principio
+     * @param limit  Número máximo de funkos
+     * @return Flux de funkos
+     */
+    Flux<Funko> findAfter(long lastId, int limit);
+
+    /**
+     * Busca los funkos con id mayor que uno dado leyendo solo algunas columnas
+     *
+     * @param lastId Último id ya leído, 0 para empezar por el principio
+     * @param limit  Número máximo de funkos
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Flux de funkos
+     */
+    Flux<Funko> findAfter(long lastId, int limit, Set<FunkoField> fields);
+
+    /**
+     * Guarda una lista de funkos en una sola transacción con una sentencia por lotes
+     *
+     * @param funkos Funkos a guardar
+     * @return Flux con el resultado de cada funko, en el mismo orden y con el id generado
+     */
+    Flux<BulkResult<Funko>> saveAll(List<Funko> funkos);
+
+    /**
+     * Actualiza una lista de funkos en una sola transacción con una sentencia por lotes
+     *
+     * @param funkos Funkos a actualizar
+     * @return Flux con el resultado de cada funko, en el mismo orden
+     */
+    Flux<BulkResult<Funko>> updateAll(List<Funko> funkos);
+
+    /**
+     * Borra una lista de funkos por id en una sola transacción con una sentencia por lotes
+     *
+     * @param ids Ids de los funkos
+     * @return Flux con el resultado de cada id, en el mismo orden
+     */
+    Flux<BulkResult<Long>> deleteAllById(List<Long> ids);
 }
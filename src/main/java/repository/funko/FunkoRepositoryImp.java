@@ -5,14 +5,22 @@ import io.r2dbc.pool.ConnectionPool;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.Result;
 import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import model.BulkResult;
 import model.Funko;
+import model.FunkoField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 /**
  * Clase que implementa la interfaz de funko repository
@@ -56,6 +64,41 @@ public class FunkoRepositoryImp implements FunkoRepository {
 
     }
 
+    /**
+     * Método que devuelve un funko con solo los campos leídos de la fila. Un funko parcial no lleva
+     * fechas de creación ni de actualización.
+     *
+     * @param row    Fila de la base de datos
+     * @param fields Campos de la fila
+     * @return Un funko
+     */
+    private static Funko getFunko(Row row, Set<FunkoField> fields) {
+        if (fields.containsAll(FunkoField.ALL)) {
+            return getFunko(row);
+        }
+        var builder = Funko.builder().createdAt(null).updatedAt(null);
+        for (FunkoField field : fields) {
+            switch (field) {
+                case ID -> builder.id(row.get("id", Long.class));
+                case COD -> builder.cod(row.get("cod", UUID.class));
+                case NOMBRE -> builder.nombre(row.get("nombre", String.class));
+                case MODELO -> builder.modelo(row.get("modelo", String.class));
+                case PRECIO -> builder.precio(row.get("precio", Double.class));
+                case FECHA_LANZAMIENTO -> builder.fecha_lanzamiento(row.get("fecha_lanzamiento", LocalDate.class));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Método que devuelve la lista de columnas de una consulta
+     *
+     * @param fields Campos pedidos
+     * @return Columnas separadas por comas, o * si se piden todos
+     */
+    private static String columns(Set<FunkoField> fields) {
+        return fields.containsAll(FunkoField.ALL) ? "*" : fields.stream().map(FunkoField::column).collect(Collectors.joining(", "));
+    }
 
     /**
      * Método que devuelve todos los funkos
@@ -64,9 +107,49 @@ public class FunkoRepositoryImp implements FunkoRepository {
      */
     @Override
     public Flux<Funko> findAll() {
+        return findAll(FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve todos los funkos leyendo solo las columnas pedidas
+     *
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findAll(Set<FunkoField> fields) {
         logger.debug("Buscando todos los funkos");
-        String sql = "SELECT * FROM FUNKOS";
-        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row))), Connection::close);
+        String sql = "SELECT " + columns(fields) + " FROM FUNKOS";
+        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row, fields))), Connection::close);
+    }
+
+    /**
+     * Método que devuelve una página de funkos por clave con todas sus columnas
+     *
+     * @param lastId Último id ya leído
+     * @param limit  Número máximo de funkos
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findAfter(long lastId, int limit) {
+        return findAfter(lastId, limit, FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve una página de funkos por clave: los siguientes a un id, en orden de id.
+     * La consulta recorre el índice de la clave primaria desde lastId, así que cuesta lo mismo en la
+     * primera página que en la última.
+     *
+     * @param lastId Último id ya leído
+     * @param limit  Número máximo de funkos
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findAfter(long lastId, int limit, Set<FunkoField> fields) {
+        logger.debug("Buscando " + limit + " funkos a partir del id " + lastId);
+        String sql = "SELECT " + columns(fields) + " FROM FUNKOS WHERE id > ? ORDER BY id LIMIT ?";
+        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).bind(0, lastId).bind(1, limit).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row, fields))), Connection::close);
     }
 
     /**
@@ -77,9 +160,21 @@ public class FunkoRepositoryImp implements FunkoRepository {
      */
     @Override
     public Mono<Funko> findById(Long id) {
+        return findById(id, FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve un funko por ID leyendo solo las columnas pedidas
+     *
+     * @param id     Id del funko
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Un Mono funko
+     */
+    @Override
+    public Mono<Funko> findById(Long id, Set<FunkoField> fields) {
         logger.debug("Buscando funko por id: " + id);
-        String sql = "SELECT * FROM FUNKOS WHERE id = ?";
-        return Mono.usingWhen(connectionFactory.create(), connection -> Mono.from(connection.createStatement(sql).bind(0, id).execute()).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> getFunko(row)))), Connection::close);
+        String sql = "SELECT " + columns(fields) + " FROM FUNKOS WHERE id = ?";
+        return Mono.usingWhen(connectionFactory.create(), connection -> Mono.from(connection.createStatement(sql).bind(0, id).execute()).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> getFunko(row, fields)))), Connection::close);
     }
 
     /**
@@ -129,9 +224,21 @@ public class FunkoRepositoryImp implements FunkoRepository {
      */
     @Override
     public Flux<Funko> findByModel(String model) {
+        return findByModel(model, FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve un funko por modelo leyendo solo las columnas pedidas
+     *
+     * @param model  Modelo del funko
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Un Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findByModel(String model, Set<FunkoField> fields) {
         logger.debug("Buscando todos los funkos por modelo" + model);
-        String sql = "SELECT * FROM FUNKOS WHERE modelo LIKE ?";
-        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).bind(0, model).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row))), Connection::close);
+        String sql = "SELECT " + columns(fields) + " FROM FUNKOS WHERE modelo LIKE ?";
+        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).bind(0, model).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row, fields))), Connection::close);
     }
 
     /**
@@ -142,9 +249,21 @@ public class FunkoRepositoryImp implements FunkoRepository {
      */
     @Override
     public Flux<Funko> findByYear(int myYear) {
+        return findByYear(myYear, FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve un funko por año leyendo solo las columnas pedidas
+     *
+     * @param myYear Año del funko
+     * @param fields Campos que se leen; el resto queda nulo
+     * @return Un Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findByYear(int myYear, Set<FunkoField> fields) {
         logger.debug("Buscando todos los funkos por año" + myYear);
-        String sql = "SELECT * FROM FUNKOS WHERE YEAR(fecha_lanzamiento) = ?";
-        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).bind(0, myYear).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row))), Connection::close);
+        String sql = "SELECT " + columns(fields) + " FROM FUNKOS WHERE YEAR(fecha_lanzamiento) = ?";
+        return Flux.usingWhen(connectionFactory.create(), connection -> Flux.from(connection.createStatement(sql).bind(0, myYear).execute()).flatMap(result -> result.map((row, rowMetadata) -> getFunko(row, fields))), Connection::close);
     }
 
     /**
@@ -198,4 +317,127 @@ public class FunkoRepositoryImp implements FunkoRepository {
         return Mono.usingWhen(connectionFactory.create(), connection -> Mono.from(connection.createStatement(sql).execute()).then(), Connection::close);
 
     }
+
+    /**
+     * Método que guarda una lista de funkos con una sentencia INSERT por lotes. Los ids generados
+     * se leen del propio INSERT, sin volver a buscar cada funko por uuid.
+     *
+     * @param funkos Funkos a guardar
+     * @return Un Flux con el resultado de cada funko, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Funko>> saveAll(List<Funko> funkos) {
+        logger.debug("Guardando " + funkos.size() + " funkos");
+        String sql = "INSERT INTO FUNKOS (cod, nombre, modelo, precio, fecha_lanzamiento) VALUES (?, ?, ?, ?, ?)";
+        // El cod se genera aquí para poder devolverlo junto al id
+        var toSave = funkos.stream().map(funko -> funko.getCod() != null ? funko : funko.toBuilder().cod(UUID.randomUUID()).build()).toList();
+        return executeInTransaction(toSave, (connection, rows) -> {
+            Statement statement = connection.createStatement(sql).returnGeneratedValues("id");
+            for (int i = 0; i < rows.size(); i++) {
+                var funko = rows.get(i);
+                if (i > 0) {
+                    statement.add();
+                }
+                statement.bind(0, funko.getCod()).bind(1, funko.getNombre()).bind(2, funko.getModelo()).bind(3, funko.getPrecio()).bind(4, funko.getFecha_lanzamiento());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, rowMetadata) -> row.get("id", Long.class)))
+                    .index()
+                    .map(id -> BulkResult.ok(rows.get(id.getT1().intValue()).toBuilder().id(id.getT2()).build()));
+        });
+    }
+
+    /**
+     * Método que actualiza una lista de funkos con una sentencia UPDATE por lotes
+     *
+     * @param funkos Funkos a actualizar
+     * @return Un Flux con el resultado de cada funko, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Funko>> updateAll(List<Funko> funkos) {
+        logger.debug("Actualizando " + funkos.size() + " funkos");
+        String sql = "UPDATE FUNKOS SET nombre = ?, modelo = ?, precio = ?, FECHA_LANZAMIENTO = ? WHERE id = ?";
+        return executeInTransaction(funkos, (connection, rows) -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < rows.size(); i++) {
+                var funko = rows.get(i);
+                if (i > 0) {
+                    statement.add();
+                }
+                statement.bind(0, funko.getNombre()).bind(1, funko.getModelo()).bind(2, funko.getPrecio()).bind(3, funko.getFecha_lanzamiento()).bind(4, funko.getId());
+            }
+            return rowsUpdated(statement).map(updated -> {
+                var funko = rows.get(updated.getT1().intValue());
+                return updated.getT2() > 0 ? BulkResult.ok(funko) : BulkResult.failed("Funko con id " + funko.getId() + " no encontrado");
+            });
+        });
+    }
+
+    /**
+     * Método que borra una lista de funkos por id con una sentencia DELETE por lotes
+     *
+     * @param ids Ids de los funkos
+     * @return Un Flux con el resultado de cada id, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Long>> deleteAllById(List<Long> ids) {
+        logger.debug("Borrando " + ids.size() + " funkos por id");
+        String sql = "DELETE FROM FUNKOS WHERE id = ?";
+        return executeInTransaction(ids, (connection, rows) -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                statement.bind(0, rows.get(i));
+            }
+            return rowsUpdated(statement).map(deleted -> {
+                var id = rows.get(deleted.getT1().intValue());
+                return deleted.getT2() > 0 ? BulkResult.ok(id) : BulkResult.failed("Funko con id " + id + " no encontrado");
+            });
+        });
+    }
+
+    /**
+     * Método que ejecuta una sentencia por lotes y devuelve las filas afectadas por cada juego de parámetros
+     *
+     * @param statement Sentencia con todos sus parámetros
+     * @return Flux con la posición de cada juego de parámetros y sus filas afectadas
+     */
+    private static Flux<Tuple2<Long, Long>> rowsUpdated(Statement statement) {
+        return Flux.from(statement.execute()).concatMap(result -> Mono.from(result.getRowsUpdated()).defaultIfEmpty(0L)).index();
+    }
+
+    /**
+     * Método que ejecuta una operación por lotes en una sola conexión y una sola transacción. Si la
+     * sentencia por lotes falla se deshace entera y se repite fila a fila en otra transacción, de
+     * modo que las filas correctas se guardan y cada fila que falla tiene su propio error.
+     *
+     * @param rows  Filas de la operación
+     * @param batch Función que ejecuta la sentencia por lotes de unas filas en una conexión
+     * @param <T>   Tipo de las filas
+     * @param <R>   Tipo del resultado de cada fila
+     * @return Flux con el resultado de cada fila, en el mismo orden
+     */
+    private <T, R> Flux<BulkResult<R>> executeInTransaction(List<T> rows, BiFunction<Connection, List<T>, Flux<BulkResult<R>>> batch) {
+        if (rows.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.usingWhen(connectionFactory.create(), connection -> Mono.from(connection.beginTransaction())
+                .thenMany(batch.apply(connection, rows))
+                .collectList()
+                .flatMap(results -> results.size() == rows.size()
+                        ? Mono.from(connection.commitTransaction()).thenReturn(results)
+                        : Mono.error(new IllegalStateException("La sentencia por lotes devolvió " + results.size() + " resultados de " + rows.size())))
+                .onErrorResume(error -> {
+                    logger.warn("Operación por lotes de " + rows.size() + " filas deshecha, se repite fila a fila: " + error.getMessage());
+                    return Mono.from(connection.rollbackTransaction())
+                            .then(Mono.from(connection.beginTransaction()))
+                            .thenMany(Flux.fromIterable(rows).concatMap(row -> batch.apply(connection, List.of(row))
+                                    .onErrorResume(rowError -> Mono.just(BulkResult.failed(rowError.getMessage())))))
+                            .collectList()
+                            .flatMap(results -> Mono.from(connection.commitTransaction()).thenReturn(results));
+                })
+                .flatMapMany(Flux::fromIterable), Connection::close);
+    }
 }
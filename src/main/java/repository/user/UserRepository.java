@@ -1,19 +1,74 @@
 package repository.user;
 
 import common.User;
-import org.mindrot.jbcrypt.BCrypt;
+import database.DatabaseManager;
+import io.r2dbc.spi.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * User repository
+ * User repository. Los usuarios se guardan con su hash BCrypt ya calculado, así que cargarlos no
+ * cuesta nada, y se buscan en dos índices hash, por id y por nombre. Los usuarios pueden venir de
+ * un fichero CSV, de la tabla USUARIOS de la base de datos o, si no se configura ninguno, de los
+ * usuarios de ejemplo. Al recargar se construyen los índices nuevos aparte y se cambian de golpe,
+ * así que las búsquedas nunca esperan.
  */
 public class UserRepository {
     // Atributos
+    private static final List<User> DEFAULT_USERS = List.of(
+            new User(1, "pepe", "$2a$12$DvGQL7bw2SEmUkj.O.hik.yCI9OuSgPhb3P2GUfvIJAtQg6neAtWq", User.Role.ADMIN),
+            new User(2, "ana", "$2a$12$1a/nnc5OQ/w0/Q63IJKlJOragGU44UYSZiIZcSg6SYHmAO0.gWn6O", User.Role.USER));
     private static UserRepository instance;
-    private final List<User> users = List.of(new User(1, "pepe", BCrypt.hashpw("pepe1234", BCrypt.gensalt(12)), User.Role.ADMIN),
-            new User(2, "ana", BCrypt.hashpw("ana1234", BCrypt.gensalt(12)), User.Role.USER));
+    private final Logger logger = LoggerFactory.getLogger(UserRepository.class);
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile Users users = Users.of(DEFAULT_USERS);
+    private volatile Source source = Source.BUILTIN;
+    private volatile Path file;
+
+    /**
+     * Origen de los usuarios
+     */
+    public enum Source {
+        BUILTIN, FILE, DATABASE
+    }
+
+    /**
+     * Índices de los usuarios por id y por nombre. No se modifican: al recargar se crean otros.
+     *
+     * @param byId       Usuarios por id
+     * @param byUsername Usuarios por nombre
+     */
+    private record Users(Map<Long, User> byId, Map<String, User> byUsername) {
+        /**
+         * Método que construye los índices de una lista de usuarios
+         *
+         * @param users Usuarios
+         * @return Índices
+         */
+        static Users of(Collection<User> users) {
+            Map<Long, User> byId = new HashMap<>();
+            Map<String, User> byUsername = new HashMap<>();
+            for (User user : users) {
+                if (byId.put(user.id(), user) != null || byUsername.put(user.username(), user) != null) {
+                    throw new IllegalArgumentException("Usuario repetido: " + user.id() + " " + user.username());
+                }
+            }
+            return new Users(Map.copyOf(byId), Map.copyOf(byUsername));
+        }
+    }
 
     /**
      * Constructor de repository de usuario
@@ -40,7 +95,7 @@ public class UserRepository {
      * @return Un usuario
      */
     public Optional<User> findByUsername(String username) {
-        return users.stream().filter(user -> user.username().equals(username)).findFirst();
+        return username == null ? Optional.empty() : Optional.ofNullable(users.byUsername().get(username));
     }
 
     /**
@@ -50,6 +105,118 @@ public class UserRepository {
      * @return Un usuario
      */
     public Optional<User> findById(int id) {
-        return users.stream().filter(user -> user.id() == id).findFirst();
+        return Optional.ofNullable(users.byId().get((long) id));
+    }
+
+    /**
+     * Método que devuelve el número de usuarios
+     *
+     * @return Número de usuarios
+     */
+    public int count() {
+        return users.byId().size();
+    }
+
+    /**
+     * Método que indica de dónde se cargan los usuarios. No los carga: para eso está reload.
+     *
+     * @param source Origen de los usuarios
+     * @param file   Fichero CSV si el origen es FILE
+     */
+    public void configure(Source source, Path file) {
+        this.source = source;
+        this.file = file;
+    }
+
+    /**
+     * Método que registra una acción que se ejecuta cada vez que cambian los usuarios, por ejemplo
+     * para olvidar los tokens verificados con los usuarios anteriores
+     *
+     * @param listener Acción
+     */
+    public void onReload(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Método que vuelve a cargar los usuarios de su origen. Mientras se cargan se siguen usando los
+     * anteriores; si la carga falla se mantienen.
+     *
+     * @return Mono con el número de usuarios cargados
+     */
+    public Mono<Integer> reload() {
+        Mono<List<User>> loaded = switch (source) {
+            case BUILTIN -> Mono.just(DEFAULT_USERS);
+            case FILE -> Mono.fromCallable(() -> readFile(file)).subscribeOn(Schedulers.boundedElastic());
+            case DATABASE -> readDatabase();
+        };
+        return loaded.map(this::replace)
+                .doOnNext(count -> logger.debug("Cargados " + count + " usuarios de " + source))
+                .doOnError(e -> logger.error("Error al cargar los usuarios de " + source + ": " + e.getMessage()));
+    }
+
+    /**
+     * Método que cambia los usuarios por otros y avisa a quien lo haya pedido
+     *
+     * @param loaded Usuarios nuevos
+     * @return Número de usuarios
+     */
+    private int replace(List<User> loaded) {
+        users = Users.of(loaded);
+        reloadListeners.forEach(Runnable::run);
+        return loaded.size();
+    }
+
+    /**
+     * Método que lee los usuarios de un fichero CSV con las columnas id,username,password,role, donde
+     * password es el hash BCrypt. Las líneas vacías y las que empiezan por # se ignoran.
+     *
+     * @param file Fichero
+     * @return Usuarios
+     * @throws IOException Si no se puede leer el fichero o una línea no es válida
+     */
+    private static List<User> readFile(Path file) throws IOException {
+        if (file == null) {
+            throw new IOException("No se ha indicado el fichero de usuarios");
+        }
+        try (var lines = Files.lines(file)) {
+            return lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.startsWith("id,"))
+                    .map(UserRepository::parse)
+                    .toList();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Fichero de usuarios no válido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Método que convierte una línea del fichero en un usuario
+     *
+     * @param line Línea id,username,password,role
+     * @return Usuario
+     */
+    private static User parse(String line) {
+        var columns = line.split(",");
+        if (columns.length != 4) {
+            throw new IllegalArgumentException(line);
+        }
+        return new User(Long.parseLong(columns[0].trim()), columns[1].trim(), columns[2].trim(), User.Role.valueOf(columns[3].trim().toUpperCase()));
+    }
+
+    /**
+     * Método que lee los usuarios de la tabla USUARIOS
+     *
+     * @return Mono con los usuarios
+     */
+    private Mono<List<User>> readDatabase() {
+        var pool = DatabaseManager.getInstance().getConnectionPool();
+        return Flux.usingWhen(pool.create(),
+                connection -> Flux.from(connection.createStatement("SELECT id, username, password, role FROM USUARIOS").execute())
+                        .flatMap(result -> result.map((row, metadata) -> new User(
+                                row.get("id", Long.class),
+                                row.get("username", String.class),
+                                row.get("password", String.class),
+                                User.Role.valueOf(row.get("role", String.class))))),
+                Connection::close).collectList();
     }
 }
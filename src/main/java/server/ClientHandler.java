@@ -1,46 +1,57 @@
 package server;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import common.Login;
 import common.Request;
 import common.Response;
-import common.User;
-import model.Funko;
-import org.mindrot.jbcrypt.BCrypt;
+import common.codec.CodecException;
+import common.codec.Compression;
+import common.codec.Codecs;
+import common.codec.MessageCodec;
+import common.framing.Framing;
+import common.framing.MessageReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import repository.user.UserRepository;
+import server.admission.AdmissionController;
 import services.funko.FunkoService;
-import services.funko.FunkoServiceImp;
-import services.token.TokenService;
-import utils.LocalDateAdapter;
-import utils.LocalDateTimeAdapter;
+import utils.TlsSessions;
 
-import java.io.BufferedReader;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
-import java.rmi.ServerException;
-import java.time.LocalDate;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Clase que gestiona las peticiones de los clientes
+ * Clase que gestiona las peticiones de los clientes con lecturas bloqueantes.
+ * Se ejecuta en el ConnectionExecutor del servidor. Las lecturas tienen un timeout para poder
+ * enviar latidos cuando la conexión está en silencio y cerrarla si el cliente lleva demasiado
+ * tiempo sin enviar nada.
  */
-@SuppressWarnings("unchecked")
-public class ClientHandler extends Thread {
+public class ClientHandler implements Runnable {
     // Atributos
+    private static final int TLS_RECORD_SIZE = 16 * 1024;
     private final Logger logger = LoggerFactory.getLogger(ClientHandler.class.getName());
     private final Socket clientSocket;
-    private final Gson gson = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateAdapter()).registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
-    private final FunkoService funkoService;
+    private final RequestHandler requestHandler;
+    private final ServerConfig config;
     private final long clientNumber;
-    BufferedReader in;
-    PrintWriter out;
+    private final Executor writers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile long lastRead;
+    private volatile long lastWrite;
+    private volatile MessageCodec codec = Codecs.JSON;
+    private volatile MessageCodec pendingCodec;
+    private volatile Compression compression;
+    private volatile boolean pendingCompression;
+    private Framing.Mode mode;
+    MessageReader in;
+    OutboundQueue outbound;
 
     /**
      * Constructor de la clase
@@ -48,268 +59,245 @@ public class ClientHandler extends Thread {
      * @param socket       Socket del cliente
      * @param clientNumber Número del cliente
      * @param funkoService Servicio de Funko
+     * @param config       Configuración del servidor
+     * @param admission    Control de admisión compartido por todas las conexiones
+     * @param writers      Ejecutor en el que corre el escritor de la conexión
      */
-    public ClientHandler(Socket socket, long clientNumber, FunkoServiceImp funkoService) {
+    public ClientHandler(Socket socket, long clientNumber, FunkoService funkoService, ServerConfig config, AdmissionController admission, Executor writers) {
         this.clientSocket = socket;
-        this.funkoService = funkoService;
         this.clientNumber = clientNumber;
+        this.writers = writers;
+        this.config = config;
+        this.requestHandler = new RequestHandler(funkoService, admission, config);
     }
 
     /**
-     * Método que se ejecuta al iniciar el hilo
+     * Método que atiende la conexión hasta que el cliente se desconecta
      */
+    @Override
     public void run() {
+        boolean reaped = false;
         try {
+            // Un cliente que no completa la negociación TLS en el plazo de inactividad se descarta
+            clientSocket.setSoTimeout(toTimeout(config.getIdleTimeout()));
             openConnection();
-            String clientInput;
+            clientSocket.setSoTimeout(toTimeout(checkInterval()));
+            lastRead = lastWrite = System.nanoTime();
+            ByteBuffer message;
             Request request;
 
             while (true) {
-                clientInput = in.readLine();
-                logger.debug("Petición recibida: " + clientInput);
-                request = gson.fromJson(clientInput, Request.class);
-                handleRequest(request);
+                try {
+                    message = in.read();
+                } catch (SocketTimeoutException e) {
+                    if (reapIfIdle()) {
+                        // El escritor cierra la conexión cuando haya enviado el CLOSE
+                        reaped = true;
+                        return;
+                    }
+                    continue;
+                }
+                if (message == null) {
+                    break;
+                }
+                lastRead = System.nanoTime();
+                try {
+                    request = Codecs.detect(message).decodeRequest(message);
+                } catch (CodecException e) {
+                    send(new Response<>(Response.Status.ERROR, "Petición no válida", LocalDateTime.now().toString()));
+                    continue;
+                }
+                logger.debug("Petición recibida: " + request);
+                if (request != null && request.type() == Request.Type.LOGIN) {
+                    // El formato binario y la compresión no pueden ir en líneas: sus bytes pueden contener saltos de línea
+                    pendingCodec = mode == Framing.Mode.FRAME ? Codecs.requested(request) : null;
+                    pendingCompression = mode == Framing.Mode.FRAME && config.getCompressionThreshold() >= 0 && Compression.requested(request);
+                }
+                pending.incrementAndGet();
+                requestHandler.process(request)
+                        .doFinally(signal -> pending.decrementAndGet())
+                        .subscribe(new ResponseSubscriber(this::send, () -> !clientSocket.isClosed()));
             }
-        } catch (ServerException ex) {
-            out.println(gson.toJson(new Response(Response.Status.ERROR, ex.getMessage(), LocalDateTime.now().toString())));
+            System.err.println("Cliente " + clientNumber + " desconectado");
         } catch (IOException e) {
             System.err.println("Cliente " + clientNumber + " desconectado");
+        } finally {
+            if (!reaped) {
+                closeConnection();
+            }
         }
     }
 
     /**
-     * Método que gestiona las peticiones del cliente
+     * Método que se ejecuta cuando una lectura agota su timeout. Cierra la conexión si el cliente
+     * lleva idleTimeout sin enviar nada y no espera ninguna respuesta; si no, envía un latido
+     * cuando la conexión lleva heartbeatInterval en silencio.
      *
-     * @param request Petición del cliente
-     * @throws IOException Excepción de entrada/salida
+     * @return true si la conexión se ha cerrado por inactividad
      */
-    private void handleRequest(Request request) throws IOException {
-        logger.debug("Procesando petición: " + request);
-        switch (request.type()) {
-            case LOGIN -> login(request);
-            case FIND_ALL_FUNKOS -> findAllFunkos(request);
-            case OBTAIN_FUNKO_COD -> findFunkoById(request);
-            case OBTAIN_FUNKO_MODEL -> findFunkoByModel(request);
-            case OBTAIN_FUNKO_YEAR -> findFunkoByYear(request);
-            case SAVE_FUNKO -> saveFunko(request);
-            case UPDATE_FUNKO -> updateFunko(request);
-            case DELETE_FUNKO -> deleteFunko(request);
-            case SALIR -> salir();
-            default ->
-                    out.println(gson.toJson(new Response<>(Response.Status.ERROR, "Petición no soportada", LocalDateTime.now().toString())));
+    private boolean reapIfIdle() {
+        long now = System.nanoTime();
+        if (config.getIdleTimeout() > 0 && pending.get() == 0 && now - lastRead >= TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeout())) {
+            logger.debug("Cliente " + clientNumber + " inactivo, se cierra la conexión");
+            ServerMetrics.getInstance().increment("connections.reaped.idle");
+            send(new Response<>(Response.Status.CLOSE, "Conexión cerrada por inactividad", LocalDateTime.now().toString()));
+            return true;
         }
-
+        if (config.getHeartbeatInterval() > 0 && now - Math.max(lastRead, lastWrite) >= TimeUnit.MILLISECONDS.toNanos(config.getHeartbeatInterval())) {
+            ServerMetrics.getInstance().increment("connections.heartbeats");
+            send(RequestHandler.heartbeat());
+        }
+        return false;
     }
 
     /**
-     * Método que elimina un Funko
+     * Método que devuelve cada cuánto hay que comprobar la inactividad: el menor de los plazos activos
      *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * @return Milisegundos entre comprobaciones, 0 si no hay ningún plazo
      */
-    private void deleteFunko(Request request) throws ServerException {
-        var user = verifyToken(request.token());
-        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) {
-            var myId = Long.parseLong((String) request.content());
-            funkoService.deleteById(myId).subscribe(funko -> {
-                logger.debug("Funko eliminado: " + funko);
-                var resJson = gson.toJson(funko);
-                out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-            }, error -> out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString()))));
-        } else {
-            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
-            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+    private long checkInterval() {
+        long idle = config.getIdleTimeout();
+        long heartbeat = config.getHeartbeatInterval();
+        if (idle <= 0 || heartbeat <= 0) {
+            return Math.max(0, Math.max(idle, heartbeat));
         }
+        return Math.min(idle, heartbeat);
     }
 
     /**
-     * Método que actualiza un Funko
+     * Método que convierte un plazo en milisegundos en un timeout de socket
      *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * @param millis Plazo en milisegundos, 0 o negativo para esperar sin límite
+     * @return Timeout del socket
      */
-    private void updateFunko(Request request) throws ServerException {
-        verifyToken(request.token());
-        Funko funkoToUpdate = gson.fromJson(String.valueOf(request.content()), new TypeToken<Funko>() {
-        }.getType());
-        funkoService.update(funkoToUpdate).subscribe(funko -> {
-            logger.debug("Funko actualizado: " + funko);
-            var resJson = gson.toJson(funko);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        }, error -> {
-            logger.warn("Funko no actualizado: " + request.content());
-            out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString())));
-        });
+    private static int toTimeout(long millis) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, millis));
     }
 
     /**
-     * Método que guarda un Funko
+     * Método que codifica una respuesta en el formato de la conexión y comprime las listas que
+     * superan el umbral si el cliente lo ha pedido. La respuesta TOKEN a un LOGIN activa el
+     * formato y la compresión que ese LOGIN ha pedido.
      *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * @param response Respuesta
+     * @return Bytes del mensaje
      */
-    private void saveFunko(Request request) throws ServerException {
-        verifyToken(request.token());
-        Funko funkoToSave = gson.fromJson(String.valueOf(request.content()), new TypeToken<Funko>() {
-        }.getType());
-        funkoService.save(funkoToSave).subscribe(funko -> {
-            logger.debug("Funko guardado: " + funko);
-            var resJson = gson.toJson(funko);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        }, error -> {
-            logger.warn("Funko no guardado: " + error.getMessage());
-            out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString())));
-        });
+    private byte[] toBytes(Response response) {
+        if (response.status() == Response.Status.TOKEN) {
+            if (pendingCodec != null) {
+                codec = pendingCodec;
+                pendingCodec = null;
+                logger.debug("Cliente " + clientNumber + " usa mensajes en formato " + codec.name());
+            }
+            if (pendingCompression && compression == null) {
+                compression = new Compression(config.getMaxFrameSize());
+                logger.debug("Cliente " + clientNumber + " admite respuestas comprimidas");
+            }
+            pendingCompression = false;
+        }
+        byte[] bytes = codec.encode(response);
+        if (compression != null && response.content() instanceof List && bytes.length >= config.getCompressionThreshold()) {
+            byte[] compressed = compression.compress(bytes);
+            ServerMetrics.getInstance().recordCompression(bytes.length, compressed.length);
+            bytes = compressed;
+        }
+        return bytes;
     }
 
     /**
-     * Método que busca un Funko por año
+     * Método que envía una respuesta al cliente a través de la cola de salida. La respuesta se
+     * serializa en el hilo que la produce y la escribe el escritor de la conexión junto con las
+     * demás pendientes; la siguiente respuesta de un streaming no se pide hasta que el escritor ha
+     * enviado la anterior.
      *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * @param response Respuesta a enviar
+     * @param written  Se ejecuta cuando la respuesta se ha escrito
      */
-    private void findFunkoByYear(Request request) throws ServerException {
-        verifyToken(request.token());
-        var myYear = Integer.parseInt((String) request.content());
-        funkoService.findByYear(myYear).collectList().subscribe(funkos -> {
-            logger.debug("Enviando findFunkoByYear funko: " + funkos);
-            var resJson = gson.toJson(funkos);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        }, error -> {
-            logger.warn("Funko no encontrado por año: " + request.content());
-            out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString())));
+    private void send(Response response, Runnable written) {
+        byte[] bytes = toBytes(response);
+        outbound.offer(bytes, () -> {
+            lastWrite = System.nanoTime();
+            if (response.status() == Response.Status.CLOSE) {
+                closeConnection();
+            }
+            written.run();
         });
     }
 
     /**
-     * Método que busca un Funko por modelo
+     * Método que envía una respuesta al cliente
      *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * @param response Respuesta a enviar
      */
-    private void findFunkoByModel(Request request) throws ServerException {
-        verifyToken(request.token());
-        var myModel = request.content();
-        funkoService.findByModel((String) myModel).collectList().subscribe(funkos -> {
-            logger.debug("Enviando findFunkoByModel funko: " + funkos);
-            var resJson = gson.toJson(funkos);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        }, error -> {
-            logger.warn("Funko no encontrado por modelo: " + request.content());
-            out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString())));
+    private void send(Response response) {
+        send(response, () -> {
         });
     }
 
     /**
-     * Método que gestiona el login
-     *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
+     * Método que cierra la conexión en cuanto se hayan enviado las respuestas ya encoladas. El
+     * servidor lo usa al apagarse, una vez terminadas las peticiones en curso.
      */
-    private void login(Request request) throws ServerException {
-        logger.debug("Procesando petición de login: " + request);
-        Login login = gson.fromJson(String.valueOf(request.content()), new TypeToken<Login>() {
-        }.getType());
-
-        var user = UserRepository.getInstance().findByUsername(login.username());
-        if (user.isEmpty() || !BCrypt.checkpw(login.password(), user.get().password())) {
-            logger.warn("Usuario o contraseña incorrectos");
-            throw new ServerException("Usuario o contraseña incorrectos");
+    void closeAfterPending() {
+        var queue = outbound;
+        if (queue == null) {
+            closeConnection();
+        } else {
+            queue.afterPending(this::closeConnection);
         }
-
-        var token = TokenService.getInstance().createToken(user.get(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
-        logger.debug("Token generado: " + token);
-        out.println(gson.toJson(new Response<>(Response.Status.TOKEN, token, LocalDateTime.now().toString())));
     }
 
     /**
-     * Método que cierra la conexión con el cliente
-     *
-     * @throws IOException Excepción de entrada/salida
+     * Método que cierra la conexión con el cliente. Las respuestas que aún no se han enviado se
+     * descartan.
      */
-    private void salir() throws IOException {
-        out.println(gson.toJson(new Response<>(Response.Status.CLOSE, "Cerrando conexión con el servidor", LocalDateTime.now().toString())));
-        closeConnection();
-    }
-
-    /**
-     * Método que cierra la conexión con el cliente
-     *
-     * @throws IOException Excepción de entrada/salida
-     */
-    private void closeConnection() throws IOException {
+    void closeConnection() {
         logger.debug("Cerrando la conexión con el cliente " + clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort());
-        out.close();
-        in.close();
-        clientSocket.close();
-    }
-
-    /**
-     * Método que busca un Funko por id
-     *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
-     */
-    private void findFunkoById(Request request) throws ServerException {
-        verifyToken(request.token());
-        var myId = Long.parseLong((String) request.content());
-        funkoService.findById(myId).subscribe(funko -> {
-            logger.debug("Enviando funko: " + funko);
-            var resJson = gson.toJson(funko);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        }, error -> {
-            logger.warn("Funko no encontrado" + request.content());
-            out.println(gson.toJson(new Response(Response.Status.ERROR, error.getMessage(), LocalDateTime.now().toString())));
-        });
-    }
-
-    /**
-     * Método que busca todos los Funkos
-     *
-     * @param request Petición del cliente
-     * @throws ServerException Excepción del servidor
-     */
-    private void findAllFunkos(Request request) throws ServerException {
-        verifyToken(request.token());
-        funkoService.findAll().collectList().subscribe(funkos -> {
-            logger.debug("Enviando funko: " + funkos);
-            var resJson = gson.toJson(funkos);
-            out.println(gson.toJson(new Response<>(Response.Status.OK, resJson, LocalDateTime.now().toString())));
-        });
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar el socket del cliente " + clientNumber);
+        }
+        if (outbound != null) {
+            outbound.close();
+        }
+        requestHandler.close();
+        if (compression != null) {
+            compression.close();
+        }
     }
 
     /**
-     * Método que verifica el token
+     * Método que hace la negociación TLS y registra si ha sido completa o reanudada y cuánto ha tardado
      *
-     * @param token Token del cliente
-     * @return Un Optional de User
-     * @throws ServerException Excepción del servidor
+     * @param sslSocket Socket TLS del cliente
+     * @throws IOException Excepción de entrada/salida
      */
-    private Optional<User> verifyToken(String token) throws ServerException {
-        if (TokenService.getInstance().verifyToken(token, Server.TOKEN_SECRET)) {
-            logger.debug("Token verificado");
-            var claims = TokenService.getInstance().getClaims(token, Server.TOKEN_SECRET);
-            var id = claims.get("userid").asInt();
-            var user = UserRepository.getInstance().findById(id);
-            if (user.isEmpty()) {
-                logger.error("Usuario no encontrado");
-                throw new ServerException("Usuario no encontrado");
-            }
-            return user;
-        } else {
-            logger.error("Token no verificado");
-            throw new ServerException("Token no válido");
-        }
+    private void handshake(SSLSocket sslSocket) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        sslSocket.startHandshake();
+        boolean resumed = TlsSessions.isResumed(sslSocket.getSession(), startMillis);
+        ServerMetrics.getInstance().recordHandshake(resumed, System.nanoTime() - start);
+        logger.debug("Cliente " + clientNumber + ": sesión TLS " + (resumed ? "reanudada" : "nueva"));
     }
 
     /**
-     * Método que abre la conexión con el cliente
+     * Método que abre la conexión con el cliente y negocia la separación de mensajes
      *
      * @throws IOException Excepción de entrada/salida
      */
     private void openConnection() throws IOException {
         logger.debug("Conectando con el cliente: " + clientNumber + " : " + clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort());
-        in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        out = new PrintWriter(clientSocket.getOutputStream(), true);
+        if (clientSocket instanceof SSLSocket sslSocket) {
+            handshake(sslSocket);
+        }
+        var input = new BufferedInputStream(clientSocket.getInputStream());
+        // Buffer del tamaño de un registro TLS para que cada tanda de respuestas salga en pocos registros
+        var output = new BufferedOutputStream(clientSocket.getOutputStream(), TLS_RECORD_SIZE);
+        mode = Framing.accept(input, output);
+        logger.debug("Cliente " + clientNumber + " usa mensajes en modo " + mode);
+        in = Framing.reader(mode, input, config.getMaxFrameSize());
+        outbound = new OutboundQueue(Framing.writer(mode, output), this::closeConnection, OutboundQueue.DEFAULT_MAX_BATCH, writers);
     }
 }
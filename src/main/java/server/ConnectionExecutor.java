@@ -0,0 +1,189 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutor de conexiones del servidor bloqueante. Atiende como mucho maxConnections conexiones
+ * a la vez, deja esperando en cola hasta queueSize más y rechaza el resto.
+ * Cada conexión se ejecuta en un hilo virtual (JDK 21+) o en un pool acotado de hilos de plataforma.
+ * El escritor de cada conexión atendida corre aparte, en otro hilo virtual o en un segundo pool
+ * del mismo tamaño, porque cada conexión tiene el suyo y termina con ella.
+ */
+public class ConnectionExecutor implements AutoCloseable {
+    // Atributos
+    private final Logger logger = LoggerFactory.getLogger(ConnectionExecutor.class);
+    private final ExecutorService executor;
+    private final ExecutorService writers;
+    private final Semaphore slots;
+    private final BlockingQueue<Runnable> waiting;
+    private final Mode mode;
+    private final int maxConnections;
+
+    /**
+     * Modos de ejecución de las conexiones
+     */
+    public enum Mode {
+        VIRTUAL, PLATFORM
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param mode           Modo de ejecución solicitado
+     * @param maxConnections Número máximo de conexiones atendidas a la vez
+     * @param queueSize      Número máximo de conexiones esperando un hueco
+     */
+    public ConnectionExecutor(Mode mode, int maxConnections, int queueSize) {
+        this.maxConnections = maxConnections;
+        this.slots = new Semaphore(maxConnections);
+        this.waiting = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        ExecutorService virtualExecutor = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+            this.writers = virtualExecutor;
+            this.mode = Mode.VIRTUAL;
+        } else {
+            if (mode == Mode.VIRTUAL) {
+                logger.warn("Hilos virtuales no disponibles en esta JVM, se usa un pool acotado de " + maxConnections + " hilos");
+            }
+            this.executor = Executors.newFixedThreadPool(maxConnections);
+            var number = new AtomicInteger();
+            // Daemon: un escritor bloqueado por un cliente que no lee no impide que la JVM termine
+            this.writers = Executors.newFixedThreadPool(maxConnections, task -> {
+                var thread = new Thread(task, "writer-" + number.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.mode = Mode.PLATFORM;
+        }
+        logger.debug("Ejecutor de conexiones en modo " + this.mode + " con " + maxConnections + " conexiones y cola de " + queueSize);
+    }
+
+    /**
+     * Método que indica si la JVM soporta hilos virtuales
+     *
+     * @return true si existen hilos virtuales
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Método que crea un ejecutor de un hilo virtual por tarea. Se hace por reflexión para
+     * que el proyecto siga compilando con JDK 17.
+     *
+     * @return Ejecutor o null si la JVM no soporta hilos virtuales
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Método que devuelve el modo efectivo del ejecutor
+     *
+     * @return Modo de ejecución
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Método que ejecuta una conexión si hay hueco, o la deja en cola si no lo hay
+     *
+     * @param connection Conexión a atender
+     * @return false si no hay hueco ni sitio en la cola y la conexión debe rechazarse
+     */
+    public boolean execute(Runnable connection) {
+        Runnable task = () -> {
+            try {
+                connection.run();
+            } finally {
+                slots.release();
+                drain();
+            }
+        };
+        if (slots.tryAcquire()) {
+            executor.execute(task);
+            return true;
+        }
+        if (waiting.offer(task)) {
+            // Puede haberse liberado un hueco mientras encolábamos
+            drain();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Método que lanza el escritor de una conexión. No ocupa hueco: solo lo pide una conexión que
+     * ya está siendo atendida.
+     *
+     * @param writer Tarea del escritor
+     */
+    public void executeWriter(Runnable writer) {
+        writers.execute(writer);
+    }
+
+    /**
+     * Método que lanza las conexiones en cola mientras queden huecos libres
+     */
+    private void drain() {
+        while (!waiting.isEmpty() && slots.tryAcquire()) {
+            Runnable task = waiting.poll();
+            if (task == null) {
+                slots.release();
+                return;
+            }
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Método que devuelve el número de conexiones atendidas ahora mismo
+     *
+     * @return Conexiones activas
+     */
+    public int activeConnections() {
+        return maxConnections - slots.availablePermits();
+    }
+
+    /**
+     * Método que devuelve el número de conexiones esperando en cola
+     *
+     * @return Conexiones en cola
+     */
+    public int queuedConnections() {
+        return waiting.size();
+    }
+
+    /**
+     * Método que detiene el ejecutor
+     *
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    @Override
+    public void close() throws InterruptedException {
+        waiting.clear();
+        executor.shutdown();
+        writers.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
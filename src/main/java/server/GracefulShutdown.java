@@ -0,0 +1,97 @@
+package server;
+
+import database.DatabaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.admission.AdmissionController;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Apagado ordenado del servidor: deja de aceptar conexiones, rechaza las peticiones nuevas con BUSY,
+ * espera como mucho timeoutMillis a que terminen las que están en curso, cierra las conexiones y
+ * por último el pool de la base de datos. Se ejecuta una sola vez, desde el hook de apagado de la
+ * JVM o al terminar el main, lo que ocurra antes; la otra llamada espera a que termine.
+ */
+public class GracefulShutdown {
+    // Atributos
+    private final Logger logger = LoggerFactory.getLogger(GracefulShutdown.class);
+    private final AdmissionController admission;
+    private final long timeoutMillis;
+    private final List<Closeable> listeners = new CopyOnWriteArrayList<>();
+    private final List<Closeable> connections = new CopyOnWriteArrayList<>();
+    private boolean done;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param admission     Control de admisión con las peticiones en curso
+     * @param timeoutMillis Tiempo máximo de espera a las peticiones en curso
+     */
+    public GracefulShutdown(AdmissionController admission, long timeoutMillis) {
+        this.admission = admission;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Método que registra lo que acepta conexiones nuevas; se cierra lo primero
+     *
+     * @param listener Socket o servidor que acepta conexiones
+     */
+    public void stopAccepting(Closeable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Método que registra lo que hay que cerrar cuando terminan las peticiones en curso
+     *
+     * @param connection Conexiones del servidor
+     */
+    public void closeAfterDrain(Closeable connection) {
+        connections.add(connection);
+    }
+
+    /**
+     * Método que apaga el servidor
+     */
+    public synchronized void run() {
+        if (done) {
+            return;
+        }
+        done = true;
+        logger.info("Apagando el servidor");
+        listeners.forEach(this::closeQuietly);
+        admission.startDraining();
+        try {
+            if (admission.awaitDrained(timeoutMillis)) {
+                logger.info("Peticiones en curso terminadas");
+            } else {
+                logger.warn("Se cierran las conexiones con " + admission.inFlight() + " peticiones aún en curso");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connections.forEach(this::closeQuietly);
+        try {
+            DatabaseManager.getInstance().close();
+        } catch (Exception e) {
+            logger.error("Error al cerrar la base de datos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Método que cierra un recurso registrando el error si lo hay
+     *
+     * @param closeable Recurso a cerrar
+     */
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar durante el apagado: " + e.getMessage());
+        }
+    }
+}
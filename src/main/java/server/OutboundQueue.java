@@ -0,0 +1,174 @@
+package server;
+
+import common.framing.MessageWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de salida de una conexión bloqueante. Cualquier hilo puede encolar mensajes, pero solo el
+ * escritor de la conexión los escribe: una tarea propia que espera en la cola y hace todas las
+ * escrituras en el socket. Quien encola nunca escribe, así que un cliente lento solo retiene a su
+ * escritor y no a los hilos que producen las respuestas. El escritor saca todo lo pendiente de una
+ * vez y hace un único flush por tanda, de modo que varias respuestas seguidas salen en una sola
+ * escritura en el socket.
+ */
+public class OutboundQueue implements AutoCloseable {
+    // Atributos
+    public static final int DEFAULT_MAX_BATCH = 64;
+    // Mensaje vacío que solo despierta al escritor para que vea que la cola se ha cerrado
+    private static final Message WAKE_UP = new Message(null, null);
+    private final Logger logger = LoggerFactory.getLogger(OutboundQueue.class);
+    private final BlockingQueue<Message> pending = new LinkedBlockingQueue<>();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final MessageWriter writer;
+    private final Runnable onError;
+    private final int maxBatch;
+    private volatile boolean failed;
+    private volatile boolean closed;
+
+    /**
+     * Mensaje pendiente y la acción a ejecutar cuando se ha enviado
+     *
+     * @param data    Bytes del mensaje
+     * @param written Acción al terminar de enviarlo, puede ser null
+     */
+    private record Message(byte[] data, Runnable written) {
+    }
+
+    /**
+     * Constructor de la clase. Lanza el escritor de la conexión en el ejecutor dado.
+     *
+     * @param writer   Escritor de mensajes de la conexión
+     * @param onError  Acción a ejecutar si falla una escritura, normalmente cerrar la conexión
+     * @param maxBatch Número máximo de mensajes por flush
+     * @param writers  Ejecutor en el que corre el escritor de la conexión
+     */
+    public OutboundQueue(MessageWriter writer, Runnable onError, int maxBatch, Executor writers) {
+        this.writer = writer;
+        this.onError = onError;
+        this.maxBatch = Math.max(1, maxBatch);
+        writers.execute(this::write);
+    }
+
+    /**
+     * Método que encola un mensaje para el escritor. No bloquea ni escribe nada.
+     *
+     * @param data    Bytes del mensaje
+     * @param written Se ejecuta cuando el mensaje se ha enviado o descartado, puede ser null
+     */
+    public void offer(byte[] data, Runnable written) {
+        var message = new Message(data, written);
+        pending.add(message);
+        // Si la cola se ha cerrado puede que el escritor ya no lo vea: se descarta aquí
+        if (closed && pending.remove(message)) {
+            notify(message);
+        }
+    }
+
+    /**
+     * Método que ejecuta una acción en el escritor cuando ha enviado todos los mensajes encolados
+     * hasta ahora
+     *
+     * @param action Acción; también se ejecuta si la cola se cierra antes
+     */
+    public void afterPending(Runnable action) {
+        offer(null, action);
+    }
+
+    /**
+     * Método que cierra la cola. El escritor termina y los mensajes pendientes se descartan.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.add(WAKE_UP);
+    }
+
+    /**
+     * Tarea del escritor: espera mensajes y los escribe por tandas hasta que se cierra la cola
+     */
+    private void write() {
+        List<Message> batch = new ArrayList<>(maxBatch);
+        try {
+            while (!closed) {
+                batch.add(pending.take());
+                pending.drainTo(batch, maxBatch - 1);
+                send(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closed = true;
+            pending.drainTo(batch);
+            batch.forEach(OutboundQueue::notify);
+        }
+    }
+
+    /**
+     * Método que escribe una tanda de mensajes con un solo flush y avisa de cada uno
+     *
+     * @param batch Mensajes de la tanda, se vacía al terminar
+     */
+    private void send(List<Message> batch) {
+        if (!failed && !closed) {
+            try {
+                int sent = 0;
+                for (Message message : batch) {
+                    if (message.data() != null) {
+                        writer.append(message.data());
+                        sent++;
+                    }
+                }
+                if (sent > 0) {
+                    writer.flush();
+                    messages.add(sent);
+                    flushes.increment();
+                }
+            } catch (IOException e) {
+                logger.debug("Error al escribir en la conexión: " + e.getMessage());
+                failed = true;
+                onError.run();
+            }
+        }
+        batch.forEach(OutboundQueue::notify);
+        batch.clear();
+    }
+
+    /**
+     * Método que avisa de que un mensaje se ha enviado o descartado
+     *
+     * @param message Mensaje
+     */
+    private static void notify(Message message) {
+        if (message.written() != null) {
+            message.written().run();
+        }
+    }
+
+    /**
+     * Método que devuelve el número de mensajes enviados
+     *
+     * @return Mensajes enviados
+     */
+    public long messages() {
+        return messages.sum();
+    }
+
+    /**
+     * Método que devuelve el número de flush hechos; menos flush que mensajes indica que se han agrupado
+     *
+     * @return Flush hechos
+     */
+    public long flushes() {
+        return flushes.sum();
+    }
+}
@@ -0,0 +1,977 @@
+package server;
+
+import common.Login;
+import common.PageRequest;
+import common.Request;
+import common.Response;
+import common.User;
+import model.BulkResult;
+import model.ETag;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import repository.user.UserRepository;
+import server.admission.Admission;
+import server.admission.AdmissionController;
+import server.admission.TokenBucket;
+import server.exceptions.server.OverloadedException;
+import server.exceptions.server.ServerException;
+import services.funko.FunkoService;
+import services.token.TokenService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Clase que procesa las peticiones de los clientes, independientemente del tipo de conexión
+ * (bloqueante o no bloqueante). Cada petición se resuelve en un Mono con su respuesta, o en un Flux
+ * de trozos si el cliente pide una lista en streaming. Hay un RequestHandler por conexión, así que
+ * también guarda el cubo de fichas con el que se limita el ritmo de esa conexión.
+ */
+@SuppressWarnings("unchecked")
+public class RequestHandler {
+    // Atributos
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+    public static final int DEFAULT_BATCH_PARALLELISM = 8;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_BULK_CHUNK_SIZE = 100;
+    public static final int DEFAULT_MAX_BULK_SIZE = 10_000;
+    public static final int DEFAULT_MAX_PAGE_SIZE = 1000;
+    public static final int DEFAULT_WATCH_BUFFER_SIZE = 256;
+    public static final long DEFAULT_REQUEST_TIMEOUT = 0;
+    public static final boolean DEFAULT_SESSION_MODE = false;
+    private static final Set<Request.Type> BATCHABLE = EnumSet.of(Request.Type.FIND_ALL_FUNKOS, Request.Type.OBTAIN_FUNKO_COD,
+            Request.Type.OBTAIN_FUNKO_MODEL, Request.Type.OBTAIN_FUNKO_YEAR, Request.Type.SAVE_FUNKO, Request.Type.UPDATE_FUNKO,
+            Request.Type.DELETE_FUNKO);
+    private final Logger logger = LoggerFactory.getLogger(RequestHandler.class);
+    private final FunkoService funkoService;
+    private final int chunkSize;
+    private final AdmissionController admission;
+    private final TokenBucket connectionBucket;
+    private final int batchParallelism;
+    private final int maxBatchSize;
+    private final int bulkChunkSize;
+    private final int maxBulkSize;
+    private final int maxPageSize;
+    private final int watchBufferSize;
+    private final long requestTimeout;
+    private final boolean sessionMode;
+    private final AtomicReference<Session> session = new AtomicReference<>();
+    // Cancela las peticiones en curso y las suscripciones de la conexión cuando se cierra
+    private final Sinks.Empty<Void> closed = Sinks.empty();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoService Servicio de Funko
+     */
+    public RequestHandler(FunkoService funkoService) {
+        this(funkoService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoService Servicio de Funko
+     * @param chunkSize    Número máximo de Funkos en cada trozo de una respuesta en streaming
+     */
+    public RequestHandler(FunkoService funkoService, int chunkSize) {
+        this(funkoService, chunkSize, AdmissionController.unlimited());
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoService Servicio de Funko
+     * @param chunkSize    Número máximo de Funkos en cada trozo de una respuesta en streaming
+     * @param admission    Control de admisión compartido por todas las conexiones
+     */
+    public RequestHandler(FunkoService funkoService, int chunkSize, AdmissionController admission) {
+        this(funkoService, chunkSize, admission, DEFAULT_BATCH_PARALLELISM, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoService     Servicio de Funko
+     * @param chunkSize        Número máximo de Funkos en cada trozo de una respuesta en streaming
+     * @param admission        Control de admisión compartido por todas las conexiones
+     * @param batchParallelism Número máximo de peticiones de un lote que se ejecutan a la vez
+     * @param maxBatchSize     Número máximo de peticiones en un lote
+     */
+    public RequestHandler(FunkoService funkoService, int chunkSize, AdmissionController admission, int batchParallelism, int maxBatchSize) {
+        this(funkoService, admission, ServerConfig.builder().streamChunkSize(chunkSize).batchParallelism(batchParallelism).maxBatchSize(maxBatchSize).build());
+    }
+
+    /**
+     * Constructor de la clase con los límites de la configuración del servidor
+     *
+     * @param funkoService Servicio de Funko
+     * @param admission    Control de admisión compartido por todas las conexiones
+     * @param config       Configuración del servidor
+     */
+    public RequestHandler(FunkoService funkoService, AdmissionController admission, ServerConfig config) {
+        this.funkoService = funkoService;
+        this.chunkSize = Math.max(1, config.getStreamChunkSize());
+        this.admission = admission;
+        this.connectionBucket = admission.newConnectionBucket();
+        this.batchParallelism = Math.max(1, config.getBatchParallelism());
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.bulkChunkSize = Math.max(1, config.getBulkChunkSize());
+        this.maxBulkSize = config.getMaxBulkSize();
+        this.maxPageSize = Math.max(1, config.getMaxPageSize());
+        this.watchBufferSize = Math.max(1, config.getWatchBufferSize());
+        this.requestTimeout = config.getRequestTimeout();
+        this.sessionMode = config.isSessionMode();
+    }
+
+    /**
+     * Sesión de una conexión: el usuario al que está ligada, el token con el que se ligó y el
+     * temporizador que la deshace cuando caduca el token
+     *
+     * @param user     Usuario de la sesión
+     * @param token    Token de la sesión
+     * @param jti      Id del token, para comprobar si se revoca
+     * @param issuedAt Instante de emisión del token en milisegundos
+     * @param expiry   Temporizador de caducidad
+     */
+    private record Session(User user, String token, String jti, long issuedAt, Disposable expiry) {
+    }
+
+    /**
+     * Método que gestiona una petición devolviendo todas sus respuestas: una sola, o los trozos
+     * y el fin de una lista si la petición pide streaming. Antes pasa por el control de admisión: si
+     * el servidor o la conexión superan sus límites se responde BUSY sin tocar la base de datos, y si
+     * se admite la petición ocupa un hueco de peticiones en curso hasta que termina su respuesta.
+     *
+     * @param request Petición del cliente
+     * @return Flux con las respuestas a enviar al cliente, con el mismo id que la petición
+     */
+    public Flux<Response> process(Request request) {
+        // La petición de salida y los latidos siempre se atienden: no tocan la base de datos
+        if (request != null && (request.type() == Request.Type.SALIR || request.type() == Request.Type.PING)) {
+            return handle(request).flux();
+        }
+        var result = admission.admit(connectionBucket);
+        if (result != Admission.ADMITTED) {
+            logger.debug("Petición rechazada (" + result + "): " + request);
+            return Flux.just(busy(result.getMessage()).withId(request == null ? null : request.id()));
+        }
+        if (request != null && request.type() == Request.Type.WATCH_FUNKOS) {
+            // Una suscripción dura lo que la conexión, así que no ocupa un hueco de peticiones en curso
+            admission.release();
+            return watch(request).map(response -> response.withId(request.id()));
+        }
+        Flux<Response> responses;
+        // Una página ya está acotada, así que se responde entera aunque se pida streaming
+        if (request == null || !request.isStream() || !isListQuery(request.type()) || request.content() instanceof PageRequest) {
+            responses = handle(request).flux();
+        } else {
+            responses = stream(request).map(response -> response.withId(request.id()));
+        }
+        // Al cancelar la cadena se cancela la consulta y se devuelve su conexión al pool
+        return withDeadline(request, responses)
+                .takeUntilOther(closed.asMono())
+                .doFinally(signal -> admission.release());
+    }
+
+    /**
+     * Método que limita las respuestas de una petición a su plazo: el que indica la petición o, si
+     * no indica ninguno, requestTimeout. Si el plazo vence antes de la última respuesta se cancela el
+     * resto de la cadena, se cuenta en las métricas y se responde ERROR.
+     *
+     * @param request   Petición del cliente
+     * @param responses Respuestas de la petición
+     * @return Respuestas hasta que termina la petición o vence su plazo
+     */
+    private Flux<Response> withDeadline(Request request, Flux<Response> responses) {
+        long timeout = request != null && request.timeout() != null && request.timeout() > 0 ? request.timeout() : requestTimeout;
+        if (timeout <= 0) {
+            return responses;
+        }
+        var expired = new AtomicBoolean();
+        return responses
+                .takeUntilOther(Mono.delay(Duration.ofMillis(timeout)).doOnNext(tick -> expired.set(true)))
+                .concatWith(Mono.defer(() -> {
+                    if (!expired.get()) {
+                        return Mono.empty();
+                    }
+                    logger.debug("Petición caducada tras " + timeout + " ms: " + request);
+                    ServerMetrics.getInstance().increment("requests.expired");
+                    return Mono.just(error("La petición ha superado su plazo de " + timeout + " ms").withId(request.id()));
+                }));
+    }
+
+    /**
+     * Método que gestiona las peticiones del cliente
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta a enviar al cliente, con el mismo id que la petición
+     */
+    public Mono<Response> handle(Request request) {
+        logger.debug("Procesando petición: " + request);
+        if (request == null || request.type() == null) {
+            return Mono.just(error("Petición no soportada"));
+        }
+        // Devolvemos el id de la petición para que el cliente pueda tener varias en vuelo
+        return dispatch(request).map(response -> response.withId(request.id()));
+    }
+
+    /**
+     * Método que envía la petición a su manejador según el tipo
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     */
+    private Mono<Response> dispatch(Request request) {
+        try {
+            return switch (request.type()) {
+                case LOGIN -> login(request);
+                case SALIR -> salir();
+                case PING -> Mono.just(heartbeat());
+                case BATCH -> batch(request);
+                case SAVE_FUNKOS, UPDATE_FUNKOS, DELETE_FUNKOS -> bulk(request);
+                default -> authenticated(request, verifyToken(request.token()));
+            };
+        } catch (OverloadedException ex) {
+            return Mono.just(busy(ex.getMessage()));
+        } catch (ServerException | RuntimeException ex) {
+            return Mono.just(error(ex.getMessage()));
+        }
+    }
+
+    /**
+     * Método que envía a su manejador una petición cuyo token ya se ha verificado
+     *
+     * @param request Petición del cliente
+     * @param user    Usuario del token
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> authenticated(Request request, Optional<User> user) throws ServerException {
+        return switch (request.type()) {
+            case FIND_ALL_FUNKOS -> findAllFunkos(request);
+            case OBTAIN_FUNKO_COD -> findFunkoById(request);
+            case OBTAIN_FUNKO_MODEL -> findFunkoByModel(request);
+            case OBTAIN_FUNKO_YEAR -> findFunkoByYear(request);
+            case SAVE_FUNKO -> saveFunko(request);
+            case UPDATE_FUNKO -> updateFunko(request);
+            case DELETE_FUNKO -> deleteFunko(request, user);
+            case METRICS -> metrics(user);
+            case RELOAD_USERS -> reloadUsers(user);
+            case REVOKE_TOKEN -> revokeToken(request, user);
+            default -> throw new ServerException("Petición no soportada");
+        };
+    }
+
+    /**
+     * Método que ejecuta un lote de peticiones. El token del lote se verifica una sola vez y cada
+     * petición del lote gasta una ficha del límite del usuario. Las peticiones se ejecutan a la vez,
+     * como mucho batchParallelism, y cada una ocupa un hueco de peticiones en curso mientras se
+     * ejecuta: la primera usa el del propio lote y las demás piden uno más, y si no lo hay esa
+     * petición se responde BUSY. La respuesta OK contiene la respuesta de cada una en el mismo orden
+     * y con su id, de modo que el fallo de una no afecta a las demás.
+     *
+     * @param request Petición con la lista de peticiones del lote
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> batch(Request request) throws ServerException {
+        if (!(request.content() instanceof List<?> items)) {
+            throw new ServerException("El lote no contiene peticiones");
+        }
+        if (items.size() > maxBatchSize) {
+            throw new ServerException("El lote tiene " + items.size() + " peticiones, el máximo es " + maxBatchSize);
+        }
+        var user = verifyToken(request.token(), Math.max(1, items.size()));
+        ServerMetrics.getInstance().increment("batch.requests");
+        ServerMetrics.getInstance().add("batch.items", items.size());
+        var batchSlot = new AtomicBoolean(true);
+        return Flux.fromIterable((List<Request>) items)
+                .flatMapSequential(item -> withInFlightSlot(item, batchSlot, () -> batchItem(item, user)), batchParallelism)
+                .collectList()
+                .map(this::ok);
+    }
+
+    /**
+     * Método que ejecuta una petición de un lote ocupando un hueco de peticiones en curso: el del
+     * lote si está libre o, si no, uno más del control de admisión
+     *
+     * @param item      Petición del lote
+     * @param batchSlot Indica si el hueco del lote está libre
+     * @param response  Ejecuta la petición
+     * @return Mono con la respuesta, o BUSY si no hay hueco, con el id de la petición
+     */
+    private Mono<Response> withInFlightSlot(Request item, AtomicBoolean batchSlot, Supplier<Mono<Response>> response) {
+        return Mono.defer(() -> {
+            boolean own = batchSlot.compareAndSet(true, false);
+            if (!own && !admission.tryAcquireInFlight()) {
+                return Mono.just(busy(Admission.IN_FLIGHT.getMessage()).withId(item == null ? null : item.id()));
+            }
+            // El hueco se devuelve antes de que la respuesta siga adelante, así que el lote no termina con huecos ocupados
+            var released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (!released.compareAndSet(false, true)) {
+                    return;
+                }
+                if (own) {
+                    batchSlot.set(true);
+                } else {
+                    admission.releaseInFlight();
+                }
+            };
+            return response.get().doOnTerminate(release).doOnCancel(release);
+        });
+    }
+
+    /**
+     * Método que ejecuta una petición de un lote
+     *
+     * @param item Petición del lote
+     * @param user Usuario del token del lote
+     * @return Mono con la respuesta, con el id de la petición
+     */
+    private Mono<Response> batchItem(Request item, Optional<User> user) {
+        Mono<Response> response;
+        try {
+            if (item == null || !BATCHABLE.contains(item.type())) {
+                throw new ServerException("La petición " + (item == null ? null : item.type()) + " no se puede incluir en un lote");
+            }
+            response = authenticated(item, user);
+        } catch (ServerException | RuntimeException ex) {
+            response = Mono.just(error(ex.getMessage()));
+        }
+        return response.onErrorResume(error -> Mono.just(error(error.getMessage())))
+                .map(r -> r.withId(item == null ? null : item.id()));
+    }
+
+    /**
+     * Método que ejecuta una operación masiva: guarda o actualiza una lista de Funkos, o borra una
+     * lista de ids. Las filas se envían a la base de datos por trozos de bulkChunkSize, cada trozo
+     * con una sentencia por lotes en una sola conexión, y cada trozo gasta una ficha del límite del
+     * usuario. Los trozos se ejecutan uno detrás de otro, así que la petición nunca usa más de una
+     * conexión a la vez y le basta con su hueco de peticiones en curso. La respuesta OK contiene una
+     * respuesta por fila, en el mismo orden y con su posición como id, así que el fallo de una fila
+     * no afecta a las demás.
+     *
+     * @param request Petición con la lista de filas
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> bulk(Request request) throws ServerException {
+        if (!(request.content() instanceof List<?> rows)) {
+            throw new ServerException("La petición " + request.type() + " no contiene una lista");
+        }
+        if (rows.size() > maxBulkSize) {
+            throw new ServerException("La petición tiene " + rows.size() + " filas, el máximo es " + maxBulkSize);
+        }
+        var user = verifyToken(request.token(), Math.max(1, (rows.size() + bulkChunkSize - 1) / bulkChunkSize));
+        Flux<? extends BulkResult<?>> results = switch (request.type()) {
+            case SAVE_FUNKOS -> funkoService.saveAll((List<Funko>) rows, bulkChunkSize);
+            case UPDATE_FUNKOS -> funkoService.updateAll((List<Funko>) rows, bulkChunkSize);
+            default -> {
+                if (user.isEmpty() || !user.get().role().equals(User.Role.ADMIN)) {
+                    logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+                    throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+                }
+                yield funkoService.deleteAllById((List<Long>) rows, bulkChunkSize);
+            }
+        };
+        ServerMetrics.getInstance().increment("bulk.requests");
+        ServerMetrics.getInstance().add("bulk.rows", rows.size());
+        return results.index()
+                .map(row -> (row.getT2().isOk() ? ok(row.getT2().value()) : error(row.getT2().error())).withId(row.getT1()))
+                .collectList()
+                .map(responses -> {
+                    logger.debug(request.type() + ": " + responses.stream().filter(r -> r.status() == Response.Status.OK).count() + " de " + rows.size() + " filas correctas");
+                    return ok(responses);
+                })
+                .onErrorResume(error -> {
+                    logger.warn("Error en " + request.type() + ": " + error.getMessage());
+                    return Mono.just(error(error.getMessage()));
+                });
+    }
+
+    /**
+     * Método que elimina un Funko
+     *
+     * @param request Petición del cliente
+     * @param user    Usuario del token
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> deleteFunko(Request request, Optional<User> user) throws ServerException {
+        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) {
+            var myId = Long.parseLong((String) request.content());
+            return funkoService.deleteById(myId).map(funko -> {
+                logger.debug("Funko eliminado: " + funko);
+                return ok(funko);
+            }).onErrorResume(error -> Mono.just(error(error.getMessage())));
+        } else {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+    }
+
+    /**
+     * Método que actualiza un Funko
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> updateFunko(Request request) throws ServerException {
+        Funko funkoToUpdate = (Funko) request.content();
+        return funkoService.update(funkoToUpdate).map(funko -> {
+            logger.debug("Funko actualizado: " + funko);
+            return ok(funko);
+        }).onErrorResume(error -> {
+            logger.warn("Funko no actualizado: " + request.content());
+            return Mono.just(error(error.getMessage()));
+        });
+    }
+
+    /**
+     * Método que guarda un Funko
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> saveFunko(Request request) throws ServerException {
+        Funko funkoToSave = (Funko) request.content();
+        return funkoService.save(funkoToSave).map(funko -> {
+            logger.debug("Funko guardado: " + funko);
+            return ok(funko);
+        }).onErrorResume(error -> {
+            logger.warn("Funko no guardado: " + error.getMessage());
+            return Mono.just(error(error.getMessage()));
+        });
+    }
+
+    /**
+     * Método que indica si un tipo de petición devuelve una lista de Funkos
+     *
+     * @param type Tipo de petición
+     * @return true si la respuesta es una lista
+     */
+    private static boolean isListQuery(Request.Type type) {
+        return type == Request.Type.FIND_ALL_FUNKOS || type == Request.Type.OBTAIN_FUNKO_MODEL || type == Request.Type.OBTAIN_FUNKO_YEAR;
+    }
+
+    /**
+     * Método que lanza la consulta de una petición de lista. Si la petición pide solo algunos campos
+     * la consulta lee solo esas columnas.
+     *
+     * @param request Petición del cliente
+     * @param fields  Campos pedidos
+     * @return Flux con los Funkos según se leen del repositorio
+     * @throws ServerException Excepción del servidor
+     */
+    private Flux<Funko> query(Request request, Set<FunkoField> fields) throws ServerException {
+        boolean all = fields.containsAll(FunkoField.ALL);
+        return switch (request.type()) {
+            case FIND_ALL_FUNKOS -> all ? funkoService.findAll() : funkoService.findAll(fields);
+            case OBTAIN_FUNKO_MODEL -> all ? funkoService.findByModel((String) request.content()) : funkoService.findByModel((String) request.content(), fields);
+            case OBTAIN_FUNKO_YEAR -> {
+                int year = Integer.parseInt((String) request.content());
+                yield all ? funkoService.findByYear(year) : funkoService.findByYear(year, fields);
+            }
+            default -> throw new ServerException("La petición " + request.type() + " no devuelve una lista");
+        };
+    }
+
+    /**
+     * Método que devuelve los campos de cada Funko que pide una petición
+     *
+     * @param request Petición del cliente
+     * @return Campos pedidos, todos si la petición no indica ninguno
+     * @throws ServerException si algún campo no existe
+     */
+    private static Set<FunkoField> fields(Request request) throws ServerException {
+        try {
+            return FunkoField.parse(request.fields());
+        } catch (IllegalArgumentException ex) {
+            throw new ServerException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Método que envía una lista por trozos de como mucho chunkSize Funkos, según llegan del
+     * repositorio, y termina con una respuesta END con el total. Cada trozo se pide al repositorio
+     * cuando el suscriptor de la conexión ha escrito el anterior.
+     *
+     * @param request Petición del cliente
+     * @return Flux con las respuestas CHUNK y la respuesta END, o una respuesta ERROR
+     */
+    private Flux<Response> stream(Request request) {
+        Flux<Funko> funkos;
+        Set<FunkoField> fields;
+        try {
+            verifyToken(request.token());
+            fields = fields(request);
+            funkos = query(request, fields);
+        } catch (OverloadedException ex) {
+            return Flux.just(busy(ex.getMessage()));
+        } catch (ServerException | RuntimeException ex) {
+            return Flux.just(error(ex.getMessage()));
+        }
+        var sent = new AtomicLong();
+        return funkos.buffer(chunkSize)
+                .map(chunk -> {
+                    sent.addAndGet(chunk.size());
+                    return response(Response.Status.CHUNK, Projection.of(fields, chunk));
+                })
+                .concatWith(Mono.fromSupplier(() -> response(Response.Status.END, sent.get())))
+                .onErrorResume(error -> {
+                    logger.warn("Error enviando la lista de " + request.type() + ": " + error.getMessage());
+                    return Mono.just(error(error.getMessage()));
+                });
+    }
+
+    /**
+     * Método que suscribe la conexión a los cambios de los Funkos, de todos o de un modelo. Primero
+     * responde OK y después una respuesta EVENT por cada cambio, hasta que la conexión se cierra. Si
+     * la conexión no consume los cambios a tiempo recibe un EVENT RESYNC y la suscripción termina:
+     * el cliente debe volver a leer los Funkos y a suscribirse.
+     *
+     * @param request Petición del cliente con el modelo como contenido, o sin contenido
+     * @return Flux con la respuesta OK y los cambios, o una respuesta ERROR
+     */
+    private Flux<Response> watch(Request request) {
+        String modelo;
+        try {
+            verifyToken(request.token());
+            modelo = (String) request.content();
+        } catch (OverloadedException ex) {
+            return Flux.just(busy(ex.getMessage()));
+        } catch (ServerException | RuntimeException ex) {
+            return Flux.just(error(ex.getMessage()));
+        }
+        var metrics = ServerMetrics.getInstance();
+        var events = funkoService.watch(modelo, watchBufferSize)
+                .doOnNext(event -> {
+                    if (event.type() == FunkoEvent.Type.RESYNC) {
+                        metrics.increment("watch.resync");
+                    }
+                })
+                .map(event -> response(Response.Status.EVENT, event));
+        return Flux.just(ok(modelo == null ? "Suscrito a los cambios de los Funkos" : "Suscrito a los cambios de los Funkos " + modelo))
+                .concatWith(events)
+                .takeUntilOther(closed.asMono())
+                .doOnSubscribe(subscription -> metrics.add("watch.active", 1))
+                .doFinally(signal -> metrics.add("watch.active", -1));
+    }
+
+    /**
+     * Método que cancela las peticiones en curso y termina las suscripciones de la conexión, para
+     * no seguir consultando la base de datos para un cliente que ya no está. La conexión lo llama
+     * al cerrarse.
+     */
+    public void close() {
+        closed.tryEmitEmpty();
+        var current = session.getAndSet(null);
+        if (current != null) {
+            current.expiry().dispose();
+        }
+    }
+
+    /**
+     * Método que busca un Funko por año
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> findFunkoByYear(Request request) throws ServerException {
+        var fields = fields(request);
+        return query(request, fields).collectList().map(funkos -> {
+            logger.debug("Enviando findFunkoByYear funko: " + funkos);
+            return conditional(request, Projection.of(fields, funkos), ETag.of(funkos));
+        }).onErrorResume(error -> {
+            logger.warn("Funko no encontrado por año: " + request.content());
+            return Mono.just(error(error.getMessage()));
+        });
+    }
+
+    /**
+     * Método que busca un Funko por modelo
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> findFunkoByModel(Request request) throws ServerException {
+        var fields = fields(request);
+        return query(request, fields).collectList().map(funkos -> {
+            logger.debug("Enviando findFunkoByModel funko: " + funkos);
+            return conditional(request, Projection.of(fields, funkos), ETag.of(funkos));
+        }).onErrorResume(error -> {
+            logger.warn("Funko no encontrado por modelo: " + request.content());
+            return Mono.just(error(error.getMessage()));
+        });
+    }
+
+    /**
+     * Método que gestiona el login. La contraseña se comprueba en el pool de BCrypt del control de
+     * admisión, así que el hilo de la conexión queda libre mientras tanto; si el pool está lleno se
+     * responde BUSY.
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> login(Request request) throws ServerException {
+        logger.debug("Procesando petición de login: " + request);
+        Login login = (Login) request.content();
+
+        var user = UserRepository.getInstance().findByUsername(login.username());
+        if (user.isEmpty()) {
+            logger.warn("Usuario o contraseña incorrectos");
+            throw new ServerException("Usuario o contraseña incorrectos");
+        }
+
+        return admission.checkPassword(login.password(), user.get().password()).map(valid -> {
+            if (!valid) {
+                logger.warn("Usuario o contraseña incorrectos");
+                return error("Usuario o contraseña incorrectos");
+            }
+            var token = TokenService.getInstance().createToken(user.get(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+            logger.debug("Token generado: " + token);
+            if (sessionMode) {
+                bind(token, user.get());
+            }
+            return (Response) new Response<>(Response.Status.TOKEN, token, LocalDateTime.now().toString());
+        }).onErrorResume(OverloadedException.class, ex -> Mono.just(busy(ex.getMessage())));
+    }
+
+    /**
+     * Método que responde a la petición de cierre de la conexión
+     *
+     * @return Mono con la respuesta de cierre
+     */
+    private Mono<Response> salir() {
+        return Mono.just(new Response<>(Response.Status.CLOSE, "Cerrando conexión con el servidor", LocalDateTime.now().toString()));
+    }
+
+    /**
+     * Método que devuelve los contadores del servidor y las peticiones en curso. Solo para administradores.
+     *
+     * @param user Usuario del token
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> metrics(Optional<User> user) throws ServerException {
+        if (user.isEmpty() || !user.get().role().equals(User.Role.ADMIN)) {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+        Map<String, Long> metrics = new TreeMap<>(ServerMetrics.getInstance().snapshot());
+        metrics.put("requests.inFlight", (long) admission.inFlight());
+        return Mono.just(ok(metrics));
+    }
+
+    /**
+     * Método que vuelve a cargar los usuarios de su origen sin parar el servidor. Las peticiones
+     * siguen usando los usuarios anteriores hasta que termina la carga. Solo para administradores.
+     *
+     * @param user Usuario del token
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> reloadUsers(Optional<User> user) throws ServerException {
+        if (user.isEmpty() || !user.get().role().equals(User.Role.ADMIN)) {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+        return UserRepository.getInstance().reload()
+                .map(count -> ok("Usuarios recargados: " + count))
+                .onErrorResume(error -> Mono.just(error("No se han podido recargar los usuarios: " + error.getMessage())));
+    }
+
+    /**
+     * Método que revoca un token, o todos los emitidos hasta ahora para un usuario si el contenido
+     * es su id. La revocación dura lo que tardan en caducar esos tokens. Solo para administradores.
+     *
+     * @param request Petición con el token o el id del usuario a revocar
+     * @param user    Usuario del token
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> revokeToken(Request request, Optional<User> user) throws ServerException {
+        if (user.isEmpty() || !user.get().role().equals(User.Role.ADMIN)) {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+        if (request.content() == null) {
+            throw new ServerException("Falta el token o el usuario a revocar");
+        }
+        var tokens = TokenService.getInstance();
+        Long userId = null;
+        if (request.content() instanceof Number number) {
+            userId = number.longValue();
+        } else if (request.content() instanceof String text && text.matches("\\d+")) {
+            userId = Long.parseLong(text);
+        }
+        if (userId != null) {
+            tokens.revokeUser(userId, Server.TOKEN_EXPIRATION);
+            ServerMetrics.getInstance().increment("tokens.revoked");
+            return Mono.just(ok("Tokens del usuario " + userId + " revocados"));
+        }
+        if (!tokens.revokeToken(String.valueOf(request.content()), Server.TOKEN_SECRET)) {
+            throw new ServerException("Token no válido");
+        }
+        ServerMetrics.getInstance().increment("tokens.revoked");
+        return Mono.just(ok("Token revocado"));
+    }
+
+    /**
+     * Método que busca un Funko por id
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> findFunkoById(Request request) throws ServerException {
+        var myId = Long.parseLong((String) request.content());
+        var fields = fields(request);
+        var funkoFound = fields.containsAll(FunkoField.ALL) ? funkoService.findById(myId) : funkoService.findById(myId, fields);
+        return funkoFound.map(funko -> {
+            logger.debug("Enviando funko: " + funko);
+            return conditional(request, Projection.of(fields, funko), ETag.of(funko));
+        }).onErrorResume(error -> {
+            logger.warn("Funko no encontrado" + request.content());
+            return Mono.just(error(error.getMessage()));
+        });
+    }
+
+    /**
+     * Método que busca todos los Funkos, o una página si la petición lleva un PageRequest. El tamaño
+     * de la página se limita a maxPageSize y la respuesta lleva el cursor de la página siguiente.
+     *
+     * @param request Petición del cliente
+     * @return Mono con la respuesta
+     * @throws ServerException Excepción del servidor
+     */
+    private Mono<Response> findAllFunkos(Request request) throws ServerException {
+        var fields = fields(request);
+        if (request.content() instanceof PageRequest page) {
+            int size = Math.min(Math.max(1, page.size()), maxPageSize);
+            return funkoService.findAll(page.cursor(), size, fields).map(funkos -> {
+                logger.debug("Enviando página de " + funkos.funkos().size() + " funkos");
+                return conditional(request, Projection.of(fields, funkos), ETag.of(funkos));
+            }).onErrorResume(error -> Mono.just(error(error.getMessage())));
+        }
+        return query(request, fields).collectList().map(funkos -> {
+            logger.debug("Enviando funko: " + funkos);
+            return conditional(request, Projection.of(fields, funkos), ETag.of(funkos));
+        }).onErrorResume(error -> Mono.just(error(error.getMessage())));
+    }
+
+    /**
+     * Método que verifica el token
+     *
+     * @param token Token del cliente
+     * @return Un Optional de User
+     * @throws ServerException Excepción del servidor
+     */
+    private Optional<User> verifyToken(String token) throws ServerException {
+        return verifyToken(token, 1);
+    }
+
+    /**
+     * Método que verifica el token y gasta las fichas del límite del usuario
+     *
+     * @param token   Token del cliente
+     * @param permits Número de peticiones que se van a ejecutar
+     * @return Un Optional de User
+     * @throws ServerException Excepción del servidor
+     */
+    private Optional<User> verifyToken(String token, int permits) throws ServerException {
+        var user = sessionUser(token);
+        if (user.isEmpty()) {
+            user = Optional.of(authenticate(token));
+        }
+        if (!admission.admitUser((int) user.get().id(), permits)) {
+            throw new OverloadedException(Admission.USER_RATE.getMessage());
+        }
+        return user;
+    }
+
+    /**
+     * Método que verifica un token y devuelve su usuario. En modo sesión liga la conexión al usuario
+     * hasta que caduca el token.
+     *
+     * @param token Token del cliente
+     * @return Usuario del token
+     * @throws ServerException Si el token no es válido o su usuario no existe
+     */
+    private User authenticate(String token) throws ServerException {
+        var tokens = TokenService.getInstance();
+        var user = tokens.cachedUser(token, Server.TOKEN_SECRET);
+        if (user.isEmpty()) {
+            var decoded = tokens.decode(token, Server.TOKEN_SECRET);
+            if (decoded.isEmpty()) {
+                logger.error("Token no verificado");
+                throw new ServerException("Token no válido");
+            }
+            user = UserRepository.getInstance().findById(decoded.get().getClaim("userid").asInt());
+            if (user.isEmpty()) {
+                logger.error("Usuario no encontrado");
+                throw new ServerException("Usuario no encontrado");
+            }
+            tokens.remember(token, Server.TOKEN_SECRET, decoded.get(), user.get());
+        }
+        logger.debug("Token verificado");
+        if (sessionMode) {
+            bind(token, user.get());
+        }
+        return user.get();
+    }
+
+    /**
+     * Método que devuelve el usuario de la sesión de la conexión si la petición no lleva token o
+     * lleva el de la sesión, sin verificarlo ni decodificarlo
+     *
+     * @param token Token del cliente
+     * @return Usuario de la sesión, o vacío si no hay sesión o la petición lleva otro token
+     */
+    private Optional<User> sessionUser(String token) {
+        var current = session.get();
+        if (current == null || (token != null && !token.equals(current.token()))) {
+            return Optional.empty();
+        }
+        // Una sesión cuyo token se revoca se deshace en la siguiente petición
+        if (TokenService.getInstance().isRevoked(current.jti(), current.user().id(), current.issuedAt())) {
+            if (session.compareAndSet(current, null)) {
+                current.expiry().dispose();
+                logger.debug("Sesión del usuario " + current.user().username() + " revocada");
+            }
+            return Optional.empty();
+        }
+        return Optional.of(current.user());
+    }
+
+    /**
+     * Método que liga la conexión a un usuario hasta que caduca su token. Un temporizador deshace la
+     * sesión al caducar, así que las peticiones no comprueban la caducidad.
+     *
+     * @param token Token ya verificado
+     * @param user  Usuario del token
+     */
+    private void bind(String token, User user) {
+        var decoded = TokenService.getInstance().read(token);
+        if (decoded.isEmpty() || decoded.get().getExpiresAt() == null) {
+            return;
+        }
+        var delay = Math.max(0, decoded.get().getExpiresAt().getTime() - System.currentTimeMillis());
+        long issuedAt = TokenService.issuedAt(decoded.get());
+        var expiry = Disposables.swap();
+        var next = new Session(user, token, decoded.get().getId(), issuedAt, expiry);
+        var previous = session.getAndSet(next);
+        if (previous != null) {
+            previous.expiry().dispose();
+        }
+        expiry.update(Mono.delay(Duration.ofMillis(delay)).subscribe(tick -> expire(next)));
+        ServerMetrics.getInstance().increment("sessions.bound");
+        logger.debug("Conexión ligada al usuario " + user.username() + " durante " + delay + " ms");
+    }
+
+    /**
+     * Método que deshace la sesión de la conexión cuando caduca su token
+     *
+     * @param expired Sesión caducada
+     */
+    private void expire(Session expired) {
+        if (session.compareAndSet(expired, null)) {
+            ServerMetrics.getInstance().increment("sessions.expired");
+            logger.debug("Sesión del usuario " + expired.user().username() + " caducada");
+        }
+    }
+
+    /**
+     * Método que construye una respuesta correcta
+     *
+     * @param content Contenido de la respuesta
+     * @return Respuesta con estado OK
+     */
+    private Response ok(Object content) {
+        return new Response<>(Response.Status.OK, content, LocalDateTime.now().toString());
+    }
+
+    /**
+     * Método que construye la respuesta de una consulta con la etiqueta de su resultado. Si la
+     * petición trae la misma etiqueta en ifNoneMatch el cliente ya tiene ese resultado, así que se
+     * responde NOT_MODIFIED sin contenido y no se serializa.
+     *
+     * @param request Petición del cliente
+     * @param content Contenido de la respuesta
+     * @param etag    Etiqueta del contenido
+     * @return Respuesta OK o NOT_MODIFIED con la etiqueta
+     */
+    private Response conditional(Request request, Object content, String etag) {
+        if (etag.equals(request.ifNoneMatch())) {
+            ServerMetrics.getInstance().increment("responses.not_modified");
+            return response(Response.Status.NOT_MODIFIED, null).withETag(etag);
+        }
+        return ok(content).withETag(etag);
+    }
+
+    /**
+     * Método que construye una respuesta con un estado
+     *
+     * @param status  Estado de la respuesta
+     * @param content Contenido de la respuesta
+     * @return Respuesta
+     */
+    private Response response(Response.Status status, Object content) {
+        return new Response<>(status, content, LocalDateTime.now().toString());
+    }
+
+    /**
+     * Método que construye la respuesta de una petición rechazada por exceso de carga
+     *
+     * @param message Motivo del rechazo
+     * @return Respuesta con estado BUSY
+     */
+    private Response busy(String message) {
+        return new Response<>(Response.Status.BUSY, message, LocalDateTime.now().toString());
+    }
+
+    /**
+     * Método que construye un latido, la respuesta a PING y el mensaje que envía el servidor a una conexión sin tráfico
+     *
+     * @return Respuesta con estado HEARTBEAT
+     */
+    public static Response heartbeat() {
+        return new Response<>(Response.Status.HEARTBEAT, "PONG", LocalDateTime.now().toString());
+    }
+
+    /**
+     * Método que construye una respuesta de error
+     *
+     * @param message Mensaje de error
+     * @return Respuesta con estado ERROR
+     */
+    private Response error(String message) {
+        return new Response<>(Response.Status.ERROR, message, LocalDateTime.now().toString());
+    }
+}
@@ -0,0 +1,64 @@
+package server;
+
+import common.Response;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Suscriptor que escribe las respuestas de una petición en la conexión de una en una.
+ * Solo pide la siguiente respuesta cuando la anterior se ha escrito, de modo que una respuesta
+ * en streaming avanza al ritmo al que el socket admite escrituras y nunca acumula más de un trozo.
+ */
+public class ResponseSubscriber extends BaseSubscriber<Response> {
+    // Atributos
+    private final ResponseWriter writer;
+    private final BooleanSupplier open;
+
+    /**
+     * Interfaz que escribe una respuesta en una conexión
+     */
+    @FunctionalInterface
+    public interface ResponseWriter {
+        /**
+         * Método que escribe una respuesta
+         *
+         * @param response Respuesta a escribir
+         * @param written  Se ejecuta cuando la respuesta se ha escrito o descartado
+         */
+        void write(Response response, Runnable written);
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param writer Escritor de respuestas de la conexión
+     * @param open   Indica si la conexión sigue abierta
+     */
+    public ResponseSubscriber(ResponseWriter writer, BooleanSupplier open) {
+        this.writer = writer;
+        this.open = open;
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        request(1);
+    }
+
+    @Override
+    protected void hookOnNext(Response response) {
+        writer.write(response, this::next);
+    }
+
+    /**
+     * Método que pide la siguiente respuesta, o cancela la petición si la conexión se ha cerrado
+     */
+    private void next() {
+        if (open.getAsBoolean()) {
+            request(1);
+        } else {
+            dispose();
+        }
+    }
+}
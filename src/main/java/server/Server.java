@@ -1,27 +1,42 @@
 package server;
 
+import common.Response;
+import common.codec.Codecs;
+import common.framing.Framing;
 import database.DatabaseManager;
 import model.Funko;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import repository.funko.FunkoRepositoryImp;
+import repository.user.UserRepository;
+import server.admission.AdmissionController;
+import server.nio.NioServer;
 import services.funko.FunkoService;
 import services.funko.FunkoServiceImp;
+import utils.GsonFactory;
 import utils.PropertiesReader;
+import utils.TlsSessions;
 
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -43,19 +58,49 @@ public class Server {
      * @throws Exception excepción en caso de error
      */
     public static void main(String[] args) throws Exception {
+        // Cargamos las propiedades
+        var myConfig = readConfigFile();
+        var serverConfig = ServerConfig.from(myConfig);
+        var admission = new AdmissionController(serverConfig);
+        var shutdown = new GracefulShutdown(admission, serverConfig.getShutdownTimeout());
+        Runtime.getRuntime().addShutdownHook(new Thread(shutdown::run, "shutdown"));
         try  {
-            // Cargamos las propiedades
-            var myConfig = readConfigFile();
             // Nos anunciamos como socket
 
             logger.debug("Configurando TSL");
             // System.setProperty("javax.net.debug", "ssl, keymanager, handshake"); // Depuramos
             System.setProperty("javax.net.ssl.keyStore", myConfig.get("keyFile")); // Llavero
             System.setProperty("javax.net.ssl.keyStorePassword", myConfig.get("keyPassword")); // Clave de acceso
+            // Reanudación de sesiones: los clientes que vuelven a conectar se ahorran la negociación completa
+            TlsSessions.enableTickets(serverConfig.isTlsSessionTickets());
+            SSLContext sslContext = SSLContext.getDefault();
+            TlsSessions.configure(sslContext.getServerSessionContext(), serverConfig.getTlsSessionCacheSize(), serverConfig.getTlsSessionTimeout());
 
+            var funkoService = FunkoServiceImp.getInstance(FunkoRepositoryImp.getInstance(DatabaseManager.getInstance()));
+            // Los formatos se calientan antes de aceptar conexiones
+            long warmUp = System.nanoTime();
+            Codecs.warmUp();
+            logger.debug("Formatos calentados en " + (System.nanoTime() - warmUp) / 1_000_000 + " ms");
+            // Los usuarios traen su hash BCrypt calculado, así que cargarlos no retrasa el arranque
+            long usersStart = System.nanoTime();
+            UserRepository.getInstance().configure(serverConfig.getUsersSource(), Path.of(serverConfig.getUsersFile()));
+            int users = UserRepository.getInstance().reload().block();
+            logger.debug(users + " usuarios cargados de " + serverConfig.getUsersSource() + " en " + (System.nanoTime() - usersStart) / 1_000_000 + " ms");
+            Flux<Funko> importar = funkoService.importar();
+            importar.subscribe(System.out::println);
+
+            // Modo no bloqueante: unos pocos bucles de eventos atienden todas las conexiones
+            if (serverConfig.getServerMode().equals("nio")) {
+                System.out.println("🚀 Servidor NIO escuchando en el puerto 3000");
+                var nioServer = new NioServer(PUERTO, sslContext, funkoService, serverConfig, admission);
+                shutdown.stopAccepting(nioServer::stopAccepting);
+                shutdown.closeAfterDrain(nioServer::close);
+                nioServer.start();
+                return;
+            }
 
             // Nos anunciamos como servidor de tipo SSL
-            SSLServerSocketFactory serverFactory = (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
+            SSLServerSocketFactory serverFactory = sslContext.getServerSocketFactory();
             SSLServerSocket serverSocket = (SSLServerSocket) serverFactory.createServerSocket(PUERTO);
 
             // Opcionalmente podemos forzar el tipo de protocolo -> Poner el mismo que el cliente
@@ -64,21 +109,75 @@ public class Server {
             serverSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
 
             System.out.println("🚀 Servidor escuchando en el puerto 3000");
-            var funkoService = FunkoServiceImp.getInstance(FunkoRepositoryImp.getInstance(DatabaseManager.getInstance()));
-            Flux<Funko> importar = funkoService.importar();
-            importar.subscribe(System.out::println);
-            while (true) {
-                new ClientHandler(serverSocket.accept(), clientNumber.incrementAndGet(), funkoService).start();
-                if (clientNumber.get() == 10) {
-                    break;
+            var connectionExecutor = new ConnectionExecutor(serverConfig.getExecutionMode(), serverConfig.getMaxConnections(), serverConfig.getConnectionQueue());
+            Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
+            shutdown.stopAccepting(serverSocket);
+            shutdown.closeAfterDrain(() -> closeClients(clients, connectionExecutor));
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    // El apagado ha cerrado el socket del servidor
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                var client = new ClientHandler(socket, clientNumber.incrementAndGet(), funkoService, serverConfig, admission, connectionExecutor::executeWriter);
+                clients.add(client);
+                Runnable connection = () -> {
+                    try {
+                        client.run();
+                    } finally {
+                        clients.remove(client);
+                    }
+                };
+                if (!connectionExecutor.execute(connection)) {
+                    clients.remove(client);
+                    rejectConnection(socket);
                 }
             }
         } catch (IOException e) {
             throw new RuntimeException("Error: " + e.getMessage());
         } finally {
-            DatabaseManager.getInstance().close();
+            shutdown.run();
+        }
+    }
+
+    /**
+     * Método que cierra las conexiones del servidor bloqueante y su ejecutor al apagar el servidor
+     *
+     * @param clients            Conexiones abiertas
+     * @param connectionExecutor Ejecutor de conexiones
+     */
+    private static void closeClients(Set<ClientHandler> clients, ConnectionExecutor connectionExecutor) {
+        logger.debug("Cerrando " + clients.size() + " conexiones");
+        clients.forEach(ClientHandler::closeAfterPending);
+        try {
+            connectionExecutor.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Las que no han podido enviar lo pendiente a tiempo se cierran sin más
+        clients.forEach(ClientHandler::closeConnection);
+    }
+
+    /**
+     * Método que rechaza una conexión cuando no hay hueco ni sitio en la cola
+     *
+     * @param socket Socket del cliente rechazado
+     */
+    private static void rejectConnection(Socket socket) {
+        logger.warn("Servidor ocupado, se rechaza la conexión de " + socket.getInetAddress().getHostAddress());
+        try (socket; var out = new PrintWriter(socket.getOutputStream(), true)) {
+            socket.setSoTimeout(1000);
+            out.println(GsonFactory.shared().toJson(new Response<>(Response.Status.BUSY, "Servidor ocupado, inténtelo más tarde", LocalDateTime.now().toString())));
+        } catch (IOException e) {
+            logger.debug("Error al rechazar la conexión: " + e.getMessage());
         }
     }
+
     public static Map<String, String>   readConfigFile() {
         try {
             logger.debug("Leyendo el fichero de propiedades");
@@ -89,6 +188,39 @@ public class Server {
             String keyPassword = properties.getProperty("keyPassword");
             String tokenSecret = properties.getProperty("tokenSecret");
             String tokenExpiration = properties.getProperty("tokenExpiration");
+            String serverMode = properties.getProperty("serverMode", "blocking");
+            String nioEventLoops = properties.getProperty("nioEventLoops", String.valueOf(Runtime.getRuntime().availableProcessors()));
+            String executionMode = properties.getProperty("executionMode", "virtual");
+            String maxConnections = properties.getProperty("maxConnections", "1000");
+            String connectionQueue = properties.getProperty("connectionQueue", "100");
+            String maxFrameSize = properties.getProperty("maxFrameSize", String.valueOf(Framing.DEFAULT_MAX_FRAME_SIZE));
+            String streamChunkSize = properties.getProperty("streamChunkSize", String.valueOf(RequestHandler.DEFAULT_CHUNK_SIZE));
+            String batchParallelism = properties.getProperty("batchParallelism", String.valueOf(RequestHandler.DEFAULT_BATCH_PARALLELISM));
+            String maxBatchSize = properties.getProperty("maxBatchSize", String.valueOf(RequestHandler.DEFAULT_MAX_BATCH_SIZE));
+            String bulkChunkSize = properties.getProperty("bulkChunkSize", String.valueOf(RequestHandler.DEFAULT_BULK_CHUNK_SIZE));
+            String maxBulkSize = properties.getProperty("maxBulkSize", String.valueOf(RequestHandler.DEFAULT_MAX_BULK_SIZE));
+            String maxPageSize = properties.getProperty("maxPageSize", String.valueOf(RequestHandler.DEFAULT_MAX_PAGE_SIZE));
+            String watchBufferSize = properties.getProperty("watchBufferSize", String.valueOf(RequestHandler.DEFAULT_WATCH_BUFFER_SIZE));
+            String requestTimeout = properties.getProperty("requestTimeout", String.valueOf(RequestHandler.DEFAULT_REQUEST_TIMEOUT));
+            String sessionMode = properties.getProperty("sessionMode", String.valueOf(RequestHandler.DEFAULT_SESSION_MODE));
+            String globalRequestsPerSecond = properties.getProperty("globalRequestsPerSecond", "5000");
+            String globalBurst = properties.getProperty("globalBurst", "10000");
+            String connectionRequestsPerSecond = properties.getProperty("connectionRequestsPerSecond", "200");
+            String connectionBurst = properties.getProperty("connectionBurst", "400");
+            String userRequestsPerSecond = properties.getProperty("userRequestsPerSecond", "500");
+            String userBurst = properties.getProperty("userBurst", "1000");
+            String maxInFlight = properties.getProperty("maxInFlight", "40");
+            String loginThreads = properties.getProperty("loginThreads", "2");
+            String loginQueue = properties.getProperty("loginQueue", "64");
+            String usersSource = properties.getProperty("usersSource", "builtin");
+            String usersFile = properties.getProperty("usersFile", "data/users.csv");
+            String idleTimeout = properties.getProperty("idleTimeout", "300000");
+            String heartbeatInterval = properties.getProperty("heartbeatInterval", "30000");
+            String shutdownTimeout = properties.getProperty("shutdownTimeout", "10000");
+            String tlsSessionTickets = properties.getProperty("tlsSessionTickets", "true");
+            String tlsSessionCacheSize = properties.getProperty("tlsSessionCacheSize", "20480");
+            String tlsSessionTimeout = properties.getProperty("tlsSessionTimeout", "3600");
+            String compressionThreshold = properties.getProperty("compressionThreshold", "1024");
 
             // Comprobamos que no estén vacías
             if (keyFile.isEmpty() || keyPassword.isEmpty()) {
@@ -105,6 +237,39 @@ public class Server {
             configMap.put("keyPassword", keyPassword);
             configMap.put("tokenSecret", tokenSecret);
             configMap.put("tokenExpiration", tokenExpiration);
+            configMap.put("serverMode", serverMode);
+            configMap.put("nioEventLoops", nioEventLoops);
+            configMap.put("executionMode", executionMode);
+            configMap.put("maxConnections", maxConnections);
+            configMap.put("connectionQueue", connectionQueue);
+            configMap.put("maxFrameSize", maxFrameSize);
+            configMap.put("streamChunkSize", streamChunkSize);
+            configMap.put("batchParallelism", batchParallelism);
+            configMap.put("maxBatchSize", maxBatchSize);
+            configMap.put("bulkChunkSize", bulkChunkSize);
+            configMap.put("maxBulkSize", maxBulkSize);
+            configMap.put("maxPageSize", maxPageSize);
+            configMap.put("watchBufferSize", watchBufferSize);
+            configMap.put("requestTimeout", requestTimeout);
+            configMap.put("sessionMode", sessionMode);
+            configMap.put("globalRequestsPerSecond", globalRequestsPerSecond);
+            configMap.put("globalBurst", globalBurst);
+            configMap.put("connectionRequestsPerSecond", connectionRequestsPerSecond);
+            configMap.put("connectionBurst", connectionBurst);
+            configMap.put("userRequestsPerSecond", userRequestsPerSecond);
+            configMap.put("userBurst", userBurst);
+            configMap.put("maxInFlight", maxInFlight);
+            configMap.put("loginThreads", loginThreads);
+            configMap.put("loginQueue", loginQueue);
+            configMap.put("usersSource", usersSource);
+            configMap.put("usersFile", usersFile);
+            configMap.put("idleTimeout", idleTimeout);
+            configMap.put("heartbeatInterval", heartbeatInterval);
+            configMap.put("shutdownTimeout", shutdownTimeout);
+            configMap.put("tlsSessionTickets", tlsSessionTickets);
+            configMap.put("tlsSessionCacheSize", tlsSessionCacheSize);
+            configMap.put("tlsSessionTimeout", tlsSessionTimeout);
+            configMap.put("compressionThreshold", compressionThreshold);
 
             return configMap;
         } catch (FileNotFoundException e) {
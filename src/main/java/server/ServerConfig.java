@@ -0,0 +1,126 @@
+package server;
+
+import common.framing.Framing;
+import lombok.Builder;
+import lombok.Value;
+import repository.user.UserRepository;
+
+import java.util.Map;
+
+/**
+ * Clase con la configuración de red del servidor, leída de server.properties
+ */
+@Value
+@Builder
+public class ServerConfig {
+    @Builder.Default
+    String serverMode = "blocking";
+    @Builder.Default
+    int nioEventLoops = Runtime.getRuntime().availableProcessors();
+    @Builder.Default
+    ConnectionExecutor.Mode executionMode = ConnectionExecutor.Mode.VIRTUAL;
+    @Builder.Default
+    int maxConnections = 1000;
+    @Builder.Default
+    int connectionQueue = 100;
+    @Builder.Default
+    int maxFrameSize = Framing.DEFAULT_MAX_FRAME_SIZE;
+    @Builder.Default
+    int streamChunkSize = RequestHandler.DEFAULT_CHUNK_SIZE;
+    @Builder.Default
+    int batchParallelism = RequestHandler.DEFAULT_BATCH_PARALLELISM;
+    @Builder.Default
+    int maxBatchSize = RequestHandler.DEFAULT_MAX_BATCH_SIZE;
+    @Builder.Default
+    int bulkChunkSize = RequestHandler.DEFAULT_BULK_CHUNK_SIZE;
+    @Builder.Default
+    int maxBulkSize = RequestHandler.DEFAULT_MAX_BULK_SIZE;
+    @Builder.Default
+    int maxPageSize = RequestHandler.DEFAULT_MAX_PAGE_SIZE;
+    @Builder.Default
+    int watchBufferSize = RequestHandler.DEFAULT_WATCH_BUFFER_SIZE;
+    @Builder.Default
+    long requestTimeout = RequestHandler.DEFAULT_REQUEST_TIMEOUT;
+    @Builder.Default
+    boolean sessionMode = RequestHandler.DEFAULT_SESSION_MODE;
+    @Builder.Default
+    int globalRequestsPerSecond = 5000;
+    @Builder.Default
+    int globalBurst = 10000;
+    @Builder.Default
+    int connectionRequestsPerSecond = 200;
+    @Builder.Default
+    int connectionBurst = 400;
+    @Builder.Default
+    int userRequestsPerSecond = 500;
+    @Builder.Default
+    int userBurst = 1000;
+    @Builder.Default
+    int maxInFlight = 40;
+    @Builder.Default
+    int loginThreads = 2;
+    @Builder.Default
+    UserRepository.Source usersSource = UserRepository.Source.BUILTIN;
+    @Builder.Default
+    String usersFile = "data/users.csv";
+    @Builder.Default
+    int loginQueue = 64;
+    @Builder.Default
+    long idleTimeout = 300_000;
+    @Builder.Default
+    long heartbeatInterval = 30_000;
+    @Builder.Default
+    long shutdownTimeout = 10_000;
+    @Builder.Default
+    boolean tlsSessionTickets = true;
+    @Builder.Default
+    int tlsSessionCacheSize = 20480;
+    @Builder.Default
+    int tlsSessionTimeout = 3600;
+    @Builder.Default
+    int compressionThreshold = 1024;
+
+    /**
+     * Método que construye la configuración a partir del mapa de propiedades del servidor
+     *
+     * @param config Mapa devuelto por Server.readConfigFile
+     * @return Configuración del servidor
+     */
+    public static ServerConfig from(Map<String, String> config) {
+        return ServerConfig.builder()
+                .serverMode(config.get("serverMode"))
+                .nioEventLoops(Integer.parseInt(config.get("nioEventLoops")))
+                .executionMode(ConnectionExecutor.Mode.valueOf(config.get("executionMode").toUpperCase()))
+                .maxConnections(Integer.parseInt(config.get("maxConnections")))
+                .connectionQueue(Integer.parseInt(config.get("connectionQueue")))
+                .maxFrameSize(Integer.parseInt(config.get("maxFrameSize")))
+                .streamChunkSize(Integer.parseInt(config.get("streamChunkSize")))
+                .batchParallelism(Integer.parseInt(config.get("batchParallelism")))
+                .maxBatchSize(Integer.parseInt(config.get("maxBatchSize")))
+                .bulkChunkSize(Integer.parseInt(config.get("bulkChunkSize")))
+                .maxBulkSize(Integer.parseInt(config.get("maxBulkSize")))
+                .maxPageSize(Integer.parseInt(config.get("maxPageSize")))
+                .watchBufferSize(Integer.parseInt(config.get("watchBufferSize")))
+                .requestTimeout(Long.parseLong(config.get("requestTimeout")))
+                .sessionMode(Boolean.parseBoolean(config.get("sessionMode")))
+                .globalRequestsPerSecond(Integer.parseInt(config.get("globalRequestsPerSecond")))
+                .globalBurst(Integer.parseInt(config.get("globalBurst")))
+                .connectionRequestsPerSecond(Integer.parseInt(config.get("connectionRequestsPerSecond")))
+                .connectionBurst(Integer.parseInt(config.get("connectionBurst")))
+                .userRequestsPerSecond(Integer.parseInt(config.get("userRequestsPerSecond")))
+                .userBurst(Integer.parseInt(config.get("userBurst")))
+                .maxInFlight(Integer.parseInt(config.get("maxInFlight")))
+                .loginThreads(Integer.parseInt(config.get("loginThreads")))
+                .loginQueue(Integer.parseInt(config.get("loginQueue")))
+                .usersSource(UserRepository.Source.valueOf(config.get("usersSource").toUpperCase()))
+                .usersFile(config.get("usersFile"))
+                .idleTimeout(Long.parseLong(config.get("idleTimeout")))
+                .heartbeatInterval(Long.parseLong(config.get("heartbeatInterval")))
+                .shutdownTimeout(Long.parseLong(config.get("shutdownTimeout")))
+                .tlsSessionTickets(Boolean.parseBoolean(config.get("tlsSessionTickets")))
+                .tlsSessionCacheSize(Integer.parseInt(config.get("tlsSessionCacheSize")))
+                .tlsSessionTimeout(Integer.parseInt(config.get("tlsSessionTimeout")))
+                .compressionThreshold(Integer.parseInt(config.get("compressionThreshold")))
+                .build();
+    }
+}
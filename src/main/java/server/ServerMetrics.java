@@ -0,0 +1,114 @@
+package server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores del servidor (peticiones admitidas, rechazadas...). Se pueden incrementar desde
+ * cualquier hilo sin bloquear y se consultan con la petición METRICS.
+ */
+public class ServerMetrics {
+    // Atributos
+    private static ServerMetrics instance;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor de la clase
+     */
+    private ServerMetrics() {
+    }
+
+    /**
+     * Singleton de la clase
+     *
+     * @return una instancia de la clase ServerMetrics
+     */
+    public synchronized static ServerMetrics getInstance() {
+        if (instance == null) {
+            instance = new ServerMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Método que incrementa un contador en uno
+     *
+     * @param name Nombre del contador
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Método que suma un valor a un contador
+     *
+     * @param name  Nombre del contador
+     * @param value Valor a sumar
+     */
+    public void add(String name, long value) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Método que registra una negociación TLS: cuenta las completas y las reanudadas por separado
+     * y acumula su duración en microsegundos, de modo que la media es micros / número de negociaciones
+     *
+     * @param resumed      true si se ha reanudado una sesión anterior
+     * @param elapsedNanos Duración de la negociación en nanosegundos
+     */
+    public void recordHandshake(boolean resumed, long elapsedNanos) {
+        String name = resumed ? "tls.handshakes.resumed" : "tls.handshakes.full";
+        increment(name);
+        add(name + ".micros", elapsedNanos / 1000);
+    }
+
+    /**
+     * Método que registra la comprobación de la contraseña de un inicio de sesión: el tiempo que
+     * esperó en la cola del pool de BCrypt y el que tardó la comprobación
+     *
+     * @param queuedNanos Tiempo en cola
+     * @param verifyNanos Tiempo de la comprobación
+     */
+    public void recordLogin(long queuedNanos, long verifyNanos) {
+        increment("login.verified");
+        add("login.queue.micros", queuedNanos / 1000);
+        add("login.verify.micros", verifyNanos / 1000);
+    }
+
+    /**
+     * Método que registra una respuesta comprimida y los bytes antes y después de comprimirla,
+     * de modo que el ahorro es compression.bytes.in - compression.bytes.out
+     *
+     * @param originalBytes   Tamaño de la respuesta sin comprimir
+     * @param compressedBytes Tamaño enviado
+     */
+    public void recordCompression(int originalBytes, int compressedBytes) {
+        increment("compression.messages");
+        add("compression.bytes.in", originalBytes);
+        add("compression.bytes.out", compressedBytes);
+    }
+
+    /**
+     * Método que devuelve el valor de un contador
+     *
+     * @param name Nombre del contador
+     * @return Valor, 0 si no existe
+     */
+    public long get(String name) {
+        var counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Método que devuelve todos los contadores ordenados por nombre
+     *
+     * @return Mapa con el valor de cada contador
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,29 @@
+package server.admission;
+
+/**
+ * Resultado del control de admisión de una petición
+ */
+public enum Admission {
+    ADMITTED("Petición admitida"),
+    CONNECTION_RATE("Demasiadas peticiones en esta conexión, inténtelo más tarde"),
+    USER_RATE("Demasiadas peticiones de este usuario, inténtelo más tarde"),
+    GLOBAL_RATE("Servidor ocupado, inténtelo más tarde"),
+    IN_FLIGHT("Servidor ocupado, inténtelo más tarde"),
+    DRAINING("El servidor se está apagando, inténtelo más tarde"),
+    LOGIN_QUEUE("Demasiados inicios de sesión en curso, inténtelo más tarde");
+
+    private final String message;
+
+    Admission(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Método que devuelve el mensaje para el cliente
+     *
+     * @return Mensaje
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,221 @@
+package server.admission;
+
+import reactor.core.publisher.Mono;
+import server.ServerConfig;
+import server.ServerMetrics;
+import server.exceptions.server.OverloadedException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión de peticiones compartido por todas las conexiones. Limita el ritmo global,
+ * por conexión y por usuario con cubos de fichas y el número de peticiones en curso, para que un
+ * cliente ruidoso no agote el pool de conexiones de la base de datos. Las peticiones que no pasan
+ * se rechazan al momento y se cuentan en ServerMetrics como requests.shed.*. También acota las
+ * comprobaciones de contraseñas de los inicios de sesión con su propio pool. Al apagar el servidor
+ * deja de admitir peticiones y permite esperar a que terminen las que están en curso.
+ */
+public class AdmissionController {
+    // Atributos
+    private final ServerMetrics metrics = ServerMetrics.getInstance();
+    private final TokenBucket globalBucket;
+    private final Semaphore inFlight;
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile boolean draining;
+    private final double connectionRate;
+    private final double connectionBurst;
+    private final double userRate;
+    private final double userBurst;
+    private final Map<Integer, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final PasswordVerifier passwords;
+
+    /**
+     * Constructor de la clase. Un ritmo o un máximo de 0 desactivan ese límite.
+     *
+     * @param config Configuración del servidor
+     */
+    public AdmissionController(ServerConfig config) {
+        this.globalBucket = config.getGlobalRequestsPerSecond() > 0 ? new TokenBucket(config.getGlobalRequestsPerSecond(), config.getGlobalBurst()) : null;
+        this.inFlight = config.getMaxInFlight() > 0 ? new Semaphore(config.getMaxInFlight()) : null;
+        this.connectionRate = config.getConnectionRequestsPerSecond();
+        this.connectionBurst = config.getConnectionBurst();
+        this.userRate = config.getUserRequestsPerSecond();
+        this.userBurst = config.getUserBurst();
+        this.passwords = new PasswordVerifier(config.getLoginThreads(), config.getLoginQueue());
+    }
+
+    /**
+     * Método que crea un control de admisión sin límites
+     *
+     * @return Control de admisión que lo admite todo
+     */
+    public static AdmissionController unlimited() {
+        return new AdmissionController(ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0)
+                .userRequestsPerSecond(0).maxInFlight(0).build());
+    }
+
+    /**
+     * Método que crea el cubo de fichas de una conexión nueva
+     *
+     * @return Cubo de la conexión, o null si no hay límite por conexión
+     */
+    public TokenBucket newConnectionBucket() {
+        return connectionRate > 0 ? new TokenBucket(connectionRate, connectionBurst) : null;
+    }
+
+    /**
+     * Método que decide si se admite una petición. Si se admite ocupa un hueco de peticiones en
+     * curso que hay que devolver con release al terminar la respuesta.
+     *
+     * @param connectionBucket Cubo de la conexión, puede ser null
+     * @return ADMITTED o el motivo del rechazo
+     */
+    public Admission admit(TokenBucket connectionBucket) {
+        Admission admission;
+        if (draining) {
+            admission = Admission.DRAINING;
+        } else if (connectionBucket != null && !connectionBucket.tryAcquire()) {
+            admission = Admission.CONNECTION_RATE;
+        } else if (globalBucket != null && !globalBucket.tryAcquire()) {
+            admission = Admission.GLOBAL_RATE;
+        } else if (inFlight != null && !inFlight.tryAcquire()) {
+            admission = Admission.IN_FLIGHT;
+        } else {
+            running.incrementAndGet();
+            metrics.increment("requests.admitted");
+            return Admission.ADMITTED;
+        }
+        shed(admission);
+        return admission;
+    }
+
+    /**
+     * Método que devuelve el hueco de una petición admitida
+     */
+    public void release() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+        if (running.decrementAndGet() == 0 && draining) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Método que ocupa un hueco más de peticiones en curso para una parte de una petición ya
+     * admitida que se ejecuta a la vez que las demás, como cada petición de un lote. No espera: si
+     * no hay hueco se rechaza al momento.
+     *
+     * @return true si había hueco; hay que devolverlo con releaseInFlight
+     */
+    public boolean tryAcquireInFlight() {
+        if (inFlight == null || inFlight.tryAcquire()) {
+            return true;
+        }
+        shed(Admission.IN_FLIGHT);
+        return false;
+    }
+
+    /**
+     * Método que devuelve un hueco ocupado con tryAcquireInFlight
+     */
+    public void releaseInFlight() {
+        if (inFlight != null) {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Método que deja de admitir peticiones nuevas; las que ya están en curso continúan
+     */
+    public void startDraining() {
+        draining = true;
+    }
+
+    /**
+     * Método que espera a que terminen las peticiones en curso
+     *
+     * @param timeoutMillis Tiempo máximo de espera en milisegundos
+     * @return true si han terminado todas antes del plazo
+     * @throws InterruptedException si se interrumpe la espera
+     */
+    public synchronized boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (running.get() > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Método que aplica el límite de ritmo de un usuario ya autenticado
+     *
+     * @param userId Id del usuario
+     * @return true si el usuario no supera su límite
+     */
+    public boolean admitUser(int userId) {
+        return admitUser(userId, 1);
+    }
+
+    /**
+     * Método que aplica el límite de ritmo de un usuario a un lote: cada petición del lote gasta una ficha
+     *
+     * @param userId  Id del usuario
+     * @param permits Número de peticiones
+     * @return true si el usuario no supera su límite
+     */
+    public boolean admitUser(int userId, int permits) {
+        if (userRate <= 0) {
+            return true;
+        }
+        if (userBuckets.computeIfAbsent(userId, id -> new TokenBucket(userRate, userBurst)).tryAcquire(permits)) {
+            return true;
+        }
+        shed(Admission.USER_RATE);
+        return false;
+    }
+
+    /**
+     * Método que comprueba la contraseña de un inicio de sesión en el pool de BCrypt, fuera del hilo
+     * de la conexión. Si el pool y su cola están llenos se rechaza al momento.
+     *
+     * @param password Contraseña en claro
+     * @param hash     Hash BCrypt del usuario
+     * @return Mono con true si la contraseña es correcta, o un error OverloadedException si se rechaza
+     */
+    public Mono<Boolean> checkPassword(String password, String hash) {
+        return passwords.verify(password, hash).onErrorMap(RejectedExecutionException.class, e -> {
+            shed(Admission.LOGIN_QUEUE);
+            return new OverloadedException(Admission.LOGIN_QUEUE.getMessage());
+        });
+    }
+
+    /**
+     * Método que devuelve el número de peticiones en curso
+     *
+     * @return Peticiones admitidas que aún no han terminado
+     */
+    public int inFlight() {
+        return running.get();
+    }
+
+    /**
+     * Método que cuenta una petición rechazada
+     *
+     * @param admission Motivo del rechazo
+     */
+    private void shed(Admission admission) {
+        metrics.increment("requests.shed");
+        metrics.increment("requests.shed." + admission.name().toLowerCase());
+    }
+}
@@ -0,0 +1,93 @@
+package server.admission;
+
+import org.mindrot.jbcrypt.BCrypt;
+import reactor.core.publisher.Mono;
+import server.ServerMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool acotado de hilos que comprueba las contraseñas con BCrypt. Cada comprobación cuesta cientos
+ * de milisegundos de CPU, así que no se hace en el hilo de la conexión: una ráfaga de inicios de
+ * sesión solo ocupa los hilos de este pool y su cola, y cuando la cola está llena se rechaza al
+ * momento en lugar de dejar esperando al cliente. Los hilos se crean según hacen falta y terminan
+ * tras un rato sin trabajo.
+ */
+public class PasswordVerifier implements AutoCloseable {
+    // Atributos
+    private static final AtomicInteger POOLS = new AtomicInteger();
+    private final ServerMetrics metrics = ServerMetrics.getInstance();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param threads   Número de hilos que comprueban contraseñas a la vez
+     * @param queueSize Número máximo de comprobaciones esperando un hilo
+     */
+    public PasswordVerifier(int threads, int queueSize) {
+        int pool = POOLS.incrementAndGet();
+        var number = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            var thread = new Thread(task, "bcrypt-" + pool + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), factory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Método que comprueba una contraseña en el pool. El tiempo en cola y el de la comprobación se
+     * suman en los contadores login.queue.micros y login.verify.micros.
+     *
+     * @param password Contraseña en claro
+     * @param hash     Hash BCrypt guardado
+     * @return Mono con true si la contraseña es correcta, o un error RejectedExecutionException si
+     * el pool y su cola están llenos
+     */
+    public Mono<Boolean> verify(String password, String hash) {
+        return Mono.create(sink -> {
+            long queuedAt = System.nanoTime();
+            try {
+                var task = executor.submit(() -> {
+                    long startedAt = System.nanoTime();
+                    try {
+                        boolean valid = BCrypt.checkpw(password, hash);
+                        metrics.recordLogin(startedAt - queuedAt, System.nanoTime() - startedAt);
+                        sink.success(valid);
+                    } catch (RuntimeException e) {
+                        sink.error(e);
+                    }
+                });
+                // Si el cliente se va antes de empezar la comprobación no se gasta CPU en ella
+                sink.onCancel(() -> task.cancel(false));
+            } catch (RejectedExecutionException e) {
+                sink.error(e);
+            }
+        });
+    }
+
+    /**
+     * Método que devuelve el número de comprobaciones esperando un hilo
+     *
+     * @return Comprobaciones en cola
+     */
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Método que detiene el pool
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,67 @@
+package server.admission;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Cubo de fichas: se rellena a un ritmo fijo hasta una capacidad máxima y cada petición admitida
+ * gasta una ficha. Permite ráfagas de hasta burst peticiones y un ritmo sostenido de ratePerSecond.
+ */
+public class TokenBucket {
+    // Atributos
+    private final double tokensPerNano;
+    private final double capacity;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param ratePerSecond Fichas añadidas por segundo
+     * @param burst         Capacidad máxima del cubo
+     */
+    public TokenBucket(double ratePerSecond, double burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    /**
+     * Constructor de la clase con un reloj propio, para las pruebas
+     *
+     * @param ratePerSecond Fichas añadidas por segundo
+     * @param burst         Capacidad máxima del cubo
+     * @param clock         Reloj en nanosegundos
+     */
+    public TokenBucket(double ratePerSecond, double burst, LongSupplier clock) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Método que intenta gastar una ficha
+     *
+     * @return true si había ficha y la petición puede pasar
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Método que intenta gastar varias fichas a la vez; si no hay suficientes no gasta ninguna
+     *
+     * @param permits Fichas a gastar
+     * @return true si había fichas suficientes
+     */
+    public synchronized boolean tryAcquire(int permits) {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package server.exceptions.funkos;
+
+/**
+ * FunkoCursorException cuando el cursor de una página no es válido
+ */
+public class FunkoCursorException extends FunkoException {
+    public FunkoCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package server.exceptions.server;
+
+/**
+ * Exception para las peticiones rechazadas porque el servidor o el cliente superan sus límites
+ */
+public class OverloadedException extends ServerException {
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,187 @@
+package server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bucle de eventos: un hilo con su propio Selector que atiende la lectura, escritura y
+ * negociación TLS de todas las conexiones que tiene asignadas. Cada checkInterval milisegundos
+ * revisa sus conexiones para enviar latidos y cerrar las inactivas.
+ */
+public class EventLoop implements Runnable {
+    // Atributos
+    private final Logger logger = LoggerFactory.getLogger(EventLoop.class);
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final long checkInterval;
+    private long nextCheck;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param name          Nombre del hilo del bucle
+     * @param checkInterval Milisegundos entre revisiones de inactividad, 0 para no revisar
+     * @throws IOException Excepción al abrir el selector
+     */
+    public EventLoop(String name, long checkInterval) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Método que arranca el hilo del bucle
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Método que encola una tarea para ejecutarla en el hilo del bucle
+     *
+     * @param task Tarea a ejecutar
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Método que indica si el hilo actual es el del bucle
+     *
+     * @return true si se está ejecutando en el bucle
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Método que devuelve el selector del bucle
+     *
+     * @return Selector
+     */
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * Método que se ejecuta en el hilo del bucle
+     */
+    @Override
+    public void run() {
+        nextCheck = System.currentTimeMillis() + checkInterval;
+        while (running) {
+            try {
+                if (tasks.isEmpty()) {
+                    selector.select(checkInterval == 0 ? 0 : Math.max(1, nextCheck - System.currentTimeMillis()));
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (!key.isValid()) {
+                        connection.close();
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        logger.debug("Error en la conexión, se cierra: " + e.getMessage());
+                        connection.close();
+                    }
+                }
+                runTasks();
+                checkIdle();
+            } catch (IOException e) {
+                logger.error("Error en el bucle de eventos: " + e.getMessage());
+            }
+        }
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            ((NioConnection) key.attachment()).shutdown();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Error al cerrar el selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Método que ejecuta las tareas pendientes
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Error al ejecutar una tarea del bucle: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Método que revisa la inactividad de las conexiones si ha pasado checkInterval desde la última vez
+     */
+    private void checkIdle() {
+        if (checkInterval == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextCheck) {
+            return;
+        }
+        nextCheck = now + checkInterval;
+        long nanos = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+            NioConnection connection = (NioConnection) key.attachment();
+            try {
+                connection.checkIdle(nanos);
+            } catch (RuntimeException e) {
+                logger.debug("Error al revisar la conexión, se cierra: " + e.getMessage());
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Método que detiene el bucle
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Método que espera a que termine el hilo del bucle
+     *
+     * @param timeoutMillis Tiempo máximo de espera en milisegundos
+     */
+    public void awaitTermination(long timeoutMillis) {
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package server.nio;
+
+import common.Request;
+import common.Response;
+import common.codec.CodecException;
+import common.codec.Compression;
+import common.codec.Codecs;
+import common.codec.MessageCodec;
+import common.framing.Framing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.RequestHandler;
+import server.ResponseSubscriber;
+import server.ServerConfig;
+import server.ServerMetrics;
+import utils.TlsSessions;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conexión no bloqueante con un cliente: negocia TLS con un SSLEngine, separa los mensajes
+ * por líneas o por tramas con prefijo de longitud (según el preámbulo que envíe el cliente)
+ * y envía las peticiones al RequestHandler. Todo su estado se toca solo desde el
+ * hilo de su EventLoop; las respuestas que llegan desde otros hilos se encolan en el bucle.
+ * El bucle llama a checkIdle periódicamente para enviar latidos y cerrar la conexión si el
+ * cliente lleva demasiado tiempo sin enviar nada.
+ */
+public class NioConnection {
+    // Atributos
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_GATHER = 16;
+    private final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final RequestHandler requestHandler;
+    private final long clientNumber;
+    private final int maxFrameSize;
+    private final int compressionThreshold;
+    private final long idleTimeout;
+    private final long heartbeatInterval;
+    private final Runnable onClose;
+    private final Deque<Outbound> outbound = new ArrayDeque<>();
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHER];
+    private SelectionKey key;
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+    private ByteBuffer netOut;
+    private volatile Framing.Mode mode;
+    private volatile MessageCodec codec = Codecs.JSON;
+    private volatile MessageCodec pendingCodec;
+    private volatile Compression compression;
+    private volatile boolean pendingCompression;
+    private byte[] message = new byte[256];
+    private int messageLength;
+    private final byte[] header = new byte[Framing.HEADER_SIZE];
+    private int headerLength;
+    private int frameLength = -1;
+    private boolean closing;
+    private boolean flushScheduled;
+    private boolean closed;
+    private int pending;
+    private long handshakeStart;
+    private long handshakeStartMillis;
+    private boolean handshakeDone;
+    private long lastRead = System.nanoTime();
+    private long lastWrite = lastRead;
+
+    /**
+     * Mensaje pendiente de cifrar y la acción a ejecutar cuando se ha escrito
+     *
+     * @param data    Bytes del mensaje
+     * @param written Acción al terminar de escribirlo, puede ser null
+     */
+    private record Outbound(ByteBuffer data, Runnable written) {
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param loop           Bucle de eventos que atiende la conexión
+     * @param channel        Canal del cliente
+     * @param engine         Motor TLS en modo servidor
+     * @param requestHandler Procesador de peticiones
+     * @param clientNumber   Número del cliente
+     * @param config         Configuración del servidor (tamaño máximo de mensaje, compresión y plazos de inactividad)
+     * @param onClose        Acción a ejecutar una sola vez al cerrar la conexión
+     */
+    public NioConnection(EventLoop loop, SocketChannel channel, SSLEngine engine, RequestHandler requestHandler, long clientNumber, ServerConfig config,
+                         Runnable onClose) {
+        this.loop = loop;
+        this.channel = channel;
+        this.engine = engine;
+        this.requestHandler = requestHandler;
+        this.clientNumber = clientNumber;
+        this.maxFrameSize = config.getMaxFrameSize();
+        this.compressionThreshold = config.getCompressionThreshold();
+        this.idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeout());
+        this.heartbeatInterval = TimeUnit.MILLISECONDS.toNanos(config.getHeartbeatInterval());
+        this.onClose = onClose;
+        var session = engine.getSession();
+        this.netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        this.netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.netOut.flip();
+    }
+
+    /**
+     * Método que registra la conexión en el selector de su bucle. Debe llamarse desde el bucle.
+     */
+    void register() {
+        try {
+            channel.configureBlocking(false);
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+            engine.beginHandshake();
+            logger.debug("Conectando con el cliente: " + clientNumber + " : " + channel.getRemoteAddress());
+        } catch (IOException e) {
+            logger.error("Error al registrar el cliente " + clientNumber + ": " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Método que se ejecuta cuando el canal tiene datos para leer
+     *
+     * @throws IOException Excepción de entrada/salida
+     */
+    void onReadable() throws IOException {
+        int read = channel.read(netIn);
+        if (read < 0) {
+            System.err.println("Cliente " + clientNumber + " desconectado");
+            try {
+                engine.closeInbound();
+            } catch (SSLException e) {
+                logger.debug("Cierre TLS incompleto del cliente " + clientNumber);
+            }
+            close();
+            return;
+        }
+        if (read > 0) {
+            lastRead = System.nanoTime();
+            if (handshakeStart == 0) {
+                handshakeStart = lastRead;
+                handshakeStartMillis = System.currentTimeMillis();
+            }
+        }
+        netIn.flip();
+        try {
+            while (netIn.hasRemaining() && !closed) {
+                SSLEngineResult result = engine.unwrap(netIn, appIn);
+                checkHandshakeFinished(result);
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                    if (netIn.remaining() == netIn.capacity()) {
+                        ByteBuffer bigger = ByteBuffer.allocate(netIn.capacity() + engine.getSession().getPacketBufferSize());
+                        bigger.put(netIn);
+                        bigger.flip();
+                        netIn = bigger;
+                    }
+                    break;
+                }
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    if (appIn.position() == 0) {
+                        appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+                    } else {
+                        readApplicationData();
+                    }
+                    continue;
+                }
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    readApplicationData();
+                    closeGracefully();
+                    return;
+                }
+                runDelegatedTasks();
+                if (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    flush();
+                }
+                if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            netIn.compact();
+        }
+        readApplicationData();
+        flush();
+    }
+
+    /**
+     * Método que se ejecuta cuando el canal admite más escrituras
+     *
+     * @throws IOException Excepción de entrada/salida
+     */
+    void onWritable() throws IOException {
+        flush();
+    }
+
+    /**
+     * Método que separa los datos descifrados en mensajes y procesa cada uno como una petición
+     *
+     * @throws IOException si un mensaje supera el tamaño máximo o el preámbulo no es válido
+     */
+    private void readApplicationData() throws IOException {
+        appIn.flip();
+        try {
+            if (mode == null && !negotiate()) {
+                return;
+            }
+            if (mode == Framing.Mode.FRAME) {
+                readFrames();
+            } else {
+                readLines();
+            }
+        } finally {
+            appIn.compact();
+        }
+    }
+
+    /**
+     * Método que decide el modo de la conexión con los primeros bytes del cliente.
+     * Si empiezan por el preámbulo de tramas lo devuelve para confirmarlo.
+     *
+     * @return false si todavía no han llegado bytes suficientes
+     * @throws IOException si el preámbulo no es válido
+     */
+    private boolean negotiate() throws IOException {
+        if (!appIn.hasRemaining()) {
+            return false;
+        }
+        if (appIn.get(appIn.position()) != Framing.PREAMBLE[0]) {
+            mode = Framing.Mode.LINE;
+            return true;
+        }
+        if (appIn.remaining() < Framing.PREAMBLE.length) {
+            return false;
+        }
+        byte[] preamble = new byte[Framing.PREAMBLE.length];
+        appIn.get(preamble);
+        if (!Arrays.equals(preamble, Framing.PREAMBLE)) {
+            throw new IOException("Preámbulo de tramas no válido");
+        }
+        mode = Framing.Mode.FRAME;
+        outbound.add(new Outbound(ByteBuffer.wrap(preamble), null));
+        logger.debug("Cliente " + clientNumber + " usa mensajes en modo " + mode);
+        return true;
+    }
+
+    /**
+     * Método que separa los datos descifrados en líneas
+     *
+     * @throws IOException si una línea supera el tamaño máximo
+     */
+    private void readLines() throws IOException {
+        while (appIn.hasRemaining()) {
+            byte b = appIn.get();
+            if (b == '\n') {
+                dispatch(ByteBuffer.wrap(message, 0, messageLength));
+                messageLength = 0;
+            } else if (b != '\r') {
+                ensureCapacity(messageLength + 1);
+                message[messageLength++] = b;
+            }
+        }
+    }
+
+    /**
+     * Método que separa los datos descifrados en tramas con prefijo de longitud
+     *
+     * @throws IOException si una trama supera el tamaño máximo
+     */
+    private void readFrames() throws IOException {
+        while (appIn.hasRemaining()) {
+            if (frameLength < 0) {
+                while (headerLength < Framing.HEADER_SIZE && appIn.hasRemaining()) {
+                    header[headerLength++] = appIn.get();
+                }
+                if (headerLength < Framing.HEADER_SIZE) {
+                    return;
+                }
+                headerLength = 0;
+                frameLength = ByteBuffer.wrap(header).getInt();
+                if (frameLength < 0) {
+                    throw new IOException("Trama no válida de " + frameLength + " bytes");
+                }
+                ensureCapacity(frameLength);
+            }
+            int chunk = Math.min(appIn.remaining(), frameLength - messageLength);
+            appIn.get(message, messageLength, chunk);
+            messageLength += chunk;
+            if (messageLength == frameLength) {
+                dispatch(ByteBuffer.wrap(message, 0, messageLength));
+                messageLength = 0;
+                frameLength = -1;
+            }
+        }
+    }
+
+    /**
+     * Método que amplía el buffer de mensajes sin pasar del tamaño máximo
+     *
+     * @param capacity Capacidad necesaria
+     * @throws IOException si se supera el tamaño máximo
+     */
+    private void ensureCapacity(int capacity) throws IOException {
+        if (capacity > maxFrameSize) {
+            throw new IOException("Petición demasiado grande: más de " + maxFrameSize + " bytes");
+        }
+        if (capacity > message.length) {
+            message = Arrays.copyOf(message, Math.min(Math.max(capacity, message.length * 2), maxFrameSize));
+        }
+    }
+
+    /**
+     * Método que procesa una petición del cliente
+     *
+     * @param message Petición en JSON o en binario, válida solo durante la llamada
+     */
+    private void dispatch(ByteBuffer message) {
+        Request request;
+        try {
+            request = Codecs.detect(message).decodeRequest(message);
+        } catch (CodecException e) {
+            send(new Response<>(Response.Status.ERROR, "Petición no válida", LocalDateTime.now().toString()));
+            return;
+        }
+        logger.debug("Petición recibida: " + request);
+        if (request != null && request.type() == Request.Type.LOGIN) {
+            // El formato binario y la compresión no pueden ir en líneas: sus bytes pueden contener saltos de línea
+            pendingCodec = mode == Framing.Mode.FRAME ? Codecs.requested(request) : null;
+            pendingCompression = mode == Framing.Mode.FRAME && compressionThreshold >= 0 && Compression.requested(request);
+        }
+        pending++;
+        requestHandler.process(request)
+                .doFinally(signal -> loop.execute(() -> pending--))
+                .subscribe(new ResponseSubscriber(this::send, () -> !closed));
+    }
+
+    /**
+     * Método que revisa la inactividad de la conexión. Si el cliente lleva idleTimeout sin enviar
+     * nada y no espera ninguna respuesta se le avisa y se cierra la conexión; si la conexión lleva
+     * heartbeatInterval en silencio se envía un latido. Debe llamarse desde el bucle.
+     *
+     * @param now Instante actual de System.nanoTime
+     */
+    void checkIdle(long now) {
+        if (closed || closing) {
+            return;
+        }
+        if (idleTimeout > 0 && pending == 0 && now - lastRead >= idleTimeout) {
+            logger.debug("Cliente " + clientNumber + " inactivo, se cierra la conexión");
+            ServerMetrics.getInstance().increment("connections.reaped.idle");
+            if (mode == null) {
+                // No ha terminado ni la negociación: no hay a quién avisar
+                close();
+            } else {
+                send(new Response<>(Response.Status.CLOSE, "Conexión cerrada por inactividad", LocalDateTime.now().toString()));
+            }
+            return;
+        }
+        if (heartbeatInterval > 0 && mode != null && now - Math.max(lastRead, lastWrite) >= heartbeatInterval) {
+            ServerMetrics.getInstance().increment("connections.heartbeats");
+            lastWrite = now;
+            send(RequestHandler.heartbeat());
+        }
+    }
+
+    /**
+     * Método que envía una respuesta al cliente. Puede llamarse desde cualquier hilo.
+     *
+     * @param response Respuesta a enviar
+     */
+    public void send(Response response) {
+        send(response, null);
+    }
+
+    /**
+     * Método que envía una respuesta al cliente y avisa cuando se ha cifrado entera. Como el
+     * cifrado se detiene mientras el canal no admite escrituras, el aviso llega al ritmo del socket.
+     * Puede llamarse desde cualquier hilo.
+     *
+     * @param response Respuesta a enviar
+     * @param written  Se ejecuta en el bucle cuando la respuesta se ha escrito o descartado, puede ser null
+     */
+    public void send(Response response, Runnable written) {
+        byte[] bytes = encode(toBytes(response));
+        loop.execute(() -> {
+            if (closed) {
+                if (written != null) {
+                    written.run();
+                }
+                return;
+            }
+            Runnable afterWrite = written;
+            if (response.status() == Response.Status.CLOSE) {
+                // El cierre TLS se inicia justo después de cifrar la respuesta, sin perder las anteriores
+                afterWrite = () -> {
+                    shutdownOutput();
+                    if (written != null) {
+                        written.run();
+                    }
+                };
+            }
+            outbound.add(new Outbound(ByteBuffer.wrap(bytes), afterWrite));
+            scheduleFlush();
+        });
+    }
+
+    /**
+     * Método que programa un flush al final de las tareas pendientes del bucle, de modo que las
+     * respuestas que llegan a la vez desde otros hilos se cifran y escriben juntas
+     */
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        loop.execute(() -> {
+            flushScheduled = false;
+            try {
+                flush();
+            } catch (IOException e) {
+                logger.debug("Error al escribir al cliente " + clientNumber + ": " + e.getMessage());
+                close();
+            }
+        });
+    }
+
+    /**
+     * Método que codifica una respuesta en el formato de la conexión y comprime las listas que
+     * superan el umbral si el cliente lo ha pedido. La respuesta TOKEN a un LOGIN activa el
+     * formato y la compresión que ese LOGIN ha pedido.
+     *
+     * @param response Respuesta
+     * @return Bytes del mensaje
+     */
+    private byte[] toBytes(Response response) {
+        if (response.status() == Response.Status.TOKEN) {
+            if (pendingCodec != null) {
+                codec = pendingCodec;
+                pendingCodec = null;
+                logger.debug("Cliente " + clientNumber + " usa mensajes en formato " + codec.name());
+            }
+            if (pendingCompression && compression == null) {
+                compression = new Compression(maxFrameSize);
+                logger.debug("Cliente " + clientNumber + " admite respuestas comprimidas");
+            }
+            pendingCompression = false;
+        }
+        byte[] bytes = codec.encode(response);
+        if (compression != null && response.content() instanceof List && bytes.length >= compressionThreshold) {
+            byte[] compressed = compression.compress(bytes);
+            ServerMetrics.getInstance().recordCompression(bytes.length, compressed.length);
+            bytes = compressed;
+        }
+        return bytes;
+    }
+
+    /**
+     * Método que añade a un mensaje la cabecera de longitud o el salto de línea según el modo de la conexión
+     *
+     * @param json Mensaje en JSON o en binario
+     * @return Bytes a enviar
+     */
+    private byte[] encode(byte[] json) {
+        byte[] bytes;
+        if (mode == Framing.Mode.FRAME) {
+            bytes = new byte[Framing.HEADER_SIZE + json.length];
+            Framing.writeHeader(bytes, json.length);
+            System.arraycopy(json, 0, bytes, Framing.HEADER_SIZE, json.length);
+        } else {
+            bytes = Arrays.copyOf(json, json.length + 1);
+            bytes[json.length] = '\n';
+        }
+        return bytes;
+    }
+
+    /**
+     * Método que cifra y escribe en el canal todo lo pendiente (respuestas y mensajes de la negociación TLS)
+     *
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void flush() throws IOException {
+        while (!closed) {
+            if (netOut.hasRemaining()) {
+                if (channel.write(netOut) > 0) {
+                    lastWrite = System.nanoTime();
+                }
+                if (netOut.hasRemaining()) {
+                    setWriteInterest(true);
+                    return;
+                }
+            }
+            netOut.clear();
+            try {
+                wrapPending();
+            } finally {
+                netOut.flip();
+            }
+            if (!netOut.hasRemaining()) {
+                break;
+            }
+        }
+        if (closed) {
+            return;
+        }
+        setWriteInterest(false);
+        if (closing && !netOut.hasRemaining()) {
+            close();
+        }
+    }
+
+    /**
+     * Método que cifra en netOut los mensajes de la negociación TLS y las respuestas pendientes.
+     * Las respuestas se cifran juntas con una escritura agrupada, así que varias respuestas pequeñas
+     * comparten un mismo registro TLS en lugar de ocupar uno cada una.
+     *
+     * @throws IOException Excepción del motor TLS
+     */
+    private void wrapPending() throws IOException {
+        int packetSize = engine.getSession().getPacketBufferSize();
+        while (netOut.position() == 0 || netOut.remaining() >= packetSize) {
+            SSLEngineResult result;
+            var handshakeStatus = engine.getHandshakeStatus();
+            if (handshakeStatus == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                result = engine.wrap(EMPTY, netOut);
+            } else if (handshakeStatus == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING && !engine.isOutboundDone() && !outbound.isEmpty()) {
+                int count = 0;
+                for (Outbound message : outbound) {
+                    gathered[count++] = message.data();
+                    if (count == gathered.length) {
+                        break;
+                    }
+                }
+                result = engine.wrap(gathered, 0, count, netOut);
+                Arrays.fill(gathered, 0, count, null);
+                completeWritten();
+            } else {
+                return;
+            }
+            checkHandshakeFinished(result);
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                if (netOut.position() > 0) {
+                    return;
+                }
+                netOut = ByteBuffer.allocate(netOut.capacity() + packetSize);
+                continue;
+            }
+            runDelegatedTasks();
+            if (result.bytesProduced() == 0 && result.bytesConsumed() == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Método que saca de la cola las respuestas ya cifradas y avisa de cada una
+     */
+    private void completeWritten() {
+        while (!outbound.isEmpty() && !outbound.peek().data().hasRemaining()) {
+            Outbound message = outbound.poll();
+            if (message.written() != null) {
+                message.written().run();
+            }
+        }
+    }
+
+    /**
+     * Método que registra la negociación TLS cuando termina: si ha sido completa o reanudada y
+     * cuánto ha tardado desde que llegaron los primeros bytes del cliente
+     *
+     * @param result Resultado de la última operación del motor TLS
+     */
+    private void checkHandshakeFinished(SSLEngineResult result) {
+        if (handshakeDone || result.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.FINISHED) {
+            return;
+        }
+        handshakeDone = true;
+        boolean resumed = TlsSessions.isResumed(engine.getSession(), handshakeStartMillis);
+        ServerMetrics.getInstance().recordHandshake(resumed, System.nanoTime() - handshakeStart);
+        logger.debug("Cliente " + clientNumber + ": sesión TLS " + (resumed ? "reanudada" : "nueva"));
+    }
+
+    /**
+     * Método que ejecuta las tareas pendientes de la negociación TLS
+     */
+    private void runDelegatedTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Método que activa o desactiva el interés por escritura en el selector
+     *
+     * @param write true para esperar a que el canal admita escrituras
+     */
+    private void setWriteInterest(boolean write) {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops = write ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    /**
+     * Método que cierra la sesión TLS enviando close_notify y después cierra el canal
+     *
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void closeGracefully() throws IOException {
+        shutdownOutput();
+        flush();
+    }
+
+    /**
+     * Método que inicia el cierre de la sesión TLS; el close_notify se envía en el siguiente flush
+     */
+    private void shutdownOutput() {
+        logger.debug("Cerrando la conexión con el cliente " + clientNumber);
+        closing = true;
+        engine.closeOutbound();
+    }
+
+    /**
+     * Método que cierra la conexión al apagar el servidor: cifra lo pendiente y el close_notify,
+     * intenta escribirlo sin esperar y cierra el canal. Debe llamarse desde el bucle.
+     */
+    void shutdown() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            if (!closing) {
+                shutdownOutput();
+                flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Error al cerrar la conexión del cliente " + clientNumber + ": " + e.getMessage());
+        }
+        close();
+    }
+
+    /**
+     * Método que cierra el canal inmediatamente
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Outbound message;
+        while ((message = outbound.poll()) != null) {
+            if (message.written() != null) {
+                message.written().run();
+            }
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar el canal del cliente " + clientNumber + ": " + e.getMessage());
+        }
+        requestHandler.close();
+        if (compression != null) {
+            compression.close();
+        }
+        onClose.run();
+    }
+
+    /**
+     * Método que amplía un buffer en modo escritura conservando su contenido
+     *
+     * @param buffer   Buffer a ampliar
+     * @param increase Bytes a añadir
+     * @return Nuevo buffer en modo escritura
+     */
+    private static ByteBuffer enlarge(ByteBuffer buffer, int increase) {
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() + increase);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
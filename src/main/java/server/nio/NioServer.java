@@ -0,0 +1,243 @@
+package server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import server.RequestHandler;
+import server.ServerConfig;
+import server.admission.AdmissionController;
+import services.funko.FunkoService;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor no bloqueante: un hilo acepta conexiones y las reparte entre unos pocos
+ * bucles de eventos, que hacen la negociación TLS con SSLEngine y atienden las peticiones.
+ * Cada bucle revisa periódicamente sus conexiones para enviar latidos y cerrar las inactivas.
+ * Atiende como mucho maxConnections conexiones a la vez y cierra al momento las que pasan de ahí.
+ */
+public class NioServer {
+    // Atributos
+    private static final long ACCEPT_BACKOFF = 100;
+    private final Logger logger = LoggerFactory.getLogger(NioServer.class);
+    private final AtomicLong clientNumber = new AtomicLong(0);
+    private final AtomicInteger connections = new AtomicInteger();
+    private final int port;
+    private final SSLContext sslContext;
+    private final FunkoService funkoService;
+    private final EventLoop[] loops;
+    private final ServerConfig config;
+    private final AdmissionController admission;
+    private volatile ServerSocketChannel serverChannel;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param port         Puerto de escucha
+     * @param sslContext   Contexto TLS con el llavero del servidor
+     * @param funkoService Servicio de Funko
+     * @param config       Configuración del servidor
+     * @param admission    Control de admisión compartido por todas las conexiones
+     * @throws IOException Excepción al abrir los selectores
+     */
+    public NioServer(int port, SSLContext sslContext, FunkoService funkoService, ServerConfig config, AdmissionController admission) throws IOException {
+        this.port = port;
+        this.sslContext = sslContext;
+        this.funkoService = funkoService;
+        this.config = config;
+        this.admission = admission;
+        this.loops = new EventLoop[Math.max(1, config.getNioEventLoops())];
+        long checkInterval = checkInterval(config);
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("nio-loop-" + i, checkInterval);
+        }
+    }
+
+    /**
+     * Método que arranca los bucles de eventos y acepta conexiones hasta que se cierra el canal.
+     * Si el canal lo cierra stopAccepting, los bucles siguen atendiendo las conexiones abiertas
+     * hasta que se llama a close. Un error al aceptar una conexión, como quedarse sin descriptores
+     * de fichero, no para el servidor: se espera un poco y se sigue aceptando.
+     *
+     * @throws IOException Excepción al abrir el canal del servidor
+     */
+    public void start() throws IOException {
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(port));
+            serverChannel = channel;
+            logger.debug("Servidor NIO escuchando en el puerto " + port + " con " + loops.length + " bucles de eventos");
+            while (channel.isOpen()) {
+                SocketChannel client;
+                try {
+                    client = channel.accept();
+                } catch (ClosedChannelException e) {
+                    throw e;
+                } catch (IOException e) {
+                    logger.error("Error al aceptar una conexión: " + e.getMessage());
+                    if (!backOff()) {
+                        break;
+                    }
+                    continue;
+                }
+                accept(client);
+            }
+        } catch (ClosedChannelException e) {
+            logger.debug("El servidor NIO deja de aceptar conexiones");
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que reparte una conexión aceptada a un bucle de eventos, o la cierra si ya se atienden
+     * maxConnections conexiones
+     *
+     * @param client Canal del cliente
+     */
+    private void accept(SocketChannel client) {
+        if (connections.incrementAndGet() > config.getMaxConnections()) {
+            connections.decrementAndGet();
+            logger.warn("Servidor ocupado, se rechaza la conexión de " + remoteAddress(client));
+            closeQuietly(client);
+            return;
+        }
+        try {
+            long number = clientNumber.incrementAndGet();
+            EventLoop loop = loops[(int) (number % loops.length)];
+            var connection = new NioConnection(loop, client, createEngine(), new RequestHandler(funkoService, admission, config), number, config,
+                    connections::decrementAndGet);
+            loop.execute(connection::register);
+        } catch (RuntimeException e) {
+            connections.decrementAndGet();
+            logger.error("Error al preparar la conexión de " + remoteAddress(client) + ": " + e.getMessage());
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Método que espera un poco antes de volver a aceptar conexiones tras un error
+     *
+     * @return false si se ha interrumpido la espera y hay que dejar de aceptar
+     */
+    private boolean backOff() {
+        try {
+            Thread.sleep(ACCEPT_BACKOFF);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Método que devuelve el número de conexiones abiertas
+     *
+     * @return Conexiones abiertas
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * Método que devuelve el puerto en el que escucha el servidor, que es el elegido por el sistema
+     * si se arrancó con el puerto 0
+     *
+     * @return Puerto, o -1 si todavía no escucha
+     */
+    public int localPort() {
+        var channel = serverChannel;
+        try {
+            return channel == null ? -1 : ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Método que deja de aceptar conexiones nuevas sin cerrar las abiertas
+     *
+     * @throws IOException Excepción al cerrar el canal
+     */
+    public void stopAccepting() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * Método que detiene los bucles de eventos, que cierran sus conexiones enviando lo que tengan pendiente
+     */
+    public void close() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+        for (EventLoop loop : loops) {
+            loop.awaitTermination(1000);
+        }
+    }
+
+    /**
+     * Método que devuelve cada cuánto hay que revisar la inactividad de las conexiones
+     *
+     * @param config Configuración del servidor
+     * @return Milisegundos entre revisiones, 0 si no hay ni latidos ni cierre por inactividad
+     */
+    private static long checkInterval(ServerConfig config) {
+        long idle = config.getIdleTimeout();
+        long heartbeat = config.getHeartbeatInterval();
+        long interval = idle <= 0 || heartbeat <= 0 ? Math.max(0, Math.max(idle, heartbeat)) : Math.min(idle, heartbeat);
+        // Se revisa varias veces por plazo para no pasarse mucho de él
+        return interval == 0 ? 0 : Math.max(100, interval / 4);
+    }
+
+    /**
+     * Método que devuelve la dirección de un cliente para los mensajes del log
+     *
+     * @param client Canal del cliente
+     * @return Dirección, o "desconocida" si no se puede obtener
+     */
+    private static String remoteAddress(SocketChannel client) {
+        try {
+            return String.valueOf(client.getRemoteAddress());
+        } catch (IOException e) {
+            return "desconocida";
+        }
+    }
+
+    /**
+     * Método que cierra el canal de un cliente sin lanzar excepciones
+     *
+     * @param client Canal del cliente
+     */
+    private void closeQuietly(SocketChannel client) {
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar el canal rechazado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Método que crea un SSLEngine en modo servidor con el mismo protocolo y cifrado que el servidor bloqueante
+     *
+     * @return SSLEngine
+     */
+    private SSLEngine createEngine() {
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
+        engine.setEnabledProtocols(new String[]{"TLSv1.3"});
+        return engine;
+    }
+}
@@ -1,9 +1,15 @@
 package services.funko;
 
+import model.BulkResult;
 import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -12,12 +18,22 @@ import java.util.UUID;
 public interface FunkoService {
     Flux<Funko> findAll();
 
+    Flux<Funko> findAll(Set<FunkoField> fields);
+
+    Mono<FunkoPage> findAll(String cursor, int pageSize);
+
+    Mono<FunkoPage> findAll(String cursor, int pageSize, Set<FunkoField> fields);
+
     Mono<Funko> findById(Long id);
 
+    Mono<Funko> findById(Long id, Set<FunkoField> fields);
+
     Flux<Funko> findByNombre(String nombre);
 
     Flux<Funko> findByModel(String model);
 
+    Flux<Funko> findByModel(String model, Set<FunkoField> fields);
+
     Mono<Funko> findByUuid(UUID uuid);
 
     Mono<Funko> save(Funko funko);
@@ -33,4 +49,14 @@ public interface FunkoService {
     Flux<Funko> importar();
 
     Flux<Funko> findByYear(int myYear);
+
+    Flux<Funko> findByYear(int myYear, Set<FunkoField> fields);
+
+    Flux<BulkResult<Funko>> saveAll(List<Funko> funkos, int chunkSize);
+
+    Flux<BulkResult<Funko>> updateAll(List<Funko> funkos, int chunkSize);
+
+    Flux<BulkResult<Long>> deleteAllById(List<Long> ids, int chunkSize);
+
+    Flux<FunkoEvent> watch(String modelo, int bufferSize);
 }
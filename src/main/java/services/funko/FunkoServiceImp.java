@@ -1,22 +1,36 @@
 package services.funko;
 
+import model.BulkResult;
 import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import repository.funko.FunkoRepository;
+import server.exceptions.funkos.FunkoCursorException;
 import server.exceptions.funkos.FunkoNotFoundException;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * Clase que implementa la interfaz de funkos service
@@ -28,6 +42,8 @@ public class FunkoServiceImp implements FunkoService {
     private final Logger logger = LoggerFactory.getLogger(FunkoServiceImp.class);
     private final FunkosCache cache;
     private final FunkoRepository funkoRepository;
+    // Sin suscriptores los cambios se descartan, y uno lento no frena a los demás
+    private final Sinks.Many<FunkoEvent> changes = Sinks.many().multicast().directBestEffort();
 
     /**
      * Constructor de la clase
@@ -62,6 +78,95 @@ public class FunkoServiceImp implements FunkoService {
         return funkoRepository.findAll();
     }
 
+    /**
+     * Método que devuelve todos los funkos con solo los campos pedidos
+     *
+     * @param fields Campos pedidos
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findAll(Set<FunkoField> fields) {
+        return funkoRepository.findAll(fields);
+    }
+
+    /**
+     * Método que devuelve una página de funkos ordenados por id
+     *
+     * @param cursor   Cursor de la página anterior, null o vacío para la primera
+     * @param pageSize Número máximo de funkos de la página
+     * @return Mono con la página y el cursor de la siguiente, o error si el cursor no es válido
+     */
+    @Override
+    public Mono<FunkoPage> findAll(String cursor, int pageSize) {
+        return findAll(cursor, pageSize, FunkoField.ALL);
+    }
+
+    /**
+     * Método que devuelve una página de funkos ordenados por id con solo los campos pedidos. Se lee
+     * un funko más de los pedidos para saber si hay página siguiente sin otra consulta, y el id se
+     * lee siempre porque hace falta para el cursor.
+     *
+     * @param cursor   Cursor de la página anterior, null o vacío para la primera
+     * @param pageSize Número máximo de funkos de la página
+     * @param fields   Campos pedidos
+     * @return Mono con la página y el cursor de la siguiente, o error si el cursor no es válido
+     */
+    @Override
+    public Mono<FunkoPage> findAll(String cursor, int pageSize, Set<FunkoField> fields) {
+        int size = Math.max(1, pageSize);
+        Set<FunkoField> columns = fields.contains(FunkoField.ID) ? fields : withId(fields);
+        return Mono.fromCallable(() -> decodeCursor(cursor))
+                .flatMap(lastId -> funkoRepository.findAfter(lastId, size + 1, columns).collectList())
+                .map(funkos -> funkos.size() > size
+                        ? new FunkoPage(funkos.subList(0, size), encodeCursor(funkos.get(size - 1).getId()))
+                        : new FunkoPage(funkos, null));
+    }
+
+    /**
+     * Método que añade el id a unos campos
+     *
+     * @param fields Campos pedidos
+     * @return Campos pedidos y el id
+     */
+    private static Set<FunkoField> withId(Set<FunkoField> fields) {
+        Set<FunkoField> columns = EnumSet.copyOf(fields);
+        columns.add(FunkoField.ID);
+        return columns;
+    }
+
+    /**
+     * Método que construye el cursor de una página a partir del último id leído. El cliente no debe
+     * interpretarlo: solo lo devuelve para pedir la página siguiente.
+     *
+     * @param lastId Último id de la página
+     * @return Cursor opaco
+     */
+    private static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("id:" + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Método que obtiene el último id leído de un cursor
+     *
+     * @param cursor Cursor opaco, null o vacío para la primera página
+     * @return Último id leído, 0 para la primera página
+     * @throws FunkoCursorException si el cursor no es válido
+     */
+    private static long decodeCursor(String cursor) throws FunkoCursorException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith("id:")) {
+                return Long.parseLong(value.substring(3));
+            }
+        } catch (IllegalArgumentException e) {
+            // Se informa abajo igual que un cursor sin prefijo
+        }
+        throw new FunkoCursorException("Cursor no válido: " + cursor);
+    }
+
     /**
      * Método que devuelve un Mono funko por id
      *
@@ -73,6 +178,22 @@ public class FunkoServiceImp implements FunkoService {
         return cache.get(id).switchIfEmpty(funkoRepository.findById(id)).flatMap(funko -> cache.put(funko.getId(), funko).then(Mono.just(funko))).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + id + " no encontrado")));
     }
 
+    /**
+     * Método que devuelve un funko por id con solo los campos pedidos. Si está en la caché se
+     * devuelve entero, y si no se lee parcial sin guardarlo en la caché, que solo tiene funkos completos.
+     *
+     * @param id     Id del funko
+     * @param fields Campos pedidos
+     * @return Mono de funko
+     */
+    @Override
+    public Mono<Funko> findById(Long id, Set<FunkoField> fields) {
+        if (fields.containsAll(FunkoField.ALL)) {
+            return findById(id);
+        }
+        return cache.get(id).switchIfEmpty(funkoRepository.findById(id, fields)).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + id + " no encontrado")));
+    }
+
     /**
      * Método que devuelve un Flux funko por nombre
      *
@@ -95,6 +216,18 @@ public class FunkoServiceImp implements FunkoService {
         return funkoRepository.findByModel(model);
     }
 
+    /**
+     * Método que devuelve un Flux funko por modelo con solo los campos pedidos
+     *
+     * @param model  Modelo del funko
+     * @param fields Campos pedidos
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findByModel(String model, Set<FunkoField> fields) {
+        return funkoRepository.findByModel(model, fields);
+    }
+
     /**
      * Método que devuelve un Mono funko por uuid
      *
@@ -114,7 +247,8 @@ public class FunkoServiceImp implements FunkoService {
      */
     @Override
     public Mono<Funko> save(Funko funko) {
-        return funkoRepository.save(funko).flatMap(saved -> funkoRepository.findByUuid(saved.getCod()));
+        return funkoRepository.save(funko).flatMap(saved -> funkoRepository.findByUuid(saved.getCod()))
+                .doOnNext(saved -> publish(FunkoEvent.created(saved)));
 
     }
 
@@ -126,7 +260,8 @@ public class FunkoServiceImp implements FunkoService {
      */
     @Override
     public Mono<Funko> update(Funko funko) {
-        return funkoRepository.findById(funko.getId()).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + funko.getId() + " no encontrado"))).flatMap(existing -> funkoRepository.update(funko).flatMap(updated -> cache.put(updated.getId(), updated).thenReturn(updated)));
+        return funkoRepository.findById(funko.getId()).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + funko.getId() + " no encontrado"))).flatMap(existing -> funkoRepository.update(funko).flatMap(updated -> cache.put(updated.getId(), updated).thenReturn(updated)))
+                .doOnNext(updated -> publish(FunkoEvent.updated(updated)));
     }
 
     /**
@@ -137,7 +272,8 @@ public class FunkoServiceImp implements FunkoService {
      */
     @Override
     public Mono<Funko> deleteByUuid(UUID uuid) {
-        return funkoRepository.findByUuid(uuid).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con uuid " + uuid + " no encontrado"))).flatMap(funko -> cache.remove(funko.getId()).then(funkoRepository.deleteByUuid(uuid)).thenReturn(funko));
+        return funkoRepository.findByUuid(uuid).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con uuid " + uuid + " no encontrado"))).flatMap(funko -> cache.remove(funko.getId()).then(funkoRepository.deleteByUuid(uuid)).thenReturn(funko))
+                .doOnNext(funko -> publish(FunkoEvent.deleted(funko.getId(), funko)));
     }
 
     /**
@@ -148,7 +284,8 @@ public class FunkoServiceImp implements FunkoService {
      */
     @Override
     public Mono<Funko> deleteById(Long id) {
-        return funkoRepository.findById(id).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + id + " no encontrado"))).flatMap(funko -> cache.remove(funko.getId()).then(funkoRepository.deleteById(funko.getId())).thenReturn(funko));
+        return funkoRepository.findById(id).switchIfEmpty(Mono.error(new FunkoNotFoundException("Funko con id " + id + " no encontrado"))).flatMap(funko -> cache.remove(funko.getId()).then(funkoRepository.deleteById(funko.getId())).thenReturn(funko))
+                .doOnNext(funko -> publish(FunkoEvent.deleted(funko.getId(), funko)));
     }
 
     /**
@@ -159,7 +296,7 @@ public class FunkoServiceImp implements FunkoService {
     @Override
     public Mono<Void> deleteAll() {
         cache.clear();
-        return funkoRepository.deleteAll().then(Mono.empty());
+        return funkoRepository.deleteAll().doOnSuccess(deleted -> publish(FunkoEvent.resync())).then(Mono.empty());
     }
 
     /**
@@ -173,6 +310,116 @@ public class FunkoServiceImp implements FunkoService {
         return funkoRepository.findByYear(myYear);
     }
 
+    /**
+     * Método que guarda una lista de funkos por trozos de chunkSize, cada trozo con una sentencia
+     * por lotes en una sola conexión. Los trozos se ejecutan uno detrás de otro.
+     *
+     * @param funkos    Funkos a guardar
+     * @param chunkSize Número máximo de funkos de cada sentencia por lotes
+     * @return Flux con el resultado de cada funko, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Funko>> saveAll(List<Funko> funkos, int chunkSize) {
+        return Flux.fromIterable(funkos).buffer(Math.max(1, chunkSize)).concatMap(funkoRepository::saveAll).concatMap(this::cacheResult)
+                .doOnNext(result -> publishIfOk(result, FunkoEvent::created));
+    }
+
+    /**
+     * Método que actualiza una lista de funkos por trozos de chunkSize
+     *
+     * @param funkos    Funkos a actualizar
+     * @param chunkSize Número máximo de funkos de cada sentencia por lotes
+     * @return Flux con el resultado de cada funko, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Funko>> updateAll(List<Funko> funkos, int chunkSize) {
+        return Flux.fromIterable(funkos).buffer(Math.max(1, chunkSize)).concatMap(funkoRepository::updateAll).concatMap(this::cacheResult)
+                .doOnNext(result -> publishIfOk(result, FunkoEvent::updated));
+    }
+
+    /**
+     * Método que elimina una lista de funkos por id por trozos de chunkSize
+     *
+     * @param ids       Ids de los funkos
+     * @param chunkSize Número máximo de ids de cada sentencia por lotes
+     * @return Flux con el resultado de cada id, en el mismo orden
+     */
+    @Override
+    public Flux<BulkResult<Long>> deleteAllById(List<Long> ids, int chunkSize) {
+        return Flux.fromIterable(ids).buffer(Math.max(1, chunkSize)).concatMap(funkoRepository::deleteAllById)
+                .concatMap(result -> result.isOk() ? cache.remove(result.value()).thenReturn(result) : Mono.just(result))
+                .doOnNext(result -> publishIfOk(result, id -> FunkoEvent.deleted(id, null)));
+    }
+
+    /**
+     * Método que devuelve los cambios de los funkos desde el momento de la suscripción. Cada
+     * suscriptor tiene su propio buffer de como mucho bufferSize cambios; si no los consume a
+     * tiempo recibe un RESYNC y la suscripción termina, sin frenar al resto de suscriptores. Los
+     * cambios se entregan en otro hilo, nunca en el que guarda, actualiza o borra el Funko, así que
+     * un suscriptor que tarda en escribir no retrasa ninguna operación.
+     *
+     * @param modelo     Modelo de los funkos, null para todos
+     * @param bufferSize Número máximo de cambios pendientes de enviar al suscriptor
+     * @return Flux de cambios
+     */
+    @Override
+    public Flux<FunkoEvent> watch(String modelo, int bufferSize) {
+        return changes.asFlux()
+                .filter(event -> event.matches(modelo))
+                // Uno de los cambios pendientes espera ya en la cola de publishOn y el resto en el buffer
+                .onBackpressureBuffer(Math.max(1, bufferSize - 1), event -> logger.warn("Suscriptor lento, se descarta tras " + bufferSize + " cambios pendientes"), BufferOverflowStrategy.ERROR)
+                .publishOn(Schedulers.boundedElastic(), 1)
+                .onErrorResume(Exceptions::isOverflow, error -> Mono.just(FunkoEvent.resync()));
+    }
+
+    /**
+     * Método que envía un cambio a los suscriptores. No se sincroniza: el Sink no admite emisiones
+     * simultáneas, pero cada emisión solo deja el cambio en el buffer de cada suscriptor, así que si
+     * otro hilo está emitiendo se reintenta al momento.
+     *
+     * @param event Cambio
+     */
+    private void publish(FunkoEvent event) {
+        while (changes.tryEmitNext(event) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Método que envía el cambio de un resultado correcto de una operación masiva
+     *
+     * @param result Resultado de una fila
+     * @param event  Construye el cambio a partir del valor de la fila
+     * @param <T>    Tipo del valor
+     */
+    private <T> void publishIfOk(BulkResult<T> result, Function<T, FunkoEvent> event) {
+        if (result.isOk()) {
+            publish(event.apply(result.value()));
+        }
+    }
+
+    /**
+     * Método que guarda en la caché el funko de un resultado correcto
+     *
+     * @param result Resultado de una fila
+     * @return Mono con el mismo resultado
+     */
+    private Mono<BulkResult<Funko>> cacheResult(BulkResult<Funko> result) {
+        return result.isOk() ? cache.put(result.value().getId(), result.value()).thenReturn(result) : Mono.just(result);
+    }
+
+    /**
+     * Método que devuelve un Flux de funkos por año con solo los campos pedidos
+     *
+     * @param myYear Año del funko
+     * @param fields Campos pedidos
+     * @return Flux de funkos
+     */
+    @Override
+    public Flux<Funko> findByYear(int myYear, Set<FunkoField> fields) {
+        return funkoRepository.findByYear(myYear, fields);
+    }
+
     /**
      * Método que importa funkos desde un archivo
      *
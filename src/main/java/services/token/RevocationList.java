@@ -0,0 +1,243 @@
+package services.token;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Clase con los tokens revocados (por su jti) y los usuarios revocados (todos sus tokens emitidos
+ * hasta ese momento). Cada petición consulta primero un filtro de Bloom: si dice que no está, que es
+ * lo habitual, la comprobación termina sin tocar ningún mapa. Si dice que puede estar se confirma en
+ * el conjunto exacto. Las revocaciones son raras, así que al revocar se crea un filtro nuevo y se
+ * publica de golpe: las consultas nunca esperan. Cada revocación caduca con el último token al que
+ * afecta y entonces se borra y se reconstruye el filtro sin ella.
+ */
+public class RevocationList implements AutoCloseable {
+    // Atributos
+    private static final int BITS = 1 << 16;
+    private static final int HASHES = 4;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char TOKEN = 't';
+    private static final char USER = 'u';
+    private final LongSupplier clock;
+    private final Map<String, Revocation> revoked = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner;
+    private volatile long[] filter = new long[BITS / 64];
+
+    /**
+     * Revocación de un token o de un usuario
+     *
+     * @param revokedAt Instante de la revocación en milisegundos
+     * @param expiresAt Instante en que caduca el último token afectado, en milisegundos
+     */
+    private record Revocation(long revokedAt, long expiresAt) {
+    }
+
+    /**
+     * Constructor de la clase. Borra las revocaciones caducadas cada minuto.
+     */
+    public RevocationList() {
+        this(System::currentTimeMillis);
+        cleaner.scheduleAtFixedRate(this::purge, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Constructor de la clase con un reloj dado y sin limpieza periódica
+     *
+     * @param clock Reloj en milisegundos
+     */
+    RevocationList(LongSupplier clock) {
+        this.clock = clock;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "revocations");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Método que revoca un token
+     *
+     * @param jti       Id del token
+     * @param expiresAt Instante de caducidad del token en milisegundos
+     */
+    public void revokeToken(String jti, long expiresAt) {
+        add(TOKEN + jti, hash(jti), expiresAt);
+    }
+
+    /**
+     * Método que revoca todos los tokens de un usuario emitidos hasta este milisegundo, incluido.
+     * Los que se emitan después siguen siendo válidos.
+     *
+     * @param userId    Id del usuario
+     * @param expiresAt Instante en que caduca el último token emitido hasta ahora, en milisegundos
+     */
+    public void revokeUser(long userId, long expiresAt) {
+        add(USER + String.valueOf(userId), hash(userId), expiresAt);
+    }
+
+    /**
+     * Método que indica si un token está revocado, por sí mismo o porque se revocó su usuario
+     * después de emitirlo
+     *
+     * @param jti      Id del token, puede ser null
+     * @param userId   Id del usuario del token
+     * @param issuedAt Instante de emisión del token en milisegundos
+     * @return true si el token está revocado
+     */
+    public boolean isRevoked(String jti, long userId, long issuedAt) {
+        if (revoked.isEmpty()) {
+            return false;
+        }
+        var bits = filter;
+        if (jti != null && mightContain(bits, hash(jti)) && active(revoked.get(TOKEN + jti)) != null) {
+            return true;
+        }
+        if (!mightContain(bits, hash(userId))) {
+            return false;
+        }
+        var revocation = active(revoked.get(USER + String.valueOf(userId)));
+        return revocation != null && issuedAt <= revocation.revokedAt();
+    }
+
+    /**
+     * Método que devuelve el número de revocaciones guardadas
+     *
+     * @return Revocaciones
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Método que borra las revocaciones caducadas y reconstruye el filtro con las que quedan
+     */
+    public synchronized void purge() {
+        long now = clock.getAsLong();
+        if (revoked.values().removeIf(revocation -> revocation.expiresAt() <= now)) {
+            var bits = new long[BITS / 64];
+            revoked.keySet().forEach(key -> set(bits, key.charAt(0) == USER ? hash(Long.parseLong(key.substring(1))) : hash(key.substring(1))));
+            filter = bits;
+        }
+    }
+
+    /**
+     * Método que detiene la limpieza periódica
+     */
+    @Override
+    public void close() {
+        cleaner.shutdown();
+    }
+
+    /**
+     * Método que guarda una revocación y publica un filtro nuevo que la incluye
+     *
+     * @param key       Clave en el conjunto exacto
+     * @param hash      Hash de la clave para el filtro
+     * @param expiresAt Instante de caducidad en milisegundos
+     */
+    private synchronized void add(String key, long hash, long expiresAt) {
+        long now = clock.getAsLong();
+        if (expiresAt <= now) {
+            return;
+        }
+        revoked.merge(key, new Revocation(now, expiresAt),
+                (old, revocation) -> new Revocation(revocation.revokedAt(), Math.max(old.expiresAt(), revocation.expiresAt())));
+        var bits = filter.clone();
+        set(bits, hash);
+        filter = bits;
+    }
+
+    /**
+     * Método que devuelve una revocación si aún no ha caducado
+     *
+     * @param revocation Revocación, puede ser null
+     * @return La revocación, o null si no existe o ha caducado
+     */
+    private Revocation active(Revocation revocation) {
+        return revocation == null || revocation.expiresAt() <= clock.getAsLong() ? null : revocation;
+    }
+
+    /**
+     * Método que marca una clave en un filtro
+     *
+     * @param bits Filtro
+     * @param hash Hash de la clave
+     */
+    private static void set(long[] bits, long hash) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = index(hash, i);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Método que indica si una clave puede estar en un filtro. Si devuelve false seguro que no está.
+     *
+     * @param bits Filtro
+     * @param hash Hash de la clave
+     * @return true si puede estar
+     */
+    private static boolean mightContain(long[] bits, long hash) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = index(hash, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Método que calcula la posición de la función hash i-ésima a partir de un solo hash de 64 bits
+     *
+     * @param hash Hash de la clave
+     * @param i    Número de la función
+     * @return Posición en el filtro
+     */
+    private static int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return (h1 + i * h2) & (BITS - 1);
+    }
+
+    /**
+     * Método que calcula el hash FNV-1a de 64 bits del id de un token
+     *
+     * @param jti Id del token
+     * @return Hash
+     */
+    private static long hash(String jti) {
+        long hash = (FNV_OFFSET ^ TOKEN) * FNV_PRIME;
+        for (int i = 0; i < jti.length(); i++) {
+            hash = (hash ^ jti.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Método que calcula el hash de un id de usuario, sin crear ningún objeto
+     *
+     * @param userId Id del usuario
+     * @return Hash
+     */
+    private static long hash(long userId) {
+        return mix((FNV_OFFSET ^ USER) * FNV_PRIME ^ userId);
+    }
+
+    /**
+     * Método que reparte los bits de un hash para que los bits bajos también dependan de toda la clave
+     *
+     * @param hash Hash
+     * @return Hash mezclado
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+}
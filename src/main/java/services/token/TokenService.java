@@ -3,12 +3,18 @@ package services.token;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import common.User;
 import org.slf4j.Logger;
+import repository.user.UserRepository;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Clase que implementa la interfaz de token service
@@ -16,12 +22,27 @@ import java.util.Date;
 public class TokenService {
     // Atributos
     private static TokenService instance;
+    private static final int MAX_VERIFIED_TOKENS = 10_000;
+    private static final String ISSUED_AT_MILLIS = "iatms";
     private final Logger logger = LoggerFactory.getLogger(TokenService.class);
+    private final Map<String, Verifier> verifiers = new ConcurrentHashMap<>();
+    private final RevocationList revocations = new RevocationList();
+
+    /**
+     * Algoritmo, verificador y tokens verificados de un secreto, que se crean una vez y se reutilizan
+     * @param algorithm Algoritmo HMAC256
+     * @param verifier Verificador de tokens
+     * @param tokens Tokens verificados hace poco
+     */
+    private record Verifier(Algorithm algorithm, JWTVerifier verifier, VerifiedTokenCache tokens) {
+    }
 
     /**
      * Constructor de la clase
      */
     private TokenService() {
+        // Un token verificado con los usuarios anteriores puede ser de un usuario que ya no existe
+        UserRepository.getInstance().onReload(this::forgetVerifiedTokens);
     }
 
     /**
@@ -44,13 +65,16 @@ public class TokenService {
      */
     public String createToken(User user, String tokenSecret, long tokenExpiration){
         logger.debug("Creando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
+        Algorithm algorithm = verifier(tokenSecret).algorithm();
+        long now = System.currentTimeMillis();
         return JWT.create()
+                .withJWTId(UUID.randomUUID().toString())
                 .withClaim("userid", user.id())
                 .withClaim("username", user.username())
                 .withClaim("rol", user.role().toString())
-                .withIssuedAt(new Date())
-                .withExpiresAt(new Date(System.currentTimeMillis() + tokenExpiration))
+                .withClaim(ISSUED_AT_MILLIS, now)
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + tokenExpiration))
                 .sign(algorithm);
     }
 
@@ -62,19 +86,11 @@ public class TokenService {
      * @return boolean de verificación
      */
     public boolean verifyToken(String token,String tokenSecret, User user) {
-        logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
-        try{
-            JWTVerifier verifier = JWT.require(algorithm).build();
-            DecodedJWT decodedJWT = verifier.verify(token);
-            logger.debug("Token verificado");
-            return decodedJWT.getClaim("userid").asLong() == user.id() &&
-                    decodedJWT.getClaim("username").asString().equals(user.username()) &&
-                    decodedJWT.getClaim("rol").asString().equals(user.role().toString());
-        } catch (Exception e) {
-           logger.debug("Error al verificar el token: " + e.getMessage());
-              return false;
-        }
+        return decode(token, tokenSecret)
+                .map(decodedJWT -> decodedJWT.getClaim("userid").asLong() == user.id() &&
+                        decodedJWT.getClaim("username").asString().equals(user.username()) &&
+                        decodedJWT.getClaim("rol").asString().equals(user.role().toString()))
+                .orElse(false);
     }
 
     /**
@@ -84,38 +100,171 @@ public class TokenService {
      * @return boolean de verificación
      */
     public boolean verifyToken(String token, String tokenSecret) {
+        return decode(token, tokenSecret).isPresent();
+    }
+
+    /**
+     * Método que devuelve los claims de un token
+     * @param token Token
+     * @param tokenSecret Secreto del token
+     * @return Map de claims
+     */
+    public Map<String, Claim> getClaims(String token, String tokenSecret) {
+        return decode(token, tokenSecret).map(DecodedJWT::getClaims).orElse(null);
+    }
+
+    /**
+     * Método que verifica un token y lo decodifica, con una sola comprobación de la firma. Un token
+     * revocado no es válido.
+     * @param token Token
+     * @param tokenSecret Secreto del token
+     * @return Token decodificado, o vacío si no es válido
+     */
+    public Optional<DecodedJWT> decode(String token, String tokenSecret) {
         logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
         try {
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build();
-            DecodedJWT decodedJWT = verifier.verify(token);
+            DecodedJWT decodedJWT = verifier(tokenSecret).verifier().verify(token);
+            if (isRevoked(decodedJWT)) {
+                logger.warn("Token revocado: " + decodedJWT.getId());
+                return Optional.empty();
+            }
             logger.debug("Token verificado");
-            return true;
+            return Optional.of(decodedJWT);
         } catch (Exception e) {
             logger.error("Error al verificar el token: " + e.getMessage());
-            return false;
+            return Optional.empty();
         }
     }
 
     /**
-     * Método que devuelve los claims de un token
+     * Método que devuelve el usuario de un token verificado hace poco, sin volver a verificarlo.
+     * Antes comprueba que el token no se haya revocado después de guardarlo.
      * @param token Token
      * @param tokenSecret Secreto del token
-     * @return Map de claims
+     * @return Usuario, o vacío si el token no se ha verificado, ya ha caducado o se ha revocado
      */
-    public java.util.Map<String, com.auth0.jwt.interfaces.Claim> getClaims(String token, String tokenSecret) {
-        logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
+    public Optional<User> cachedUser(String token, String tokenSecret) {
+        var tokens = verifier(tokenSecret).tokens();
+        var entry = tokens.get(token);
+        if (entry.isPresent() && isRevoked(entry.get().jti(), entry.get().user().id(), entry.get().issuedAt())) {
+            tokens.remove(token);
+            return Optional.empty();
+        }
+        return entry.map(VerifiedTokenCache.Entry::user);
+    }
+
+    /**
+     * Método que guarda el usuario de un token verificado hasta que el token caduca. Los tokens
+     * sin caducidad no se guardan.
+     * @param token Token
+     * @param tokenSecret Secreto del token
+     * @param decodedJWT Token decodificado
+     * @param user Usuario del token
+     */
+    public void remember(String token, String tokenSecret, DecodedJWT decodedJWT, User user) {
+        if (decodedJWT.getExpiresAt() != null) {
+            verifier(tokenSecret).tokens().put(token, new VerifiedTokenCache.Entry(user, decodedJWT.getId(),
+                    issuedAt(decodedJWT), decodedJWT.getExpiresAt().getTime()));
+        }
+    }
+
+    /**
+     * Método que decodifica un token ya verificado, sin volver a comprobar su firma
+     * @param token Token
+     * @return Token decodificado, o vacío si no se puede leer
+     */
+    public Optional<DecodedJWT> read(String token) {
         try {
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build(); // Creamos el verificador
-            DecodedJWT decodedJWT = verifier.verify(token);
-            logger.debug("Token verificado");
-            return decodedJWT.getClaims();
+            return Optional.of(JWT.decode(token));
         } catch (Exception e) {
-            logger.error("Error al verificar el token: " + e.getMessage());
-            return null;
+            logger.error("Error al leer el token: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Método que revoca un token hasta que caduca. El token tiene que tener una firma válida.
+     * @param token Token a revocar
+     * @param tokenSecret Secreto del token
+     * @return true si se ha revocado, false si no es válido, ya ha caducado o no tiene jti
+     */
+    public boolean revokeToken(String token, String tokenSecret) {
+        try {
+            DecodedJWT decodedJWT = verifier(tokenSecret).verifier().verify(token);
+            if (decodedJWT.getId() == null || decodedJWT.getExpiresAt() == null) {
+                return false;
+            }
+            revocations.revokeToken(decodedJWT.getId(), decodedJWT.getExpiresAt().getTime());
+            logger.debug("Token revocado: " + decodedJWT.getId());
+            return true;
+        } catch (Exception e) {
+            logger.error("Error al revocar el token: " + e.getMessage());
+            return false;
         }
     }
+
+    /**
+     * Método que revoca todos los tokens emitidos hasta ahora para un usuario
+     * @param userId Id del usuario
+     * @param tokenExpiration Tiempo de expiración de los tokens, lo que dura la revocación
+     */
+    public void revokeUser(long userId, long tokenExpiration) {
+        revocations.revokeUser(userId, System.currentTimeMillis() + tokenExpiration);
+        logger.debug("Tokens del usuario " + userId + " revocados");
+    }
+
+    /**
+     * Método que indica si un token está revocado. Para los tokens no revocados cuesta unas pocas
+     * consultas a un filtro de Bloom.
+     * @param jti Id del token, puede ser null
+     * @param userId Id del usuario del token
+     * @param issuedAt Instante de emisión en milisegundos
+     * @return true si está revocado
+     */
+    public boolean isRevoked(String jti, long userId, long issuedAt) {
+        return revocations.isRevoked(jti, userId, issuedAt);
+    }
+
+    /**
+     * Método que indica si un token decodificado está revocado
+     * @param decodedJWT Token decodificado
+     * @return true si está revocado
+     */
+    private boolean isRevoked(DecodedJWT decodedJWT) {
+        Long userId = decodedJWT.getClaim("userid").asLong();
+        return userId != null && isRevoked(decodedJWT.getId(), userId, issuedAt(decodedJWT));
+    }
+
+    /**
+     * Método que devuelve el instante de emisión de un token. El iat estándar va en segundos, así
+     * que se usa el claim iatms, en milisegundos, que llevan los tokens creados con createToken.
+     * @param decodedJWT Token decodificado
+     * @return Instante en milisegundos, 0 si no lo indica
+     */
+    public static long issuedAt(DecodedJWT decodedJWT) {
+        Long millis = decodedJWT.getClaim(ISSUED_AT_MILLIS).asLong();
+        if (millis != null) {
+            return millis;
+        }
+        return decodedJWT.getIssuedAt() == null ? 0 : decodedJWT.getIssuedAt().getTime();
+    }
+
+    /**
+     * Método que olvida todos los tokens verificados, por ejemplo cuando cambian los usuarios
+     */
+    public void forgetVerifiedTokens() {
+        verifiers.values().forEach(verifier -> verifier.tokens().clear());
+    }
+
+    /**
+     * Método que devuelve el verificador de un secreto, creándolo la primera vez
+     * @param tokenSecret Secreto del token
+     * @return Verificador
+     */
+    private Verifier verifier(String tokenSecret) {
+        return verifiers.computeIfAbsent(tokenSecret, secret -> {
+            Algorithm algorithm = Algorithm.HMAC256(secret);
+            return new Verifier(algorithm, JWT.require(algorithm).build(), new VerifiedTokenCache(MAX_VERIFIED_TOKENS));
+        });
+    }
 }
@@ -0,0 +1,159 @@
+package services.token;
+
+import common.User;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Clase con los tokens verificados hace poco y el usuario de cada uno. Un token que está en la
+ * caché no se vuelve a verificar ni a buscar su usuario hasta que caduca. Todas las peticiones
+ * autenticadas pasan por aquí, así que las consultas no toman ningún cerrojo: los tokens se guardan
+ * en un ConcurrentHashMap y cada consulta solo apunta cuándo se usó el token. Guarda como mucho
+ * maxSize tokens y, cuando se llena, descarta primero los caducados y, si no basta, la décima
+ * parte menos usada de una vez, para no tener que ordenar la caché en cada token nuevo. Con cada
+ * token guarda su jti y su fecha de emisión, para comprobar si se ha revocado sin volver a
+ * decodificarlo.
+ */
+public class VerifiedTokenCache {
+    // Atributos
+    private final int maxSize;
+    private final LongSupplier clock;
+    private final Map<String, Cached> tokens = new ConcurrentHashMap<>();
+    private final Object eviction = new Object();
+
+    /**
+     * Token verificado
+     *
+     * @param user      Usuario del token
+     * @param jti       Id del token, puede ser null
+     * @param issuedAt  Instante de emisión en milisegundos
+     * @param expiresAt Instante de caducidad en milisegundos
+     */
+    public record Entry(User user, String jti, long issuedAt, long expiresAt) {
+    }
+
+    /**
+     * Token guardado y el último instante en que se usó, que solo sirve para elegir cuáles
+     * descartar: varias consultas a la vez pueden pisarse al apuntarlo sin que importe
+     */
+    private static final class Cached {
+        private final Entry entry;
+        private volatile long lastUsed;
+
+        private Cached(Entry entry, long lastUsed) {
+            this.entry = entry;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxSize Número máximo de tokens
+     */
+    public VerifiedTokenCache(int maxSize) {
+        this(maxSize, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor de la clase con un reloj dado
+     *
+     * @param maxSize Número máximo de tokens
+     * @param clock   Reloj en milisegundos
+     */
+    VerifiedTokenCache(int maxSize, LongSupplier clock) {
+        this.maxSize = Math.max(1, maxSize);
+        this.clock = clock;
+    }
+
+    /**
+     * Método que devuelve un token verificado que no ha caducado. Si ha caducado lo saca de la caché.
+     *
+     * @param token Token
+     * @return Token verificado, o vacío si el token no está o ha caducado
+     */
+    public Optional<Entry> get(String token) {
+        var cached = tokens.get(token);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        long now = clock.getAsLong();
+        if (cached.entry.expiresAt() <= now) {
+            tokens.remove(token, cached);
+            return Optional.empty();
+        }
+        cached.lastUsed = now;
+        return Optional.of(cached.entry);
+    }
+
+    /**
+     * Método que guarda un token verificado. Los tokens caducados no se guardan.
+     *
+     * @param token Token
+     * @param entry Token verificado
+     */
+    public void put(String token, Entry entry) {
+        long now = clock.getAsLong();
+        if (entry.expiresAt() <= now) {
+            return;
+        }
+        if (tokens.size() >= maxSize && !tokens.containsKey(token)) {
+            evict(now);
+        }
+        tokens.put(token, new Cached(entry, now));
+    }
+
+    /**
+     * Método que hace sitio en la caché llena: borra los tokens caducados y, si sigue llena, la
+     * décima parte de los tokens usados hace más tiempo. Solo lo hace un hilo a la vez; los demás
+     * siguen consultando mientras tanto.
+     *
+     * @param now Instante actual en milisegundos
+     */
+    private void evict(long now) {
+        synchronized (eviction) {
+            if (tokens.size() < maxSize) {
+                return;
+            }
+            tokens.values().removeIf(cached -> cached.entry.expiresAt() <= now);
+            int excess = tokens.size() - maxSize + 1;
+            if (excess <= 0) {
+                return;
+            }
+            tokens.entrySet().stream()
+                    .sorted(Comparator.comparingLong(token -> token.getValue().lastUsed))
+                    .limit(Math.max(excess, maxSize / 10))
+                    .toList()
+                    .forEach(token -> tokens.remove(token.getKey(), token.getValue()));
+        }
+    }
+
+    /**
+     * Método que saca un token de la caché
+     *
+     * @param token Token
+     */
+    public void remove(String token) {
+        tokens.remove(token);
+    }
+
+    /**
+     * Método que vacía la caché
+     */
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Método que devuelve el número de tokens guardados
+     *
+     * @return Número de tokens
+     */
+    public int size() {
+        return tokens.size();
+    }
+}
@@ -0,0 +1,138 @@
+package utils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Funko;
+import model.FunkoField;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Adaptador que escribe y lee un Funko campo a campo, sin reflexión. Produce el mismo JSON que
+ * Gson por reflexión: los campos nulos se omiten y las fechas usan LocalDateAdapter y LocalDateTimeAdapter.
+ */
+public class FunkoAdapter extends TypeAdapter<Funko> {
+    private final TypeAdapter<LocalDate> dateAdapter = new LocalDateAdapter();
+    private final TypeAdapter<LocalDateTime> dateTimeAdapter = new LocalDateTimeAdapter();
+
+    /**
+     * Escribe un Funko como objeto JSON
+     *
+     * @param out   JsonWriter donde escribir
+     * @param funko Funko a escribir, puede ser nulo
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public void write(JsonWriter out, Funko funko) throws IOException {
+        if (funko == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (funko.getId() != null) {
+            out.name("id").value(funko.getId());
+        }
+        if (funko.getCod() != null) {
+            out.name("cod").value(funko.getCod().toString());
+        }
+        if (funko.getNombre() != null) {
+            out.name("nombre").value(funko.getNombre());
+        }
+        if (funko.getModelo() != null) {
+            out.name("modelo").value(funko.getModelo());
+        }
+        out.name("precio").value(funko.getPrecio());
+        if (funko.getFecha_lanzamiento() != null) {
+            out.name("fecha_lanzamiento");
+            dateAdapter.write(out, funko.getFecha_lanzamiento());
+        }
+        if (funko.getCreatedAt() != null) {
+            out.name("createdAt");
+            dateTimeAdapter.write(out, funko.getCreatedAt());
+        }
+        if (funko.getUpdatedAt() != null) {
+            out.name("updatedAt");
+            dateTimeAdapter.write(out, funko.getUpdatedAt());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Escribe solo algunos campos de un Funko, sin fechas de creación ni de actualización
+     *
+     * @param out    JsonWriter donde escribir
+     * @param funko  Funko a escribir, puede ser nulo
+     * @param fields Campos que se escriben, null para escribirlos todos
+     * @throws IOException Excepción de entrada/salida
+     */
+    public void write(JsonWriter out, Funko funko, Set<FunkoField> fields) throws IOException {
+        if (funko == null || fields == null) {
+            write(out, funko);
+            return;
+        }
+        out.beginObject();
+        if (fields.contains(FunkoField.ID) && funko.getId() != null) {
+            out.name("id").value(funko.getId());
+        }
+        if (fields.contains(FunkoField.COD) && funko.getCod() != null) {
+            out.name("cod").value(funko.getCod().toString());
+        }
+        if (fields.contains(FunkoField.NOMBRE) && funko.getNombre() != null) {
+            out.name("nombre").value(funko.getNombre());
+        }
+        if (fields.contains(FunkoField.MODELO) && funko.getModelo() != null) {
+            out.name("modelo").value(funko.getModelo());
+        }
+        if (fields.contains(FunkoField.PRECIO)) {
+            out.name("precio").value(funko.getPrecio());
+        }
+        if (fields.contains(FunkoField.FECHA_LANZAMIENTO) && funko.getFecha_lanzamiento() != null) {
+            out.name("fecha_lanzamiento");
+            dateAdapter.write(out, funko.getFecha_lanzamiento());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Lee un Funko de un objeto JSON. Los campos desconocidos se ignoran.
+     *
+     * @param in JsonReader para leer
+     * @return Funko leído, o nulo
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public Funko read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        var builder = Funko.builder().createdAt(null).updatedAt(null);
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id" -> builder.id(in.nextLong());
+                case "cod" -> builder.cod(UUID.fromString(in.nextString()));
+                case "nombre" -> builder.nombre(in.nextString());
+                case "modelo" -> builder.modelo(in.nextString());
+                case "precio" -> builder.precio(in.nextDouble());
+                case "fecha_lanzamiento" -> builder.fecha_lanzamiento(dateAdapter.read(in));
+                case "createdAt" -> builder.createdAt(dateTimeAdapter.read(in));
+                case "updatedAt" -> builder.updatedAt(dateTimeAdapter.read(in));
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return builder.build();
+    }
+}
@@ -0,0 +1,58 @@
+package utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import common.Login;
+import common.Request;
+import common.Response;
+import model.Funko;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Clase que crea los Gson del cliente y del servidor con los adaptadores del protocolo registrados.
+ * Todos los adaptadores están escritos a mano, así que Gson no usa reflexión con los mensajes.
+ */
+public final class GsonFactory {
+    // Gson es seguro entre hilos y guarda sus adaptadores, así que se crea una vez y se comparte
+    private static final Gson SHARED = create();
+
+    private GsonFactory() {
+    }
+
+    /**
+     * Método que devuelve un GsonBuilder con los adaptadores de fechas, Funko, Login, Request y Response
+     *
+     * @return GsonBuilder configurado
+     */
+    public static GsonBuilder builder() {
+        var funkoAdapter = new FunkoAdapter();
+        var loginAdapter = new LoginAdapter();
+        return new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(Funko.class, funkoAdapter)
+                .registerTypeAdapter(Login.class, loginAdapter)
+                .registerTypeAdapter(Request.class, new RequestAdapter(funkoAdapter, loginAdapter))
+                .registerTypeAdapter(Response.class, new ResponseAdapter(funkoAdapter));
+    }
+
+    /**
+     * Método que crea un Gson con los adaptadores del protocolo
+     *
+     * @return Gson configurado
+     */
+    public static Gson create() {
+        return builder().create();
+    }
+
+    /**
+     * Método que devuelve el Gson compartido por el cliente y el servidor
+     *
+     * @return Gson configurado
+     */
+    public static Gson shared() {
+        return SHARED;
+    }
+}
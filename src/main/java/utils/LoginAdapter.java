@@ -0,0 +1,76 @@
+package utils;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import common.Login;
+
+import java.io.IOException;
+
+/**
+ * Adaptador que escribe y lee un Login campo a campo, sin reflexión
+ */
+public class LoginAdapter extends TypeAdapter<Login> {
+
+    /**
+     * Escribe un Login como objeto JSON. El formato y la compresión solo se escriben si se piden.
+     *
+     * @param out   JsonWriter donde escribir
+     * @param login Login a escribir, puede ser nulo
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public void write(JsonWriter out, Login login) throws IOException {
+        if (login == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("username").value(login.username());
+        out.name("password").value(login.password());
+        if (login.codec() != null) {
+            out.name("codec").value(login.codec());
+        }
+        if (login.compression() != null) {
+            out.name("compression").value(login.compression());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Lee un Login de un objeto JSON
+     *
+     * @param in JsonReader para leer
+     * @return Login leído, o nulo
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public Login read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String username = null;
+        String password = null;
+        String codec = null;
+        String compression = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "username" -> username = in.nextString();
+                case "password" -> password = in.nextString();
+                case "codec" -> codec = in.nextString();
+                case "compression" -> compression = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Login(username, password, codec, compression);
+    }
+}
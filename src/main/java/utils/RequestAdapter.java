@@ -0,0 +1,296 @@
+package utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import common.Login;
+import common.PageRequest;
+import common.Request;
+import model.Funko;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adaptador que escribe y lee una petición en una sola pasada. El tipo de la petición decide el
+ * tipo del contenido: Login para LOGIN, Funko para SAVE_FUNKO y UPDATE_FUNKO, una lista de peticiones
+ * para BATCH, una lista de Funkos para SAVE_FUNKOS y UPDATE_FUNKOS, una lista de ids para DELETE_FUNKOS,
+ * un PageRequest si FIND_ALL_FUNKOS lleva un objeto y texto para el resto.
+ * Por compatibilidad también acepta el Funko o el Login escritos como una cadena JSON.
+ */
+public class RequestAdapter extends TypeAdapter<Request> {
+    private final TypeAdapter<Funko> funkoAdapter;
+    private final TypeAdapter<Login> loginAdapter;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoAdapter Adaptador de Funko
+     */
+    public RequestAdapter(TypeAdapter<Funko> funkoAdapter) {
+        this(funkoAdapter, new LoginAdapter());
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoAdapter Adaptador de Funko
+     * @param loginAdapter Adaptador de Login
+     */
+    public RequestAdapter(TypeAdapter<Funko> funkoAdapter, TypeAdapter<Login> loginAdapter) {
+        this.funkoAdapter = funkoAdapter;
+        this.loginAdapter = loginAdapter;
+    }
+
+    /**
+     * Escribe una petición como objeto JSON, con el tipo antes que el contenido
+     *
+     * @param out     JsonWriter donde escribir
+     * @param request Petición a escribir, puede ser nula
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public void write(JsonWriter out, Request request) throws IOException {
+        if (request == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (request.type() != null) {
+            out.name("type").value(request.type().name());
+        }
+        if (request.content() != null) {
+            out.name("content");
+            writeContent(out, request.content());
+        }
+        if (request.token() != null) {
+            out.name("token").value(request.token());
+        }
+        if (request.createdAt() != null) {
+            out.name("createdAt").value(request.createdAt());
+        }
+        if (request.id() != null) {
+            out.name("id").value(request.id());
+        }
+        if (request.stream() != null) {
+            out.name("stream").value(request.stream());
+        }
+        if (request.fields() != null) {
+            out.name("fields").beginArray();
+            for (Object field : request.fields()) {
+                out.value(String.valueOf(field));
+            }
+            out.endArray();
+        }
+        if (request.ifNoneMatch() != null) {
+            out.name("ifNoneMatch").value(request.ifNoneMatch());
+        }
+        if (request.timeout() != null) {
+            out.name("timeout").value(request.timeout());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Lee una petición de un objeto JSON. Si el contenido llega antes que el tipo se guarda como
+     * árbol y se convierte al terminar.
+     *
+     * @param in JsonReader para leer
+     * @return Petición leída, o nula
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public Request read(JsonReader in) throws IOException {
+        return read(in, false);
+    }
+
+    /**
+     * Lee una petición de un objeto JSON
+     *
+     * @param in      JsonReader para leer
+     * @param inBatch true si la petición va dentro de un lote, que no puede contener otro lote
+     * @return Petición leída, o nula
+     * @throws IOException Excepción de entrada/salida
+     */
+    private Request read(JsonReader in, boolean inBatch) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Request.Type type = null;
+        Object content = null;
+        JsonElement pendingContent = null;
+        String token = null;
+        String createdAt = null;
+        Long id = null;
+        Boolean stream = null;
+        List<String> fields = null;
+        String ifNoneMatch = null;
+        Long timeout = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type" -> {
+                    type = Request.Type.valueOf(in.nextString());
+                    if (inBatch && type == Request.Type.BATCH) {
+                        throw new JsonParseException("Un lote no puede contener otro lote");
+                    }
+                }
+                case "content" -> {
+                    if (type != null) {
+                        content = readContent(in, type);
+                    } else {
+                        pendingContent = JsonParser.parseReader(in);
+                    }
+                }
+                case "token" -> token = in.nextString();
+                case "createdAt" -> createdAt = in.nextString();
+                case "id" -> id = in.nextLong();
+                case "stream" -> stream = in.nextBoolean();
+                case "fields" -> {
+                    fields = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        fields.add(in.nextString());
+                    }
+                    in.endArray();
+                }
+                case "ifNoneMatch" -> ifNoneMatch = in.nextString();
+                case "timeout" -> timeout = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (pendingContent != null) {
+            content = readContent(new JsonReader(new StringReader(pendingContent.toString())), type);
+        }
+        return new Request<>(type, content, token, createdAt, id, stream, fields, ifNoneMatch, timeout);
+    }
+
+    /**
+     * Método que escribe el contenido de una petición según su tipo en Java
+     *
+     * @param out     JsonWriter donde escribir
+     * @param content Contenido
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void writeContent(JsonWriter out, Object content) throws IOException {
+        if (content instanceof Funko funko) {
+            funkoAdapter.write(out, funko);
+        } else if (content instanceof Login login) {
+            loginAdapter.write(out, login);
+        } else if (content instanceof PageRequest page) {
+            out.beginObject();
+            out.name("size").value(page.size());
+            if (page.cursor() != null) {
+                out.name("cursor").value(page.cursor());
+            }
+            out.endObject();
+        } else if (content instanceof List<?> items) {
+            out.beginArray();
+            for (Object item : items) {
+                if (item instanceof Request request) {
+                    write(out, request);
+                } else {
+                    writeContent(out, item);
+                }
+            }
+            out.endArray();
+        } else if (content instanceof Number number) {
+            out.value(number);
+        } else {
+            out.value(content.toString());
+        }
+    }
+
+    /**
+     * Método que lee el contenido de una petición según su tipo
+     *
+     * @param in   JsonReader para leer
+     * @param type Tipo de la petición, puede ser nulo
+     * @return Contenido leído
+     * @throws IOException Excepción de entrada/salida
+     */
+    private Object readContent(JsonReader in, Request.Type type) throws IOException {
+        if (type == Request.Type.SAVE_FUNKO || type == Request.Type.UPDATE_FUNKO) {
+            return in.peek() == JsonToken.STRING ? funkoAdapter.fromJson(in.nextString()) : funkoAdapter.read(in);
+        }
+        if (type == Request.Type.BATCH && in.peek() == JsonToken.BEGIN_ARRAY) {
+            List<Request> requests = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                requests.add(read(in, true));
+            }
+            in.endArray();
+            return requests;
+        }
+        if ((type == Request.Type.SAVE_FUNKOS || type == Request.Type.UPDATE_FUNKOS) && in.peek() == JsonToken.BEGIN_ARRAY) {
+            List<Funko> funkos = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                funkos.add(funkoAdapter.read(in));
+            }
+            in.endArray();
+            return funkos;
+        }
+        if (type == Request.Type.DELETE_FUNKOS && in.peek() == JsonToken.BEGIN_ARRAY) {
+            List<Long> ids = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                // Acepta los ids como números o como texto, igual que DELETE_FUNKO
+                ids.add(Long.parseLong(in.nextString()));
+            }
+            in.endArray();
+            return ids;
+        }
+        if (type == Request.Type.FIND_ALL_FUNKOS && in.peek() == JsonToken.BEGIN_OBJECT) {
+            return readPageRequest(in);
+        }
+        if (type == Request.Type.LOGIN) {
+            return in.peek() == JsonToken.STRING ? loginAdapter.fromJson(in.nextString()) : loginAdapter.read(in);
+        }
+        return switch (in.peek()) {
+            case STRING, NUMBER -> in.nextString();
+            case BOOLEAN -> String.valueOf(in.nextBoolean());
+            default -> JsonParser.parseReader(in).toString();
+        };
+    }
+
+    /**
+     * Método que lee un PageRequest de un objeto JSON
+     *
+     * @param in JsonReader para leer
+     * @return PageRequest leído
+     * @throws IOException Excepción de entrada/salida
+     */
+    private static PageRequest readPageRequest(JsonReader in) throws IOException {
+        int size = 0;
+        String cursor = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "size" -> size = in.nextInt();
+                case "cursor" -> cursor = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new PageRequest(size, cursor);
+    }
+}
@@ -0,0 +1,417 @@
+package utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import common.Response;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
+import model.Projection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adaptador que escribe y lee una respuesta en una sola pasada, con el contenido tipado en lugar
+ * de una cadena JSON dentro de otra. El campo kind indica el tipo del contenido para poder leerlo
+ * sin pasos intermedios; si falta se deduce de la forma del JSON.
+ */
+public class ResponseAdapter extends TypeAdapter<Response> {
+    private final TypeAdapter<Funko> funkoAdapter;
+
+    /**
+     * Tipos de contenido de una respuesta
+     */
+    private enum Kind {
+        TEXT, NUMBER, FUNKO, FUNKOS, MAP, RESPONSES, PAGE, PROJECTION, EVENT
+    }
+
+    /**
+     * Constructor de la clase
+     *
+     * @param funkoAdapter Adaptador de Funko
+     */
+    public ResponseAdapter(TypeAdapter<Funko> funkoAdapter) {
+        this.funkoAdapter = funkoAdapter;
+    }
+
+    /**
+     * Escribe una respuesta como objeto JSON, con el tipo de contenido antes que el contenido
+     *
+     * @param out      JsonWriter donde escribir
+     * @param response Respuesta a escribir, puede ser nula
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public void write(JsonWriter out, Response response) throws IOException {
+        if (response == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (response.status() != null) {
+            out.name("status").value(response.status().name());
+        }
+        if (response.content() != null) {
+            Kind kind = kindOf(response.content());
+            out.name("kind").value(kind.name());
+            out.name("content");
+            writeContent(out, kind, response.content());
+        }
+        if (response.createdAt() != null) {
+            out.name("createdAt").value(response.createdAt());
+        }
+        if (response.id() != null) {
+            out.name("id").value(response.id());
+        }
+        if (response.etag() != null) {
+            out.name("etag").value(response.etag());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Lee una respuesta de un objeto JSON
+     *
+     * @param in JsonReader para leer
+     * @return Respuesta leída, o nula
+     * @throws IOException Excepción de entrada/salida
+     */
+    @Override
+    public Response read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Response.Status status = null;
+        Kind kind = null;
+        Object content = null;
+        JsonElement pendingContent = null;
+        String createdAt = null;
+        Long id = null;
+        String etag = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "status" -> status = Response.Status.valueOf(in.nextString());
+                case "kind" -> kind = Kind.valueOf(in.nextString());
+                case "content" -> {
+                    if (kind != null) {
+                        content = readContent(in, kind);
+                    } else {
+                        pendingContent = JsonParser.parseReader(in);
+                    }
+                }
+                case "createdAt" -> createdAt = in.nextString();
+                case "id" -> id = in.nextLong();
+                case "etag" -> etag = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (pendingContent != null) {
+            Kind pendingKind = kind != null ? kind : kindOf(pendingContent);
+            content = readContent(new JsonReader(new StringReader(pendingContent.toString())), pendingKind);
+        }
+        return new Response<>(status, content, createdAt, id, etag);
+    }
+
+    /**
+     * Método que decide el tipo de un contenido en Java
+     *
+     * @param content Contenido de la respuesta
+     * @return Tipo del contenido
+     */
+    private static Kind kindOf(Object content) {
+        if (content instanceof Funko) {
+            return Kind.FUNKO;
+        }
+        if (content instanceof FunkoPage) {
+            return Kind.PAGE;
+        }
+        if (content instanceof Projection) {
+            return Kind.PROJECTION;
+        }
+        if (content instanceof FunkoEvent) {
+            return Kind.EVENT;
+        }
+        if (content instanceof List<?> list) {
+            // Las respuestas de un lote; una lista vacía se escribe igual en los dos casos
+            return !list.isEmpty() && list.get(0) instanceof Response ? Kind.RESPONSES : Kind.FUNKOS;
+        }
+        if (content instanceof Number) {
+            return Kind.NUMBER;
+        }
+        if (content instanceof Map<?, ?>) {
+            return Kind.MAP;
+        }
+        return Kind.TEXT;
+    }
+
+    /**
+     * Método que deduce el tipo de un contenido por la forma de su JSON
+     *
+     * @param content Contenido en JSON
+     * @return Tipo del contenido
+     */
+    private static Kind kindOf(JsonElement content) {
+        if (content.isJsonObject()) {
+            return Kind.FUNKO;
+        }
+        if (content.isJsonArray()) {
+            return Kind.FUNKOS;
+        }
+        if (content.isJsonPrimitive() && content.getAsJsonPrimitive().isNumber()) {
+            return Kind.NUMBER;
+        }
+        return Kind.TEXT;
+    }
+
+    /**
+     * Método que escribe el contenido de una respuesta
+     *
+     * @param out     JsonWriter donde escribir
+     * @param kind    Tipo del contenido
+     * @param content Contenido
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void writeContent(JsonWriter out, Kind kind, Object content) throws IOException {
+        writeContent(out, kind, content, null);
+    }
+
+    /**
+     * Método que escribe un Funko con solo algunos campos si el adaptador lo permite
+     *
+     * @param out    JsonWriter donde escribir
+     * @param funko  Funko
+     * @param fields Campos que se escriben, null para todos
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void writeFunko(JsonWriter out, Funko funko, Set<FunkoField> fields) throws IOException {
+        if (fields != null && funkoAdapter instanceof FunkoAdapter adapter) {
+            adapter.write(out, funko, fields);
+        } else {
+            funkoAdapter.write(out, funko);
+        }
+    }
+
+    /**
+     * Método que escribe el contenido de una respuesta con solo algunos campos de cada Funko
+     *
+     * @param out     JsonWriter donde escribir
+     * @param kind    Tipo del contenido
+     * @param content Contenido
+     * @param fields  Campos de cada Funko que se escriben, null para todos
+     * @throws IOException Excepción de entrada/salida
+     */
+    private void writeContent(JsonWriter out, Kind kind, Object content, Set<FunkoField> fields) throws IOException {
+        switch (kind) {
+            case FUNKO -> writeFunko(out, (Funko) content, fields);
+            case FUNKOS -> {
+                out.beginArray();
+                for (Object funko : (List<?>) content) {
+                    writeFunko(out, (Funko) funko, fields);
+                }
+                out.endArray();
+            }
+            case PROJECTION -> {
+                var projection = (Projection) content;
+                Kind projected = kindOf(projection.content());
+                out.beginObject();
+                out.name("fields").beginArray();
+                for (FunkoField field : projection.fields()) {
+                    out.value(field.column());
+                }
+                out.endArray();
+                out.name("kind").value(projected.name());
+                out.name("content");
+                writeContent(out, projected, projection.content(), projection.fields());
+                out.endObject();
+            }
+            case RESPONSES -> {
+                out.beginArray();
+                for (Object response : (List<?>) content) {
+                    write(out, (Response) response);
+                }
+                out.endArray();
+            }
+            case EVENT -> {
+                var event = (FunkoEvent) content;
+                out.beginObject();
+                out.name("type").value(event.type().name());
+                if (event.id() != null) {
+                    out.name("id").value(event.id());
+                }
+                if (event.funko() != null) {
+                    out.name("funko");
+                    funkoAdapter.write(out, event.funko());
+                }
+                out.endObject();
+            }
+            case PAGE -> {
+                var page = (FunkoPage) content;
+                out.beginObject();
+                out.name("funkos");
+                writeContent(out, Kind.FUNKOS, page.funkos(), fields);
+                if (page.next() != null) {
+                    out.name("next").value(page.next());
+                }
+                out.endObject();
+            }
+            case NUMBER -> out.value((Number) content);
+            case MAP -> {
+                out.beginObject();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) content).entrySet()) {
+                    out.name(String.valueOf(entry.getKey()));
+                    if (entry.getValue() instanceof Number number) {
+                        out.value(number);
+                    } else {
+                        out.value(String.valueOf(entry.getValue()));
+                    }
+                }
+                out.endObject();
+            }
+            case TEXT -> out.value(content.toString());
+        }
+    }
+
+    /**
+     * Método que lee el contenido de una respuesta
+     *
+     * @param in   JsonReader para leer
+     * @param kind Tipo del contenido
+     * @return Contenido leído
+     * @throws IOException Excepción de entrada/salida
+     */
+    private Object readContent(JsonReader in, Kind kind) throws IOException {
+        return switch (kind) {
+            case FUNKO -> funkoAdapter.read(in);
+            case FUNKOS -> readFunkos(in);
+            case RESPONSES -> {
+                List<Response> responses = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    responses.add(read(in));
+                }
+                in.endArray();
+                yield responses;
+            }
+            case PAGE -> {
+                List<Funko> funkos = List.of();
+                String next = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        continue;
+                    }
+                    switch (name) {
+                        case "funkos" -> funkos = readFunkos(in);
+                        case "next" -> next = in.nextString();
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                yield new FunkoPage(funkos, next);
+            }
+            case PROJECTION -> {
+                Set<FunkoField> fields = EnumSet.noneOf(FunkoField.class);
+                Kind projected = null;
+                Object projectedContent = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    switch (name) {
+                        case "fields" -> {
+                            in.beginArray();
+                            while (in.hasNext()) {
+                                fields.add(FunkoField.of(in.nextString()));
+                            }
+                            in.endArray();
+                        }
+                        case "kind" -> projected = Kind.valueOf(in.nextString());
+                        case "content" -> projectedContent = readContent(in, projected != null ? projected : Kind.FUNKOS);
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                yield new Projection(fields, projectedContent);
+            }
+            case EVENT -> {
+                FunkoEvent.Type type = null;
+                Long id = null;
+                Funko funko = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "type" -> type = FunkoEvent.Type.valueOf(in.nextString());
+                        case "id" -> id = in.nextLong();
+                        case "funko" -> funko = funkoAdapter.read(in);
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                yield new FunkoEvent(type, id, funko);
+            }
+            case NUMBER -> {
+                String number = in.nextString();
+                yield readNumber(number);
+            }
+            case MAP -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String key = in.nextName();
+                    map.put(key, in.peek() == JsonToken.NUMBER ? readNumber(in.nextString()) : in.nextString());
+                }
+                in.endObject();
+                yield map;
+            }
+            case TEXT -> in.peek() == JsonToken.STRING ? in.nextString() : JsonParser.parseReader(in).toString();
+        };
+    }
+
+    /**
+     * Método que lee una lista de Funkos
+     *
+     * @param in JsonReader para leer
+     * @return Funkos leídos
+     * @throws IOException Excepción de entrada/salida
+     */
+    private List<Funko> readFunkos(JsonReader in) throws IOException {
+        List<Funko> funkos = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            funkos.add(funkoAdapter.read(in));
+        }
+        in.endArray();
+        return funkos;
+    }
+
+    /**
+     * Método que convierte un número JSON en Long si es entero o en Double si no lo es
+     *
+     * @param number Número en texto
+     * @return Número leído
+     */
+    private static Object readNumber(String number) {
+        return number.contains(".") || number.contains("e") || number.contains("E") ? (Object) Double.valueOf(number) : (Object) Long.valueOf(number);
+    }
+}
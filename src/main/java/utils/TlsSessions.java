@@ -0,0 +1,51 @@
+package utils;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Clase con la configuración de la reanudación de sesiones TLS del cliente y del servidor.
+ * Con TLS 1.3 el servidor envía tras la negociación un ticket de sesión; el cliente que vuelve a
+ * conectar con el mismo SSLContext lo presenta y se ahorra el intercambio de certificados y la firma.
+ */
+public final class TlsSessions {
+
+    private TlsSessions() {
+    }
+
+    /**
+     * Método que activa o desactiva los tickets de sesión. Con tickets el servidor no guarda las
+     * sesiones: van cifradas dentro del ticket. Sin ellos se reanudan desde la caché del servidor.
+     * Debe llamarse antes de crear el primer SSLContext de la JVM.
+     *
+     * @param enabled true para usar tickets de sesión
+     */
+    public static void enableTickets(boolean enabled) {
+        System.setProperty("jdk.tls.server.enableSessionTicketExtension", String.valueOf(enabled));
+        System.setProperty("jdk.tls.client.enableSessionTicketExtension", String.valueOf(enabled));
+    }
+
+    /**
+     * Método que configura la caché de sesiones de un SSLContext
+     *
+     * @param context        Caché de sesiones del cliente o del servidor
+     * @param cacheSize      Número máximo de sesiones guardadas, 0 sin límite
+     * @param timeoutSeconds Segundos durante los que una sesión se puede reanudar, 0 sin límite
+     */
+    public static void configure(SSLSessionContext context, int cacheSize, int timeoutSeconds) {
+        context.setSessionCacheSize(cacheSize);
+        context.setSessionTimeout(timeoutSeconds);
+    }
+
+    /**
+     * Método que indica si una negociación ha reanudado una sesión anterior: la sesión reanudada
+     * conserva el instante de creación de la original, anterior al inicio de la negociación
+     *
+     * @param session              Sesión tras la negociación
+     * @param handshakeStartMillis Instante de inicio de la negociación (System.currentTimeMillis)
+     * @return true si la sesión se ha reanudado
+     */
+    public static boolean isResumed(SSLSession session, long handshakeStartMillis) {
+        return session.getCreationTime() < handshakeStartMillis;
+    }
+}
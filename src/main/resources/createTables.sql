@@ -6,3 +6,13 @@ CREATE TABLE IF NOT EXISTS FUNKOS(
  precio DOUBLE NOT NULL,
  fecha_lanzamiento DATE NOT NULL
 );
+
+CREATE TABLE IF NOT EXISTS USUARIOS(
+ id BIGINT PRIMARY KEY,
+ username VARCHAR(255) NOT NULL UNIQUE,
+ password VARCHAR(60) NOT NULL,
+ role VARCHAR(10) CHECK(role IN ('ADMIN','USER'))
+);
+INSERT INTO USUARIOS (id, username, password, role) VALUES
+ (1, 'pepe', '$2a$12$DvGQL7bw2SEmUkj.O.hik.yCI9OuSgPhb3P2GUfvIJAtQg6neAtWq', 'ADMIN'),
+ (2, 'ana', '$2a$12$1a/nnc5OQ/w0/Q63IJKlJOragGU44UYSZiIZcSg6SYHmAO0.gWn6O', 'USER');
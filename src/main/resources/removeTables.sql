@@ -1,2 +1,3 @@
 -- Borra la tabla si existe
-DROP TABLE IF EXISTS FUNKOS;
\ No newline at end of file
+DROP TABLE IF EXISTS FUNKOS;
+DROP TABLE IF EXISTS USUARIOS;
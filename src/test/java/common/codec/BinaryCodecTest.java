@@ -0,0 +1,261 @@
+package common.codec;
+
+import common.Login;
+import common.PageRequest;
+import common.Request;
+import common.Response;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.FunkoPage;
+import model.Projection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+    private final MessageCodec binary = Codecs.BINARY;
+
+    @Test
+    void responsesRoundTrip() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests.ok", 12L);
+        metrics.put("latency.avg", 1.5);
+        var responses = List.of(
+                new Response<>(Response.Status.OK, List.of(funko("MARVEL"), funko("Desconocido")), LocalDateTime.now().toString(), 7L),
+                new Response<>(Response.Status.CHUNK, funko("ANIME"), null, 8L),
+                new Response<>(Response.Status.END, 42L, null, -1L),
+                new Response<>(Response.Status.OK, 12.5, null),
+                new Response<>(Response.Status.TOKEN, "token ñandú", LocalDateTime.now().toString()),
+                new Response<>(Response.Status.OK, metrics, null),
+                new Response<>(Response.Status.HEARTBEAT, null, null)
+        );
+
+        for (var response : responses) {
+            assertEquals(response, binary.decodeResponse(ByteBuffer.wrap(binary.encode(response))));
+        }
+    }
+
+    @Test
+    void requestsRoundTrip() {
+        var requests = List.of(
+                new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234", "binary", null), null, LocalDateTime.now().toString()),
+                new Request<>(Request.Type.SAVE_FUNKO, funko("DISNEY"), "token", null).withId(3L),
+                new Request<>(Request.Type.FIND_ALL_FUNKOS, null, "token", null).withId(4L).withStream(true),
+                new Request<>(Request.Type.DELETE_FUNKO, "5", "token", null).withId(5L).withStream(false),
+                new Request<>(Request.Type.OBTAIN_FUNKO_COD, "6", "token", null, 6L, null, List.of("id"), "748eba2550c381cd", 1500L)
+        );
+
+        for (var request : requests) {
+            assertEquals(request, binary.decodeRequest(ByteBuffer.wrap(binary.encode(request))));
+        }
+    }
+
+    @Test
+    void batchRoundTripsInBothCodecs() {
+        var request = new Request<>(Request.Type.BATCH, List.of(
+                new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", null, null).withId(10L),
+                new Request<>(Request.Type.SAVE_FUNKO, funko("OTROS"), null, null).withId(11L)), "token", null).withId(1L);
+        var response = new Response<>(Response.Status.OK, List.of(
+                new Response<>(Response.Status.OK, funko("MARVEL"), null, 10L),
+                new Response<>(Response.Status.ERROR, "Funko no guardado", null, 11L)), null, 1L);
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            assertAll("Lote en " + codec.name(),
+                    () -> assertEquals(request, codec.decodeRequest(ByteBuffer.wrap(codec.encode(request)))),
+                    () -> assertEquals(response, codec.decodeResponse(ByteBuffer.wrap(codec.encode(response))))
+            );
+        }
+    }
+
+    @Test
+    void bulkRequestsRoundTripInBothCodecs() {
+        var requests = List.of(
+                new Request<>(Request.Type.SAVE_FUNKOS, List.of(funko("MARVEL"), funko("Desconocido")), "token", null).withId(1L),
+                new Request<>(Request.Type.UPDATE_FUNKOS, List.of(funko("ANIME")), "token", null).withId(2L),
+                new Request<>(Request.Type.DELETE_FUNKOS, List.of(1L, 300L, 70000L), "token", null).withId(3L)
+        );
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            for (var request : requests) {
+                assertEquals(request, codec.decodeRequest(ByteBuffer.wrap(codec.encode(request))), request.type() + " en " + codec.name());
+            }
+        }
+    }
+
+    @Test
+    void contentLayoutFollowsTheRequestTypeInBothCodecs() {
+        var text = new Request<>(Request.Type.FIND_ALL_FUNKOS, "todos", "token", null).withId(1L);
+        var textIds = new Request<>(Request.Type.DELETE_FUNKOS, List.of("1", "300"), "token", null).withId(2L);
+        var ids = new Request<>(Request.Type.DELETE_FUNKOS, List.of(1L, 300L), "token", null).withId(2L);
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            assertAll("Contenido según el tipo en " + codec.name(),
+                    () -> assertEquals(text, codec.decodeRequest(ByteBuffer.wrap(codec.encode(text)))),
+                    () -> assertEquals(ids, codec.decodeRequest(ByteBuffer.wrap(codec.encode(textIds))))
+            );
+        }
+        assertAll("Contenido que no corresponde al tipo",
+                () -> assertThrows(CodecException.class, () -> binary.encode(new Request<>(Request.Type.DELETE_FUNKOS, List.of("uno"), "token", null))),
+                () -> assertThrows(CodecException.class, () -> binary.encode(new Request<>(Request.Type.SAVE_FUNKO, "MARVEL", "token", null)))
+        );
+    }
+
+    @Test
+    void pagesRoundTripInBothCodecs() {
+        var requests = List.of(
+                new Request<>(Request.Type.FIND_ALL_FUNKOS, new PageRequest(25, null), "token", null).withId(1L),
+                new Request<>(Request.Type.FIND_ALL_FUNKOS, new PageRequest(25, "aWQ6MjU"), "token", null).withId(2L));
+        var responses = List.of(
+                new Response<>(Response.Status.OK, new FunkoPage(List.of(funko("MARVEL"), funko("ANIME")), "aWQ6MjU"), null, 1L),
+                new Response<>(Response.Status.OK, new FunkoPage(List.of(), null), null, 2L));
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            for (var request : requests) {
+                assertEquals(request, codec.decodeRequest(ByteBuffer.wrap(codec.encode(request))), codec.name());
+            }
+            for (var response : responses) {
+                assertEquals(response, codec.decodeResponse(ByteBuffer.wrap(codec.encode(response))), codec.name());
+            }
+        }
+    }
+
+    @Test
+    void projectionsRoundTripInBothCodecs() {
+        var fields = EnumSet.of(FunkoField.ID, FunkoField.NOMBRE);
+        var full = funko("MARVEL");
+        var partial = Funko.builder().id(full.getId()).nombre(full.getNombre()).createdAt(null).updatedAt(null).build();
+        var request = new Request<>(Request.Type.OBTAIN_FUNKO_MODEL, "MARVEL", "token", null).withId(1L).withFields(List.of("id", "nombre"));
+        var response = new Response<>(Response.Status.OK, new Projection(fields, List.of(full)), null, 1L);
+        var expected = new Response<>(Response.Status.OK, new Projection(fields, List.of(partial)), null, 1L);
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            assertEquals(request, codec.decodeRequest(ByteBuffer.wrap(codec.encode(request))), codec.name());
+            assertEquals(expected, codec.decodeResponse(ByteBuffer.wrap(codec.encode(response))), codec.name());
+        }
+        assertTrue(Codecs.BINARY.encode(response).length < Codecs.BINARY.encode(new Response<>(Response.Status.OK, List.of(full), null, 1L)).length);
+    }
+
+    @Test
+    void eventsRoundTripInBothCodecs() {
+        var funko = funko("MARVEL").toBuilder().createdAt(null).updatedAt(null).build();
+        var responses = List.of(
+                new Response<>(Response.Status.EVENT, FunkoEvent.created(funko), null, 1L),
+                new Response<>(Response.Status.EVENT, FunkoEvent.deleted(2L, null), null, 1L),
+                new Response<>(Response.Status.EVENT, FunkoEvent.resync(), null, 1L));
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            for (var response : responses) {
+                assertEquals(response, codec.decodeResponse(ByteBuffer.wrap(codec.encode(response))), codec.name());
+            }
+        }
+    }
+
+    @Test
+    void etagsRoundTripInBothCodecs() {
+        var request = new Request<>(Request.Type.OBTAIN_FUNKO_MODEL, "MARVEL", "token", null).withId(1L).withIfNoneMatch("748eba2550c381cd");
+        var response = new Response<>(Response.Status.NOT_MODIFIED, null, null, 1L, "748eba2550c381cd");
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            assertEquals(request, codec.decodeRequest(ByteBuffer.wrap(codec.encode(request))), codec.name());
+            assertEquals(response, codec.decodeResponse(ByteBuffer.wrap(codec.encode(response))), codec.name());
+        }
+    }
+
+    @Test
+    void nestedBatchIsRejected() {
+        var nested = new Request<>(Request.Type.BATCH, List.of(new Request<>(Request.Type.BATCH, List.of(), null, null)), "token", null);
+
+        for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+            var bytes = ByteBuffer.wrap(codec.encode(nested));
+            assertThrows(CodecException.class, () -> codec.decodeRequest(bytes), codec.name());
+        }
+    }
+
+    @Test
+    void funkoListIsSmallerThanJson() {
+        var response = new Response<>(Response.Status.OK, List.of(funko("MARVEL"), funko("OTROS")), LocalDateTime.now().toString(), 1L);
+
+        assertTrue(binary.encode(response).length * 2 < Codecs.JSON.encode(response).length,
+                "El binario debe ocupar menos de la mitad que el JSON");
+    }
+
+    @Test
+    void detectsFormatOfEachMessage() {
+        var request = new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234", "binary", "deflate"), null, null);
+
+        assertAll("Formato detectado por el primer byte",
+                () -> assertSame(Codecs.BINARY, Codecs.detect(ByteBuffer.wrap(binary.encode(request)))),
+                () -> assertSame(Codecs.JSON, Codecs.detect(ByteBuffer.wrap(Codecs.JSON.encode(request)))),
+                () -> assertEquals(request, Codecs.JSON.decodeRequest(ByteBuffer.wrap(Codecs.JSON.encode(request))))
+        );
+    }
+
+    @Test
+    void onlyLoginRequestsChooseCodec() {
+        assertAll("Formato pedido en el LOGIN",
+                () -> assertSame(Codecs.BINARY, Codecs.requested(new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234", "binary", null), null, null))),
+                () -> assertNull(Codecs.requested(new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234"), null, null))),
+                () -> assertNull(Codecs.requested(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, "token", null)))
+        );
+    }
+
+    @Test
+    void truncatedMessageIsRejected() {
+        var bytes = binary.encode(new Response<>(Response.Status.OK, List.of(funko("MARVEL")), null));
+        var truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 3);
+
+        assertThrows(CodecException.class, () -> binary.decodeResponse(truncated));
+    }
+
+    @Test
+    void dateOutOfRangeIsRejected() {
+        var bytes = binary.encode(new Response<>(Response.Status.OK, List.of(funko("MARVEL")), null));
+        byte[] date = varLong(LocalDate.parse("2021-01-01").toEpochDay());
+        int at = indexOf(bytes, date);
+        // La misma respuesta con una fecha que LocalDate no puede representar
+        var malformed = ByteBuffer.allocate(bytes.length + 10)
+                .put(bytes, 0, at).put(varLong(Long.MAX_VALUE / 4)).put(bytes, at + date.length, bytes.length - at - date.length).flip();
+
+        assertAll("Fecha fuera de rango",
+                () -> assertTrue(at > 0),
+                () -> assertThrows(CodecException.class, () -> binary.decodeResponse(malformed))
+        );
+    }
+
+    private static byte[] varLong(long value) {
+        var out = new ByteArrayOutputStream();
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Funko funko(String modelo) {
+        return Funko.builder().id(1L).cod(UUID.randomUUID()).nombre("Funko ñ").modelo(modelo).precio(12.5)
+                .fecha_lanzamiento(LocalDate.parse("2021-01-01")).build();
+    }
+}
@@ -0,0 +1,95 @@
+package common.codec;
+
+import common.Login;
+import common.Request;
+import common.Response;
+import model.Funko;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    @Test
+    void listResponsesRoundTripWithSameDeflater() {
+        try (var server = new Compression(1024 * 1024); var client = new Compression(1024 * 1024)) {
+            for (var codec : List.of(Codecs.JSON, Codecs.BINARY)) {
+                for (int size : new int[]{50, 500}) {
+                    var response = new Response<>(Response.Status.OK, funkos(size), null, 1L);
+                    byte[] bytes = codec.encode(response);
+                    // Las claves del JSON se repiten en cada Funko; en binario solo queda el UUID aleatorio
+                    int expected = codec == Codecs.JSON ? bytes.length / 2 : bytes.length * 3 / 4;
+
+                    byte[] compressed = server.compress(bytes);
+                    var read = codec.decodeResponse(client.decompress(ByteBuffer.wrap(compressed)));
+
+                    assertAll("Respuesta de " + size + " Funkos en " + codec.name(),
+                            () -> assertTrue(Compression.isCompressed(ByteBuffer.wrap(compressed))),
+                            () -> assertTrue(compressed.length < expected, compressed.length + " de " + bytes.length + " bytes"),
+                            () -> assertEquals(response, read)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void incompressibleMessageIsSentAsIs() {
+        byte[] random = new byte[2048];
+        new Random(1).nextBytes(random);
+        random[0] = '{';
+
+        try (var compression = new Compression(4096)) {
+            byte[] result = compression.compress(random);
+
+            assertSame(random, result);
+            assertFalse(Compression.isCompressed(ByteBuffer.wrap(result)));
+        }
+    }
+
+    @Test
+    void messageLargerThanMaximumIsRejected() {
+        byte[] large = new byte[10_000];
+        try (var server = new Compression(100_000); var client = new Compression(1000)) {
+            var compressed = ByteBuffer.wrap(server.compress(large));
+
+            assertThrows(CodecException.class, () -> client.decompress(compressed));
+        }
+    }
+
+    @Test
+    void corruptMessageIsRejected() {
+        byte[] large = new byte[10_000];
+        try (var compression = new Compression(100_000)) {
+            byte[] compressed = compression.compress(large);
+            var truncated = ByteBuffer.wrap(compressed, 0, compressed.length - 2);
+
+            assertThrows(CodecException.class, () -> compression.decompress(truncated));
+        }
+    }
+
+    @Test
+    void onlyLoginRequestsAskForCompression() {
+        assertAll("Compresión pedida en el LOGIN",
+                () -> assertTrue(Compression.requested(new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234", null, "deflate"), null, null))),
+                () -> assertFalse(Compression.requested(new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234"), null, null))),
+                () -> assertFalse(Compression.requested(new Request<>(Request.Type.FIND_ALL_FUNKOS, "deflate", "token", null)))
+        );
+    }
+
+    private static List<Funko> funkos(int size) {
+        var funkos = new ArrayList<Funko>();
+        for (long i = 0; i < size; i++) {
+            funkos.add(Funko.builder().id(i).cod(UUID.randomUUID()).nombre("Funko " + i).modelo(i % 2 == 0 ? "MARVEL" : "DISNEY")
+                    .precio(12.5).fecha_lanzamiento(LocalDate.parse("2021-01-01")).build());
+        }
+        return funkos;
+    }
+}
@@ -0,0 +1,39 @@
+package common.codec;
+
+import common.Request;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCodecTest {
+    private final MessageCodec json = Codecs.JSON;
+
+    @Test
+    void validJsonThatIsNotARequestIsACodecError() {
+        assertAll("Peticiones JSON que no son del protocolo",
+                () -> assertThrows(CodecException.class, () -> decode("{\"type\":\"NOPE\"}")),
+                () -> assertThrows(CodecException.class, () -> decode("{\"type\":\"DELETE_FUNKOS\",\"content\":[\"uno\"]}")),
+                () -> assertThrows(CodecException.class, () -> decode("{\"type\":\"SAVE_FUNKO\",\"content\":{\"nombre\":\"Funko\",\"fecha_lanzamiento\":\"ayer\"}}")),
+                () -> assertThrows(CodecException.class, () -> decode("{\"type\":"))
+        );
+    }
+
+    @Test
+    void validRequestIsDecoded() {
+        var request = decode("{\"type\":\"DELETE_FUNKOS\",\"content\":[1,\"2\"],\"id\":3}");
+
+        assertAll("Petición del protocolo",
+                () -> assertEquals(Request.Type.DELETE_FUNKOS, request.type()),
+                () -> assertEquals(List.of(1L, 2L), request.content()),
+                () -> assertEquals(3L, request.id())
+        );
+    }
+
+    private Request decode(String message) {
+        return json.decodeRequest(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+}
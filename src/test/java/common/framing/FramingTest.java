@@ -0,0 +1,172 @@
+package common.framing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FramingTest {
+
+    @Test
+    void lineMessagesRoundTrip() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var writer = Framing.writer(Framing.Mode.LINE, bytes);
+        writer.write("{\"type\":\"SALIR\"}".getBytes(StandardCharsets.UTF_8));
+        writer.write("{\"type\":\"LOGIN\"}".getBytes(StandardCharsets.UTF_8));
+
+        var reader = Framing.reader(Framing.Mode.LINE, new ByteArrayInputStream(bytes.toByteArray()), 1024);
+
+        assertAll("Mensajes por líneas",
+                () -> assertEquals("{\"type\":\"SALIR\"}", text(reader.read())),
+                () -> assertEquals("{\"type\":\"LOGIN\"}", text(reader.read())),
+                () -> assertNull(reader.read())
+        );
+    }
+
+    @Test
+    void frameMessagesRoundTrip() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var writer = Framing.writer(Framing.Mode.FRAME, bytes);
+        writer.write("{\"content\":\"a\\nb\"}".getBytes(StandardCharsets.UTF_8));
+        writer.write(new byte[0]);
+
+        var reader = Framing.reader(Framing.Mode.FRAME, new ByteArrayInputStream(bytes.toByteArray()), 1024);
+
+        assertAll("Mensajes en tramas",
+                () -> assertEquals("{\"content\":\"a\\nb\"}", text(reader.read())),
+                () -> assertEquals("", text(reader.read())),
+                () -> assertNull(reader.read())
+        );
+    }
+
+    @Test
+    void frameLargerThanMaximumIsRejected() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        Framing.writer(Framing.Mode.FRAME, bytes).write(new byte[100]);
+
+        var reader = Framing.reader(Framing.Mode.FRAME, new ByteArrayInputStream(bytes.toByteArray()), 10);
+
+        assertThrows(IOException.class, reader::read);
+    }
+
+    @Test
+    void lineLongerThanMaximumIsRejected() {
+        var reader = Framing.reader(Framing.Mode.LINE, new ByteArrayInputStream("0123456789ABCDEF\n".getBytes(StandardCharsets.UTF_8)), 10);
+
+        assertThrows(IOException.class, reader::read);
+    }
+
+    @Test
+    void acceptDetectsLineMode() throws IOException {
+        var in = new BufferedInputStream(new ByteArrayInputStream("{\"type\":\"SALIR\"}\n".getBytes(StandardCharsets.UTF_8)));
+        var out = new ByteArrayOutputStream();
+
+        var mode = Framing.accept(in, out);
+
+        assertAll("Modo por líneas sin consumir la petición",
+                () -> assertEquals(Framing.Mode.LINE, mode),
+                () -> assertEquals(0, out.size()),
+                () -> assertEquals("{\"type\":\"SALIR\"}", text(Framing.reader(mode, in, 1024).read()))
+        );
+    }
+
+    @Test
+    void acceptDetectsFrameModeAndEchoesPreamble() throws IOException {
+        var in = new BufferedInputStream(new ByteArrayInputStream(Framing.PREAMBLE));
+        var out = new ByteArrayOutputStream();
+
+        var mode = Framing.accept(in, out);
+
+        assertAll("Modo de tramas confirmado",
+                () -> assertEquals(Framing.Mode.FRAME, mode),
+                () -> assertArrayEquals(Framing.PREAMBLE, out.toByteArray())
+        );
+    }
+
+    @Test
+    void acceptRejectsInvalidPreamble() {
+        var in = new BufferedInputStream(new ByteArrayInputStream(new byte[]{0, 'X', 'X', 1}));
+
+        assertThrows(IOException.class, () -> Framing.accept(in, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void readersResumeAfterSocketTimeout() throws IOException {
+        for (Framing.Mode mode : Framing.Mode.values()) {
+            var bytes = new ByteArrayOutputStream();
+            var writer = Framing.writer(mode, bytes);
+            writer.write("{\"type\":\"SALIR\"}".getBytes(StandardCharsets.UTF_8));
+            writer.write("{\"type\":\"LOGIN\"}".getBytes(StandardCharsets.UTF_8));
+            var reader = Framing.reader(mode, new StallingInputStream(bytes.toByteArray(), 3), 1024);
+
+            var messages = new ArrayList<String>();
+            int timeouts = 0;
+            ByteBuffer message;
+            while (true) {
+                try {
+                    message = reader.read();
+                } catch (SocketTimeoutException e) {
+                    timeouts++;
+                    continue;
+                }
+                if (message == null) {
+                    break;
+                }
+                messages.add(text(message));
+            }
+
+            assertEquals(List.of("{\"type\":\"SALIR\"}", "{\"type\":\"LOGIN\"}"), messages, "Modo " + mode);
+            assertTrue(timeouts > 0);
+        }
+    }
+
+    /**
+     * Flujo que entrega los bytes de pocos en pocos y simula un timeout del socket entre cada trozo
+     */
+    private static class StallingInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private int position;
+        private boolean stall;
+
+        StallingInputStream(byte[] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position == data.length) {
+                return -1;
+            }
+            stall = !stall;
+            if (stall) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            int count = Math.min(Math.min(length, chunk), data.length - position);
+            System.arraycopy(data, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private static String text(ByteBuffer message) {
+        return new String(message.array(), message.arrayOffset() + message.position(), message.remaining(), StandardCharsets.UTF_8);
+    }
+}
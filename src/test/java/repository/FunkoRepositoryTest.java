@@ -1,7 +1,9 @@
 package repository;
 
 import database.DatabaseManager;
+import model.BulkResult;
 import model.Funko;
+import model.FunkoField;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import repository.funko.FunkoRepository;
@@ -9,6 +11,7 @@ import repository.funko.FunkoRepositoryImp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -213,6 +216,85 @@ public class FunkoRepositoryTest {
     }
 
     @Test
+    void findAfterReturnsNextIdsInOrder() {
+        var saved = funkoRepository.saveAll(List.of(getFunko(null, 10.0), getFunko(null, 20.0), getFunko(null, 30.0), getFunko(null, 40.0)))
+                .map(result -> result.value().getId()).collectList().block();
+
+        var first = funkoRepository.findAfter(0, 2).map(Funko::getId).collectList().block();
+        var next = funkoRepository.findAfter(first.get(1), 2).map(Funko::getId).collectList().block();
+        var last = funkoRepository.findAfter(saved.get(3), 2).collectList().block();
+
+        assertAll("Páginas por clave",
+                () -> assertEquals(saved.subList(0, 2), first),
+                () -> assertEquals(saved.subList(2, 4), next),
+                () -> assertTrue(last.isEmpty())
+        );
+    }
+
+    @Test
+    void findAllWithFieldsReadsOnlyThoseColumns() {
+        var saved = funkoRepository.saveAll(List.of(getFunko(null, 12.5))).blockFirst().value();
+
+        var found = funkoRepository.findAll(EnumSet.of(FunkoField.ID, FunkoField.NOMBRE)).collectList().block();
+
+        assertAll("Proyección de columnas",
+                () -> assertEquals(1, found.size()),
+                () -> assertEquals(saved.getId(), found.get(0).getId()),
+                () -> assertEquals(saved.getNombre(), found.get(0).getNombre()),
+                () -> assertNull(found.get(0).getCod()),
+                () -> assertNull(found.get(0).getModelo()),
+                () -> assertEquals(0.0, found.get(0).getPrecio()),
+                () -> assertNull(found.get(0).getCreatedAt())
+        );
+    }
+
+    @Test
+    void saveAllReturnsGeneratedIdsInOrder() {
+        var funkos = List.of(getFunko(null, 10.0), getFunko(null, 20.0), getFunko(null, 30.0).toBuilder().cod(null).build());
+
+        var results = funkoRepository.saveAll(funkos).collectList().block();
+
+        assertAll("Guardar funkos por lotes",
+                () -> assertEquals(3, results.size()),
+                () -> assertTrue(results.stream().allMatch(BulkResult::isOk)),
+                () -> assertEquals(List.of(10.0, 20.0, 30.0), results.stream().map(r -> r.value().getPrecio()).toList()),
+                () -> assertNotNull(results.get(2).value().getCod()),
+                () -> assertEquals(results.get(1).value().getCod(), funkoRepository.findById(results.get(1).value().getId()).block().getCod()),
+                () -> assertEquals(3, funkoRepository.findAll().collectList().block().size())
+        );
+    }
+
+    @Test
+    void saveAllWithInvalidRowStoresTheOthers() {
+        var funkos = List.of(getFunko(null, 10.0), getFunko(null, 20.0).toBuilder().modelo("DESCONOCIDO").build(), getFunko(null, 30.0));
+
+        var results = funkoRepository.saveAll(funkos).collectList().block();
+
+        assertAll("Solo falla la fila no válida",
+                () -> assertEquals(List.of(true, false, true), results.stream().map(BulkResult::isOk).toList()),
+                () -> assertNotNull(results.get(1).error()),
+                () -> assertEquals(2, funkoRepository.findAll().collectList().block().size())
+        );
+    }
+
+    @Test
+    void updateAllAndDeleteAllByIdReportMissingRows() {
+        var saved = funkoRepository.saveAll(List.of(getFunko(null, 10.0), getFunko(null, 20.0))).map(BulkResult::value).collectList().block();
+        var first = saved.get(0).toBuilder().nombre("Funko actualizado").build();
+        var missing = saved.get(1).toBuilder().id(999L).build();
+
+        var updated = funkoRepository.updateAll(List.of(first, missing)).collectList().block();
+        var deleted = funkoRepository.deleteAllById(List.of(999L, saved.get(0).getId(), saved.get(1).getId())).collectList().block();
+
+        assertAll("Actualizar y borrar funkos por lotes",
+                () -> assertEquals(List.of(true, false), updated.stream().map(BulkResult::isOk).toList()),
+                () -> assertEquals(List.of(false, true, true), deleted.stream().map(BulkResult::isOk).toList()),
+                () -> assertEquals(saved.get(0).getId(), deleted.get(1).value()),
+                () -> assertEquals(0, funkoRepository.findAll().collectList().block().size())
+        );
+    }
+
+    @Test
 
 
 
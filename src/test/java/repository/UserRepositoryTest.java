@@ -0,0 +1,84 @@
+package repository;
+
+import common.User;
+import database.DatabaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import repository.user.UserRepository;
+import services.token.TokenService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserRepositoryTest {
+    private final UserRepository users = UserRepository.getInstance();
+
+    @AfterEach
+    void restoreBuiltinUsers() {
+        users.configure(UserRepository.Source.BUILTIN, null);
+        users.reload().block(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void builtinUsersAreFoundByIdAndUsername() {
+        assertAll("Usuarios de ejemplo sin calcular hashes al arrancar",
+                () -> assertEquals("pepe", users.findById(1).orElseThrow().username()),
+                () -> assertEquals(2L, users.findByUsername("ana").orElseThrow().id()),
+                () -> assertTrue(users.findById(3).isEmpty()),
+                () -> assertTrue(users.findByUsername(null).isEmpty()),
+                () -> assertTrue(users.findById(1).orElseThrow().password().startsWith("$2a$12$"))
+        );
+    }
+
+    @Test
+    void reloadFromFileReplacesUsersAndForgetsVerifiedTokens(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("users.csv");
+        Files.writeString(file, "# Usuarios\nid,username,password,role\n1,pepe,hash-pepe,ADMIN\n7,luis,hash-luis,user\n");
+        var tokens = TokenService.getInstance();
+        var token = tokens.createToken(users.findById(2).orElseThrow(), "secreto", 10_000);
+        tokens.remember(token, "secreto", tokens.decode(token, "secreto").orElseThrow(), users.findById(2).orElseThrow());
+
+        users.configure(UserRepository.Source.FILE, file);
+        int loaded = users.reload().block(Duration.ofSeconds(5));
+
+        assertAll("Usuarios recargados del fichero",
+                () -> assertEquals(2, loaded),
+                () -> assertEquals(new User(7, "luis", "hash-luis", User.Role.USER), users.findByUsername("luis").orElseThrow()),
+                () -> assertTrue(users.findByUsername("ana").isEmpty()),
+                () -> assertTrue(tokens.cachedUser(token, "secreto").isEmpty())
+        );
+    }
+
+    @Test
+    void failedReloadKeepsPreviousUsers(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("users.csv");
+        Files.writeString(file, "1,pepe,hash,ADMIN\n1,otro,hash,USER\n");
+
+        users.configure(UserRepository.Source.FILE, file);
+
+        assertAll("Carga fallida",
+                () -> assertThrows(IllegalArgumentException.class, () -> users.reload().block(Duration.ofSeconds(5))),
+                () -> assertEquals(2, users.count()),
+                () -> assertTrue(users.findByUsername("ana").isPresent())
+        );
+    }
+
+    @Test
+    void usersAreLoadedFromTheDatabase() {
+        DatabaseManager.getInstance().initTables();
+        users.configure(UserRepository.Source.DATABASE, null);
+
+        int loaded = users.reload().block(Duration.ofSeconds(5));
+
+        assertAll("Usuarios de la tabla USUARIOS",
+                () -> assertEquals(2, loaded),
+                () -> assertEquals(User.Role.ADMIN, users.findByUsername("pepe").orElseThrow().role()),
+                () -> assertEquals("ana", users.findById(2).orElseThrow().username())
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionExecutorTest {
+    private ConnectionExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.close();
+    }
+
+    @Test
+    void executeUntilLimitThenQueueThenReject() throws InterruptedException {
+        executor = new ConnectionExecutor(ConnectionExecutor.Mode.PLATFORM, 2, 1);
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(2);
+        Runnable blocking = () -> {
+            started.countDown();
+            awaitQuietly(release);
+        };
+
+        assertTrue(executor.execute(blocking));
+        assertTrue(executor.execute(blocking));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertAll("Conexiones en cola y rechazadas",
+                () -> assertTrue(executor.execute(blocking)),
+                () -> assertEquals(1, executor.queuedConnections()),
+                () -> assertFalse(executor.execute(blocking)),
+                () -> assertEquals(2, executor.activeConnections())
+        );
+        release.countDown();
+    }
+
+    @Test
+    void queuedConnectionRunsWhenSlotIsFreed() throws InterruptedException {
+        executor = new ConnectionExecutor(ConnectionExecutor.Mode.PLATFORM, 1, 5);
+        var release = new CountDownLatch(1);
+        var finished = new CountDownLatch(3);
+        var executed = new AtomicInteger();
+
+        executor.execute(() -> {
+            awaitQuietly(release);
+            executed.incrementAndGet();
+            finished.countDown();
+        });
+        executor.execute(() -> {
+            executed.incrementAndGet();
+            finished.countDown();
+        });
+        executor.execute(() -> {
+            executed.incrementAndGet();
+            finished.countDown();
+        });
+        assertEquals(2, executor.queuedConnections());
+
+        release.countDown();
+
+        assertAll("Conexiones en cola ejecutadas",
+                () -> assertTrue(finished.await(5, TimeUnit.SECONDS)),
+                () -> assertEquals(3, executed.get()),
+                () -> assertEquals(0, executor.queuedConnections())
+        );
+    }
+
+    @Test
+    void virtualModeFallsBackToPlatformWhenUnavailable() {
+        executor = new ConnectionExecutor(ConnectionExecutor.Mode.VIRTUAL, 1, 1);
+
+        var expected = ConnectionExecutor.virtualThreadsAvailable() ? ConnectionExecutor.Mode.VIRTUAL : ConnectionExecutor.Mode.PLATFORM;
+        assertEquals(expected, executor.getMode());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import server.admission.AdmissionController;
+import services.funko.FunkoService;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Prueba de carga: abre decenas de miles de conexiones TLS ociosas contra el servidor bloqueante
+ * con hilos virtuales y comprueba que la memoria por conexión y los hilos de plataforma se mantienen planos.
+ * <p>
+ * Se ejecuta con: ./gradlew test --tests server.IdleConnectionsLoadTest -DloadTest=true -DloadTest.connections=20000
+ * (requiere JDK 21+ y un límite de descriptores suficiente, por ejemplo ulimit -n 65536)
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class IdleConnectionsLoadTest {
+    private static final int CONNECTIONS = Integer.getInteger("loadTest.connections", 20000);
+    private static final long MAX_BYTES_PER_CONNECTION = Long.getLong("loadTest.maxBytesPerConnection", 200_000);
+    private static final char[] PASSWORD = "1234567".toCharArray();
+
+    @Test
+    void holdsIdleTlsConnectionsWithFlatMemory() throws Exception {
+        assumeTrue(ConnectionExecutor.virtualThreadsAvailable(), "La prueba de carga necesita hilos virtuales (JDK 21+)");
+
+        var executor = new ConnectionExecutor(ConnectionExecutor.Mode.VIRTUAL, CONNECTIONS, 1);
+        var funkoService = mock(FunkoService.class);
+        var serverSocket = (SSLServerSocket) serverContext().getServerSocketFactory().createServerSocket(0, CONNECTIONS);
+        serverSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
+        var clientNumber = new AtomicLong();
+        var acceptor = new Thread(() -> {
+            try {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    if (!executor.execute(new ClientHandler(socket, clientNumber.incrementAndGet(), funkoService, ServerConfig.builder().build(), AdmissionController.unlimited(), executor::executeWriter))) {
+                        socket.close();
+                    }
+                }
+            } catch (IOException e) {
+                // Cerramos el servidor al terminar la prueba
+            }
+        });
+        acceptor.start();
+
+        var clientFactory = clientContext().getSocketFactory();
+        List<SSLSocket> clients = new ArrayList<>(CONNECTIONS);
+        int warmup = CONNECTIONS / 10;
+        long baseline = 0;
+        int baselineThreads = 0;
+        try {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                var socket = (SSLSocket) clientFactory.createSocket("localhost", serverSocket.getLocalPort());
+                socket.startHandshake();
+                clients.add(socket);
+                if (i + 1 == warmup) {
+                    baseline = usedHeap();
+                    baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+                }
+            }
+            long bytesPerConnection = (usedHeap() - baseline) / (CONNECTIONS - warmup);
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            System.out.println("Conexiones: " + CONNECTIONS + ", bytes de heap por conexión: " + bytesPerConnection
+                    + ", hilos de plataforma: " + baselineThreads + " -> " + threads);
+
+            int lastThreads = baselineThreads;
+            assertAll("Conexiones ociosas con memoria plana",
+                    () -> assertEquals(CONNECTIONS, executor.activeConnections()),
+                    () -> assertTrue(bytesPerConnection < MAX_BYTES_PER_CONNECTION, "Demasiada memoria por conexión: " + bytesPerConnection),
+                    () -> assertTrue(threads < lastThreads + 50, "Los hilos de plataforma crecen con las conexiones: " + threads),
+                    () -> assertEquals("CLOSE", salir(clients.get(0))),
+                    () -> assertEquals("CLOSE", salir(clients.get(clients.size() - 1)))
+            );
+        } finally {
+            for (SSLSocket socket : clients) {
+                socket.close();
+            }
+            serverSocket.close();
+            executor.close();
+        }
+    }
+
+    private static String salir(SSLSocket socket) throws IOException {
+        var out = new PrintWriter(socket.getOutputStream(), true);
+        var in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        out.println("{\"type\":\"SALIR\"}");
+        String line = in.readLine();
+        return line != null && line.contains("\"CLOSE\"") ? "CLOSE" : line;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static SSLContext serverContext() throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/server_keystore.p12")) {
+            keyStore.load(in, PASSWORD);
+        }
+        var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static SSLContext clientContext() throws Exception {
+        var trustStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/client_keystore.p12")) {
+            trustStore.load(in, PASSWORD);
+        }
+        var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+}
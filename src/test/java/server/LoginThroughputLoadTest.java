@@ -0,0 +1,76 @@
+package server;
+
+import common.Login;
+import common.Request;
+import common.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import reactor.core.publisher.Flux;
+import server.admission.AdmissionController;
+import services.funko.FunkoService;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Prueba de rendimiento: lanza una ráfaga de LOGIN desde muchas conexiones a la vez y mide los
+ * inicios de sesión por segundo, el tiempo medio en la cola del pool de BCrypt y el de cada
+ * comprobación. Mientras dura la ráfaga comprueba que una petición autenticada de otra conexión
+ * se responde sin esperar a los inicios de sesión.
+ * <p>
+ * Se ejecuta con: ./gradlew test --tests server.LoginThroughputLoadTest -DloadTest=true -DloadTest.logins=200
+ * (opcionalmente -DloadTest.loginThreads=4 -DloadTest.loginQueue=1000)
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class LoginThroughputLoadTest {
+    private static final int LOGINS = Integer.getInteger("loadTest.logins", 200);
+    private static final int LOGIN_THREADS = Integer.getInteger("loadTest.loginThreads", Runtime.getRuntime().availableProcessors());
+    private static final int LOGIN_QUEUE = Integer.getInteger("loadTest.loginQueue", LOGINS);
+
+    @Test
+    void loginBurstKeepsOtherRequestsResponsive() {
+        var config = ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0).userRequestsPerSecond(0)
+                .maxInFlight(0).loginThreads(LOGIN_THREADS).loginQueue(LOGIN_QUEUE).build();
+        var admission = new AdmissionController(config);
+        var funkoService = mock(FunkoService.class);
+        var metrics = ServerMetrics.getInstance();
+        var token = (String) new RequestHandler(funkoService, admission, config).handle(login()).block().content();
+        long verified = metrics.get("login.verified");
+        long queueMicros = metrics.get("login.queue.micros");
+        long verifyMicros = metrics.get("login.verify.micros");
+
+        long start = System.nanoTime();
+        var burst = Flux.range(0, LOGINS)
+                .flatMap(i -> new RequestHandler(funkoService, admission, config).process(login()), LOGINS)
+                .map(Response::status)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .toFuture();
+        long otherStart = System.nanoTime();
+        var other = new RequestHandler(funkoService, admission, config)
+                .handle(new Request<>(Request.Type.METRICS, null, token, LocalDateTime.now().toString())).block();
+        long otherMillis = (System.nanoTime() - otherStart) / 1_000_000;
+        var statuses = burst.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long logins = metrics.get("login.verified") - verified;
+        System.out.printf("%d inicios de sesión con %d hilos en %.2f s: %.1f por segundo%n", logins, LOGIN_THREADS, seconds, logins / seconds);
+        System.out.printf("Tiempo medio en cola: %.1f ms, comprobación: %.1f ms, otra petición durante la ráfaga: %d ms%n",
+                (metrics.get("login.queue.micros") - queueMicros) / 1000.0 / logins,
+                (metrics.get("login.verify.micros") - verifyMicros) / 1000.0 / logins, otherMillis);
+
+        assertAll("Ráfaga de inicios de sesión",
+                () -> assertEquals(Map.of(Response.Status.TOKEN, (long) LOGINS), statuses),
+                () -> assertEquals(Response.Status.OK, other.status()),
+                () -> assertTrue(otherMillis < 1000, "La petición esperó a los inicios de sesión: " + otherMillis + " ms")
+        );
+    }
+
+    private static Request login() {
+        return new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234"), null, LocalDateTime.now().toString());
+    }
+}
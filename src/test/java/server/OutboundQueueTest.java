@@ -0,0 +1,165 @@
+package server;
+
+import common.framing.MessageWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+    private static final Executor WRITERS = task -> new Thread(task, "writer").start();
+
+    @Test
+    void messagesOfferedWhileWritingAreFlushedTogether() throws InterruptedException {
+        var firstAppend = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var writer = new RecordingWriter() {
+            @Override
+            public void append(byte[] message) throws IOException {
+                if (appended.isEmpty()) {
+                    firstAppend.countDown();
+                    awaitQuietly(release);
+                }
+                super.append(message);
+            }
+        };
+        var queue = new OutboundQueue(writer, () -> fail("No debe fallar"), OutboundQueue.DEFAULT_MAX_BATCH, WRITERS);
+        var written = new CountDownLatch(11);
+
+        var first = new Thread(() -> queue.offer(new byte[]{0}, written::countDown));
+        first.start();
+        assertTrue(firstAppend.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            queue.offer(new byte[]{(byte) i}, written::countDown);
+        }
+        release.countDown();
+
+        assertAll("Mensajes agrupados en un segundo flush",
+                () -> assertTrue(written.await(5, TimeUnit.SECONDS)),
+                () -> assertEquals(11, queue.messages()),
+                () -> assertEquals(2, queue.flushes()),
+                () -> assertEquals(2, writer.flushes.get()),
+                () -> assertEquals(11, writer.appended.size())
+        );
+    }
+
+    @Test
+    void batchIsFlushedWhenItReachesMaximum() {
+        var writer = new RecordingWriter();
+        var queue = new OutboundQueue(writer, () -> fail("No debe fallar"), 1, WRITERS);
+        var written = new CountDownLatch(2);
+
+        queue.offer(new byte[]{1}, written::countDown);
+        queue.offer(new byte[]{2}, written::countDown);
+
+        assertAll("Un flush por mensaje",
+                () -> assertTrue(written.await(5, TimeUnit.SECONDS)),
+                () -> assertEquals(2, writer.flushes.get())
+        );
+    }
+
+    @Test
+    void producersOnlyEnqueueWhileTheWriterIsBlocked() throws InterruptedException {
+        var blocked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        List<String> writingThreads = Collections.synchronizedList(new ArrayList<>());
+        var writer = new RecordingWriter() {
+            @Override
+            public void append(byte[] message) throws IOException {
+                writingThreads.add(Thread.currentThread().getName());
+                // Como un cliente que no lee: el socket no admite más datos
+                blocked.countDown();
+                awaitQuietly(release);
+                super.append(message);
+            }
+        };
+        var queue = new OutboundQueue(writer, () -> fail("No debe fallar"), OutboundQueue.DEFAULT_MAX_BATCH, WRITERS);
+        var written = new CountDownLatch(3);
+
+        queue.offer(new byte[]{1}, written::countDown);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        queue.offer(new byte[]{2}, written::countDown);
+        queue.offer(new byte[]{3}, written::countDown);
+        long offerMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        assertAll("Solo el escritor escribe",
+                () -> assertTrue(offerMillis < 1_000),
+                () -> assertTrue(written.await(5, TimeUnit.SECONDS)),
+                () -> assertTrue(writingThreads.stream().allMatch("writer"::equals))
+        );
+    }
+
+    @Test
+    void closedQueueDiscardsPendingAndNotifies() throws InterruptedException {
+        var writer = new RecordingWriter();
+        var queue = new OutboundQueue(writer, () -> fail("No debe fallar"), OutboundQueue.DEFAULT_MAX_BATCH, WRITERS);
+        var notified = new CountDownLatch(1);
+
+        queue.close();
+        queue.offer(new byte[]{1}, notified::countDown);
+
+        assertAll("Cola cerrada",
+                () -> assertTrue(notified.await(5, TimeUnit.SECONDS)),
+                () -> assertEquals(0, queue.messages())
+        );
+    }
+
+    @Test
+    void failedWriteClosesOnceAndStillNotifies() throws InterruptedException {
+        var errors = new AtomicInteger();
+        var notified = new CountDownLatch(2);
+        MessageWriter writer = new MessageWriter() {
+            @Override
+            public void append(byte[] message) throws IOException {
+                throw new IOException("Conexión cerrada");
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        var queue = new OutboundQueue(writer, errors::incrementAndGet, OutboundQueue.DEFAULT_MAX_BATCH, WRITERS);
+
+        queue.offer(new byte[]{1}, notified::countDown);
+        queue.offer(new byte[]{2}, notified::countDown);
+
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+        assertAll("Error de escritura",
+                () -> assertEquals(1, errors.get()),
+                () -> assertEquals(0, queue.messages())
+        );
+    }
+
+    private static class RecordingWriter implements MessageWriter {
+        final List<byte[]> appended = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger flushes = new AtomicInteger();
+
+        @Override
+        public void append(byte[] message) throws IOException {
+            appended.add(message);
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
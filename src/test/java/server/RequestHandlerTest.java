@@ -0,0 +1,464 @@
+package server;
+
+import common.Request;
+import common.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import model.BulkResult;
+import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
+import model.Projection;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import repository.user.UserRepository;
+import server.admission.AdmissionController;
+import services.funko.FunkoService;
+import services.token.TokenService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class RequestHandlerTest {
+
+    @Mock
+    FunkoService funkoService;
+
+    @Test
+    void responseEchoesRequestId() {
+        var handler = new RequestHandler(funkoService);
+
+        var response = handler.handle(new Request<>(Request.Type.SALIR, null, null, LocalDateTime.now().toString()).withId(42L)).block();
+
+        assertAll("Respuesta con el id de la petición",
+                () -> assertEquals(Response.Status.CLOSE, response.status()),
+                () -> assertEquals(42L, response.id())
+        );
+    }
+
+    @Test
+    void errorResponseEchoesRequestId() {
+        var handler = new RequestHandler(funkoService);
+
+        var response = handler.handle(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, "token-no-valido", LocalDateTime.now().toString()).withId(7L)).block();
+
+        assertAll("Respuesta de error con el id de la petición",
+                () -> assertEquals(Response.Status.ERROR, response.status()),
+                () -> assertEquals(7L, response.id())
+        );
+    }
+
+    @Test
+    void requestWithoutIdGetsResponseWithoutId() {
+        var handler = new RequestHandler(funkoService);
+
+        var response = handler.handle(new Request<>(Request.Type.SALIR, null, null, LocalDateTime.now().toString())).block();
+
+        assertNull(response.id());
+    }
+
+    @Test
+    void streamedListIsSentInChunksEndingWithTotal() {
+        when(funkoService.findAll()).thenReturn(funkos(250, new AtomicInteger()));
+        var handler = new RequestHandler(funkoService, 100);
+
+        var responses = handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, token(), LocalDateTime.now().toString()).withId(3L).withStream(true)).collectList().block();
+
+        assertAll("Lista enviada por trozos",
+                () -> assertEquals(4, responses.size()),
+                () -> assertEquals(Response.Status.CHUNK, responses.get(0).status()),
+                () -> assertEquals(Response.Status.CHUNK, responses.get(2).status()),
+                () -> assertEquals(Response.Status.END, responses.get(3).status()),
+                () -> assertEquals(100, ((List<?>) responses.get(0).content()).size()),
+                () -> assertEquals(50, ((List<?>) responses.get(2).content()).size()),
+                () -> assertEquals(250L, responses.get(3).content()),
+                () -> assertTrue(responses.stream().allMatch(response -> response.id() == 3L))
+        );
+    }
+
+    @Test
+    void streamedListWaitsForEachChunkToBeWritten() {
+        var emitted = new AtomicInteger();
+        when(funkoService.findAll()).thenReturn(funkos(1000, emitted));
+        var handler = new RequestHandler(funkoService, 10);
+        List<Response> written = new ArrayList<>();
+        List<Runnable> pendingWrites = new ArrayList<>();
+
+        handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, token(), LocalDateTime.now().toString()).withStream(true))
+                .subscribe(new ResponseSubscriber((response, done) -> {
+                    written.add(response);
+                    pendingWrites.add(done);
+                }, () -> true));
+
+        assertAll("Solo se lee el primer trozo mientras no se escribe",
+                () -> assertEquals(1, written.size()),
+                () -> assertTrue(emitted.get() <= 20, "Funkos leídos sin escribir: " + emitted.get())
+        );
+
+        pendingWrites.get(0).run();
+
+        assertAll("El siguiente trozo llega al escribir el anterior",
+                () -> assertEquals(2, written.size()),
+                () -> assertTrue(emitted.get() <= 30, "Funkos leídos sin escribir: " + emitted.get())
+        );
+    }
+
+    @Test
+    void streamIsCancelledWhenConnectionCloses() {
+        var emitted = new AtomicInteger();
+        when(funkoService.findAll()).thenReturn(funkos(1000, emitted));
+        var handler = new RequestHandler(funkoService, 10);
+        List<Response> written = new ArrayList<>();
+
+        var subscriber = new ResponseSubscriber((response, done) -> {
+            written.add(response);
+            done.run();
+        }, () -> written.size() < 2);
+        handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, token(), LocalDateTime.now().toString()).withStream(true)).subscribe(subscriber);
+
+        assertAll("Streaming cancelado al cerrar la conexión",
+                () -> assertEquals(2, written.size()),
+                () -> assertTrue(subscriber.isDisposed())
+        );
+    }
+
+    @Test
+    void requestOverConnectionRateGetsBusyButExitIsAlwaysServed() {
+        var admission = new AdmissionController(ServerConfig.builder().globalRequestsPerSecond(0).userRequestsPerSecond(0).maxInFlight(0)
+                .connectionRequestsPerSecond(1).connectionBurst(1).build());
+        var handler = new RequestHandler(funkoService, 100, admission);
+
+        var first = handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, "token-no-valido", LocalDateTime.now().toString()).withId(1L)).blockFirst();
+        var second = handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, "token-no-valido", LocalDateTime.now().toString()).withId(2L)).blockFirst();
+        var exit = handler.process(new Request<>(Request.Type.SALIR, null, null, LocalDateTime.now().toString()).withId(3L)).blockFirst();
+
+        assertAll("Petición rechazada por exceso de carga",
+                () -> assertEquals(Response.Status.ERROR, first.status()),
+                () -> assertEquals(Response.Status.BUSY, second.status()),
+                () -> assertEquals(2L, second.id()),
+                () -> assertEquals(Response.Status.CLOSE, exit.status())
+        );
+    }
+
+    @Test
+    void inFlightSlotIsHeldUntilStreamEnds() {
+        when(funkoService.findAll()).thenReturn(funkos(100, new AtomicInteger()));
+        var admission = new AdmissionController(ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0)
+                .userRequestsPerSecond(0).maxInFlight(1).build());
+        var handler = new RequestHandler(funkoService, 10, admission);
+        List<Runnable> pendingWrites = new ArrayList<>();
+
+        handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, token(), LocalDateTime.now().toString()).withStream(true))
+                .subscribe(new ResponseSubscriber((response, done) -> pendingWrites.add(done), () -> true));
+        var busy = handler.process(new Request<>(Request.Type.FIND_ALL_FUNKOS, null, token(), LocalDateTime.now().toString())).blockFirst();
+        assertEquals(Response.Status.BUSY, busy.status());
+        assertEquals(1, admission.inFlight());
+
+        while (pendingWrites.size() < 11) {
+            pendingWrites.get(pendingWrites.size() - 1).run();
+        }
+        pendingWrites.get(10).run();
+
+        assertEquals(0, admission.inFlight());
+    }
+
+    @Test
+    void metricsAreOnlyForAdmins() {
+        var handler = new RequestHandler(funkoService);
+        var userToken = TokenService.getInstance().createToken(UserRepository.getInstance().findById(2).orElseThrow(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+
+        var admin = handler.handle(new Request<>(Request.Type.METRICS, null, token(), LocalDateTime.now().toString())).block();
+        var user = handler.handle(new Request<>(Request.Type.METRICS, null, userToken, LocalDateTime.now().toString())).block();
+
+        assertAll("Contadores solo para administradores",
+                () -> assertEquals(Response.Status.OK, admin.status()),
+                () -> assertTrue(((Map<?, ?>) admin.content()).containsKey("requests.inFlight")),
+                () -> assertEquals(Response.Status.ERROR, user.status())
+        );
+    }
+
+    @Test
+    void reloadUsersIsOnlyForAdmins() {
+        var handler = new RequestHandler(funkoService);
+        var userToken = TokenService.getInstance().createToken(UserRepository.getInstance().findById(2).orElseThrow(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+
+        var admin = handler.handle(new Request<>(Request.Type.RELOAD_USERS, null, token(), LocalDateTime.now().toString())).block();
+        var user = handler.handle(new Request<>(Request.Type.RELOAD_USERS, null, userToken, LocalDateTime.now().toString())).block();
+
+        assertAll("Recarga de usuarios solo para administradores",
+                () -> assertEquals(Response.Status.OK, admin.status()),
+                () -> assertEquals("Usuarios recargados: 2", admin.content()),
+                () -> assertEquals(Response.Status.ERROR, user.status())
+        );
+    }
+
+    @Test
+    void batchRunsItemsConcurrentlyAndKeepsOrderAndStatus() {
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        for (long id = 1; id <= 4; id++) {
+            var funko = Funko.builder().id(id).nombre("Funko " + id).modelo("MARVEL").precio(10.0).build();
+            Mono<Funko> result = id == 3 ? Mono.error(new RuntimeException("Funko con id 3 no encontrado")) : Mono.just(funko);
+            when(funkoService.findById(id)).thenReturn(Mono.defer(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                return result.delaySubscription(Duration.ofMillis(50)).doOnTerminate(active::decrementAndGet);
+            }));
+        }
+        var handler = new RequestHandler(funkoService, 100, AdmissionController.unlimited(), 2, 10);
+        List<Request<String>> items = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            items.add(new Request<>(Request.Type.OBTAIN_FUNKO_COD, String.valueOf(id), null, null).withId(id * 10));
+        }
+        items.add(new Request<String>(Request.Type.LOGIN, null, null, null).withId(50L));
+
+        var response = handler.handle(new Request<>(Request.Type.BATCH, items, token(), LocalDateTime.now().toString()).withId(1L)).block();
+        var results = (List<Response>) response.content();
+
+        assertAll("Respuesta de cada petición en orden y con su estado",
+                () -> assertEquals(Response.Status.OK, response.status()),
+                () -> assertEquals(1L, response.id()),
+                () -> assertEquals(List.of(10L, 20L, 30L, 40L, 50L), results.stream().map(Response::id).toList()),
+                () -> assertEquals(List.of(Response.Status.OK, Response.Status.OK, Response.Status.ERROR, Response.Status.OK, Response.Status.ERROR),
+                        results.stream().map(Response::status).toList()),
+                () -> assertEquals(4L, ((Funko) results.get(3).content()).getId()),
+                () -> assertEquals(2, maxActive.get(), "Como mucho batchParallelism peticiones a la vez")
+        );
+    }
+
+    @Test
+    void batchItemsTakeAnInFlightSlotEachOrGetBusy() {
+        for (long id = 1; id <= 2; id++) {
+            var funko = Funko.builder().id(id).nombre("Funko " + id).modelo("MARVEL").precio(10.0).build();
+            when(funkoService.findById(id)).thenReturn(Mono.just(funko).delayElement(Duration.ofMillis(100)));
+        }
+        var admission = new AdmissionController(ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0)
+                .userRequestsPerSecond(0).maxInFlight(2).build());
+        var handler = new RequestHandler(funkoService, 100, admission, 4, 10);
+        List<Request<String>> items = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            items.add(new Request<>(Request.Type.OBTAIN_FUNKO_COD, String.valueOf(id), null, null).withId(id));
+        }
+
+        var response = handler.process(new Request<>(Request.Type.BATCH, items, token(), LocalDateTime.now().toString()).withId(1L)).blockFirst();
+        var results = (List<Response>) response.content();
+        var afterwards = handler.process(new Request<>(Request.Type.BATCH, items.subList(0, 2), token(), LocalDateTime.now().toString()).withId(2L)).blockFirst();
+
+        assertAll("Un hueco de peticiones en curso por cada petición del lote en marcha",
+                () -> assertEquals(List.of(Response.Status.OK, Response.Status.OK, Response.Status.BUSY, Response.Status.BUSY),
+                        results.stream().map(Response::status).toList()),
+                () -> assertEquals(List.of(1L, 2L, 3L, 4L), results.stream().map(Response::id).toList()),
+                () -> assertEquals(List.of(Response.Status.OK, Response.Status.OK),
+                        ((List<Response>) afterwards.content()).stream().map(Response::status).toList()),
+                () -> assertEquals(0, admission.inFlight())
+        );
+    }
+
+    @Test
+    void batchIsRejectedWithInvalidTokenOrTooManyItems() {
+        var handler = new RequestHandler(funkoService, 100, AdmissionController.unlimited(), 2, 2);
+        List<Request<String>> items = List.of(
+                new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", null, null),
+                new Request<>(Request.Type.OBTAIN_FUNKO_COD, "2", null, null),
+                new Request<>(Request.Type.OBTAIN_FUNKO_COD, "3", null, null));
+
+        var invalidToken = handler.handle(new Request<>(Request.Type.BATCH, items.subList(0, 2), "token-no-valido", null)).block();
+        var tooMany = handler.handle(new Request<>(Request.Type.BATCH, items, token(), null)).block();
+
+        assertAll("Lote rechazado entero",
+                () -> assertEquals(Response.Status.ERROR, invalidToken.status()),
+                () -> assertEquals(Response.Status.ERROR, tooMany.status())
+        );
+    }
+
+    @Test
+    void bulkDeleteAnswersEachRowAndIsOnlyForAdmins() {
+        when(funkoService.deleteAllById(List.of(1L, 2L, 3L), RequestHandler.DEFAULT_BULK_CHUNK_SIZE))
+                .thenReturn(Flux.just(BulkResult.ok(1L), BulkResult.failed("Funko con id 2 no encontrado"), BulkResult.ok(3L)));
+        var handler = new RequestHandler(funkoService);
+        var userToken = TokenService.getInstance().createToken(UserRepository.getInstance().findById(2).orElseThrow(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+
+        var admin = handler.handle(new Request<>(Request.Type.DELETE_FUNKOS, List.of(1L, 2L, 3L), token(), null).withId(7L)).block();
+        var user = handler.handle(new Request<>(Request.Type.DELETE_FUNKOS, List.of(1L, 2L, 3L), userToken, null).withId(8L)).block();
+        var rows = (List<Response>) admin.content();
+
+        assertAll("Resultado de cada fila en orden",
+                () -> assertEquals(Response.Status.OK, admin.status()),
+                () -> assertEquals(7L, admin.id()),
+                () -> assertEquals(List.of(0L, 1L, 2L), rows.stream().map(Response::id).toList()),
+                () -> assertEquals(List.of(Response.Status.OK, Response.Status.ERROR, Response.Status.OK), rows.stream().map(Response::status).toList()),
+                () -> assertEquals(Response.Status.ERROR, user.status())
+        );
+    }
+
+    @Test
+    void queryWithFieldsAnswersProjectionAndRejectsUnknownFields() {
+        var fields = EnumSet.of(FunkoField.ID, FunkoField.NOMBRE);
+        when(funkoService.findByModel("MARVEL", fields)).thenReturn(funkos(3, new AtomicInteger()));
+        var handler = new RequestHandler(funkoService);
+
+        var projected = handler.handle(new Request<>(Request.Type.OBTAIN_FUNKO_MODEL, "MARVEL", token(), null).withId(1L).withFields(List.of("id", "nombre"))).block();
+        var unknown = handler.handle(new Request<>(Request.Type.OBTAIN_FUNKO_MODEL, "MARVEL", token(), null).withId(2L).withFields(List.of("id", "color"))).block();
+
+        assertAll("Proyección de campos",
+                () -> assertEquals(Response.Status.OK, projected.status()),
+                () -> assertEquals(fields, ((Projection) projected.content()).fields()),
+                () -> assertEquals(3, ((List<?>) ((Projection) projected.content()).content()).size()),
+                () -> assertEquals(Response.Status.ERROR, unknown.status())
+        );
+    }
+
+    @Test
+    void watchSendsEventsWithoutHoldingAnInFlightSlotUntilConnectionCloses() {
+        var funko = Funko.builder().id(1L).nombre("Funko").modelo("MARVEL").precio(10.0).build();
+        when(funkoService.watch("MARVEL", RequestHandler.DEFAULT_WATCH_BUFFER_SIZE))
+                .thenReturn(Flux.just(FunkoEvent.created(funko)).concatWith(Flux.never()));
+        var admission = new AdmissionController(ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0)
+                .userRequestsPerSecond(0).maxInFlight(1).build());
+        var handler = new RequestHandler(funkoService, admission, ServerConfig.builder().build());
+        List<Response> received = new ArrayList<>();
+        var completed = new AtomicInteger();
+
+        handler.process(new Request<>(Request.Type.WATCH_FUNKOS, "MARVEL", token(), null).withId(5L))
+                .doOnComplete(completed::incrementAndGet)
+                .subscribe(received::add);
+        var inFlight = admission.inFlight();
+        handler.close();
+
+        assertAll("Suscripción a los cambios",
+                () -> assertEquals(List.of(Response.Status.OK, Response.Status.EVENT), received.stream().map(Response::status).toList()),
+                () -> assertEquals(FunkoEvent.created(funko), received.get(1).content()),
+                () -> assertEquals(5L, received.get(1).id()),
+                () -> assertEquals(0, inFlight),
+                () -> assertEquals(1, completed.get())
+        );
+    }
+
+    @Test
+    void queryWithSameETagAnswersNotModifiedWithoutContent() {
+        var funko = Funko.builder().id(1L).nombre("Funko").modelo("MARVEL").precio(10.0).build();
+        var changed = funko.toBuilder().precio(12.0).build();
+        when(funkoService.findById(1L)).thenReturn(Mono.just(funko), Mono.just(funko), Mono.just(changed));
+        var handler = new RequestHandler(funkoService);
+
+        var first = handler.handle(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", token(), null).withId(1L)).block();
+        var same = handler.handle(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", token(), null).withId(2L).withIfNoneMatch(first.etag())).block();
+        var other = handler.handle(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", token(), null).withId(3L).withIfNoneMatch(first.etag())).block();
+
+        assertAll("Lectura condicional",
+                () -> assertEquals(Response.Status.OK, first.status()),
+                () -> assertNotNull(first.etag()),
+                () -> assertEquals(Response.Status.NOT_MODIFIED, same.status()),
+                () -> assertNull(same.content()),
+                () -> assertEquals(first.etag(), same.etag()),
+                () -> assertEquals(2L, same.id()),
+                () -> assertEquals(Response.Status.OK, other.status()),
+                () -> assertNotEquals(first.etag(), other.etag())
+        );
+    }
+
+    @Test
+    void expiredRequestIsCancelledCountedAndAnsweredWithError() {
+        var cancelled = new AtomicBoolean();
+        when(funkoService.findById(1L)).thenReturn(Mono.<Funko>never().doOnCancel(() -> cancelled.set(true)));
+        var handler = new RequestHandler(funkoService);
+        long expired = ServerMetrics.getInstance().get("requests.expired");
+
+        var responses = handler.process(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", token(), null, 9L, null, null, null, 50L))
+                .collectList().block(Duration.ofSeconds(5));
+
+        assertAll("Petición caducada",
+                () -> assertEquals(1, responses.size()),
+                () -> assertEquals(Response.Status.ERROR, responses.get(0).status()),
+                () -> assertEquals(9L, responses.get(0).id()),
+                () -> assertTrue(cancelled.get()),
+                () -> assertEquals(expired + 1, ServerMetrics.getInstance().get("requests.expired"))
+        );
+    }
+
+    @Test
+    void closingTheConnectionCancelsRequestsInProgress() {
+        var cancelled = new AtomicBoolean();
+        when(funkoService.findById(1L)).thenReturn(Mono.<Funko>never().doOnCancel(() -> cancelled.set(true)));
+        var handler = new RequestHandler(funkoService);
+        var completed = new AtomicBoolean();
+
+        handler.process(new Request<>(Request.Type.OBTAIN_FUNKO_COD, "1", token(), null).withId(1L))
+                .doOnComplete(() -> completed.set(true))
+                .subscribe();
+        handler.close();
+
+        assertAll("Petición cancelada al cerrar la conexión",
+                () -> assertTrue(cancelled.get()),
+                () -> assertTrue(completed.get())
+        );
+    }
+
+    @Test
+    void sessionModeBindsTheConnectionToTheUserUntilItsTokenExpires() throws InterruptedException {
+        var handler = new RequestHandler(funkoService, new AdmissionController(ServerConfig.builder().build()), ServerConfig.builder().sessionMode(true).build());
+        var shortToken = TokenService.getInstance().createToken(UserRepository.getInstance().findById(1).orElseThrow(), Server.TOKEN_SECRET, 1500);
+        long expired = ServerMetrics.getInstance().get("sessions.expired");
+
+        var first = handler.handle(new Request<>(Request.Type.METRICS, null, shortToken, LocalDateTime.now().toString())).block();
+        var withoutToken = handler.handle(new Request<>(Request.Type.METRICS, null, null, LocalDateTime.now().toString())).block();
+        var otherConnection = new RequestHandler(funkoService).handle(new Request<>(Request.Type.METRICS, null, null, LocalDateTime.now().toString())).block();
+        for (int i = 0; i < 100 && ServerMetrics.getInstance().get("sessions.expired") == expired; i++) {
+            Thread.sleep(50);
+        }
+        var afterExpiry = handler.handle(new Request<>(Request.Type.METRICS, null, null, LocalDateTime.now().toString())).block();
+
+        assertAll("Sesión ligada a la conexión hasta que caduca el token",
+                () -> assertEquals(Response.Status.OK, first.status()),
+                () -> assertEquals(Response.Status.OK, withoutToken.status()),
+                () -> assertEquals(Response.Status.ERROR, otherConnection.status()),
+                () -> assertEquals(Response.Status.ERROR, afterExpiry.status())
+        );
+    }
+
+    @Test
+    void revokedTokenIsRejectedEvenFromACachedTokenOrABoundSession() {
+        var handler = new RequestHandler(funkoService, new AdmissionController(ServerConfig.builder().build()), ServerConfig.builder().sessionMode(true).build());
+        var admin = new RequestHandler(funkoService);
+        var revoked = token();
+        var other = token();
+
+        var before = handler.handle(new Request<>(Request.Type.METRICS, null, revoked, LocalDateTime.now().toString())).block();
+        var revocation = admin.handle(new Request<>(Request.Type.REVOKE_TOKEN, revoked, other, LocalDateTime.now().toString())).block();
+        var session = handler.handle(new Request<>(Request.Type.METRICS, null, null, LocalDateTime.now().toString())).block();
+        var cached = admin.handle(new Request<>(Request.Type.METRICS, null, revoked, LocalDateTime.now().toString())).block();
+        var stillValid = handler.handle(new Request<>(Request.Type.METRICS, null, other, LocalDateTime.now().toString())).block();
+        var byUser = admin.handle(new Request<>(Request.Type.REVOKE_TOKEN, "99", other, LocalDateTime.now().toString())).block();
+
+        assertAll("Token revocado",
+                () -> assertEquals(Response.Status.OK, before.status()),
+                () -> assertEquals(Response.Status.OK, revocation.status()),
+                () -> assertEquals(Response.Status.ERROR, session.status()),
+                () -> assertEquals(Response.Status.ERROR, cached.status()),
+                () -> assertEquals(Response.Status.OK, stillValid.status()),
+                () -> assertEquals("Tokens del usuario 99 revocados", byUser.content())
+        );
+    }
+
+    private static Flux<Funko> funkos(int count, AtomicInteger emitted) {
+        return Flux.range(1, count)
+                .map(i -> Funko.builder().id((long) i).nombre("Funko " + i).modelo("MARVEL").precio(10.0).build())
+                .doOnNext(funko -> emitted.incrementAndGet());
+    }
+
+    private static String token() {
+        return TokenService.getInstance().createToken(UserRepository.getInstance().findById(1).orElseThrow(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+    }
+}
@@ -0,0 +1,137 @@
+package server.admission;
+
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import server.ServerConfig;
+import server.ServerMetrics;
+import server.exceptions.server.OverloadedException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+    private final ServerMetrics metrics = ServerMetrics.getInstance();
+
+    private static ServerConfig.ServerConfigBuilder unlimited() {
+        return ServerConfig.builder().globalRequestsPerSecond(0).connectionRequestsPerSecond(0).userRequestsPerSecond(0).maxInFlight(0);
+    }
+
+    @Test
+    void connectionOverItsRateIsShedWithoutAffectingOthers() {
+        var admission = new AdmissionController(unlimited().connectionRequestsPerSecond(1).connectionBurst(2).build());
+        var noisy = admission.newConnectionBucket();
+        var quiet = admission.newConnectionBucket();
+        long shed = metrics.get("requests.shed.connection_rate");
+
+        assertAll("Solo se rechaza la conexión ruidosa",
+                () -> assertEquals(Admission.ADMITTED, admission.admit(noisy)),
+                () -> assertEquals(Admission.ADMITTED, admission.admit(noisy)),
+                () -> assertEquals(Admission.CONNECTION_RATE, admission.admit(noisy)),
+                () -> assertEquals(Admission.ADMITTED, admission.admit(quiet)),
+                () -> assertEquals(shed + 1, metrics.get("requests.shed.connection_rate"))
+        );
+    }
+
+    @Test
+    void loginsBeyondThePasswordQueueAreRejectedAtOnce() {
+        var admission = new AdmissionController(unlimited().loginThreads(1).loginQueue(1).build());
+        var hash = BCrypt.hashpw("pepe1234", BCrypt.gensalt(10));
+        long shed = metrics.get("requests.shed.login_queue");
+        long verified = metrics.get("login.verified");
+
+        var checks = Flux.range(0, 4).flatMap(i -> admission.checkPassword(i == 0 ? "otra" : "pepe1234", hash)
+                .map(valid -> valid ? "correcta" : "incorrecta")
+                .onErrorResume(OverloadedException.class, e -> Mono.just("rechazada")), 4)
+                .collectList().block(Duration.ofSeconds(10));
+
+        assertAll("Solo se comprueban las contraseñas que caben en el pool y su cola",
+                () -> assertEquals(List.of("correcta", "incorrecta", "rechazada", "rechazada"), checks.stream().sorted().toList()),
+                () -> assertEquals(shed + 2, metrics.get("requests.shed.login_queue")),
+                () -> assertEquals(verified + 2, metrics.get("login.verified")),
+                () -> assertTrue(metrics.get("login.verify.micros") > 0)
+        );
+    }
+
+    @Test
+    void globalRateAppliesToAllConnections() {
+        var admission = new AdmissionController(unlimited().globalRequestsPerSecond(1).globalBurst(2).build());
+
+        assertAll("El límite global se reparte entre conexiones",
+                () -> assertEquals(Admission.ADMITTED, admission.admit(admission.newConnectionBucket())),
+                () -> assertEquals(Admission.ADMITTED, admission.admit(admission.newConnectionBucket())),
+                () -> assertEquals(Admission.GLOBAL_RATE, admission.admit(admission.newConnectionBucket()))
+        );
+    }
+
+    @Test
+    void inFlightSlotsAreReturnedOnRelease() {
+        var admission = new AdmissionController(unlimited().maxInFlight(2).build());
+        long shed = metrics.get("requests.shed");
+
+        assertEquals(Admission.ADMITTED, admission.admit(null));
+        assertEquals(Admission.ADMITTED, admission.admit(null));
+        assertEquals(2, admission.inFlight());
+        assertEquals(Admission.IN_FLIGHT, admission.admit(null));
+        assertEquals(shed + 1, metrics.get("requests.shed"));
+
+        admission.release();
+
+        assertAll("Al terminar una petición se admite otra",
+                () -> assertEquals(1, admission.inFlight()),
+                () -> assertEquals(Admission.ADMITTED, admission.admit(null))
+        );
+    }
+
+    @Test
+    void userRateIsTrackedPerUser() {
+        var admission = new AdmissionController(unlimited().userRequestsPerSecond(1).userBurst(1).build());
+        long shed = metrics.get("requests.shed.user_rate");
+
+        assertAll("Cada usuario tiene su propio límite",
+                () -> assertTrue(admission.admitUser(1)),
+                () -> assertFalse(admission.admitUser(1)),
+                () -> assertTrue(admission.admitUser(2)),
+                () -> assertEquals(shed + 1, metrics.get("requests.shed.user_rate"))
+        );
+    }
+
+    @Test
+    void drainingShedsNewRequestsAndWaitsForRunningOnes() throws InterruptedException {
+        var admission = AdmissionController.unlimited();
+        assertEquals(Admission.ADMITTED, admission.admit(null));
+
+        admission.startDraining();
+
+        assertEquals(Admission.DRAINING, admission.admit(null));
+        assertFalse(admission.awaitDrained(50), "Queda una petición en curso");
+
+        var finisher = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            admission.release();
+        });
+        finisher.start();
+
+        assertTrue(admission.awaitDrained(5_000));
+        assertEquals(0, admission.inFlight());
+        finisher.join();
+    }
+
+    @Test
+    void unlimitedAdmitsEverything() {
+        var admission = AdmissionController.unlimited();
+
+        assertNull(admission.newConnectionBucket());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(Admission.ADMITTED, admission.admit(null));
+            assertTrue(admission.admitUser(1));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package server.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void burstIsConsumedAndThenRejected() {
+        var clock = new AtomicLong();
+        var bucket = new TokenBucket(10, 3, clock::get);
+
+        assertAll("La ráfaga pasa y la siguiente petición se rechaza",
+                () -> assertTrue(bucket.tryAcquire()),
+                () -> assertTrue(bucket.tryAcquire()),
+                () -> assertTrue(bucket.tryAcquire()),
+                () -> assertFalse(bucket.tryAcquire())
+        );
+    }
+
+    @Test
+    void tokensRefillAtTheConfiguredRate() {
+        var clock = new AtomicLong();
+        var bucket = new TokenBucket(10, 1, clock::get);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        clock.addAndGet(50_000_000L);
+        assertFalse(bucket.tryAcquire(), "Media ficha no basta");
+
+        clock.addAndGet(50_000_000L);
+        assertTrue(bucket.tryAcquire(), "A 10 por segundo hay una ficha cada 100 ms");
+    }
+
+    @Test
+    void refillNeverExceedsBurst() {
+        var clock = new AtomicLong();
+        var bucket = new TokenBucket(10, 2, clock::get);
+        bucket.tryAcquire();
+        bucket.tryAcquire();
+
+        clock.addAndGet(60_000_000_000L);
+
+        assertAll("Tras mucho tiempo solo hay ráfaga",
+                () -> assertTrue(bucket.tryAcquire()),
+                () -> assertTrue(bucket.tryAcquire()),
+                () -> assertFalse(bucket.tryAcquire())
+        );
+    }
+}
@@ -0,0 +1,240 @@
+package server.nio;
+
+import common.Request;
+import common.Response;
+import common.codec.Codecs;
+import common.framing.Framing;
+import common.framing.MessageReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import server.ServerConfig;
+import server.admission.AdmissionController;
+import services.funko.FunkoService;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioServerTest {
+    private static final char[] PASSWORD = "1234567".toCharArray();
+    private static final int MAX_FRAME_SIZE = 1024;
+    private static final int MAX_CONNECTIONS = 2;
+    private NioServer server;
+    private Thread acceptor;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        var config = ServerConfig.builder().nioEventLoops(1).maxFrameSize(MAX_FRAME_SIZE).maxConnections(MAX_CONNECTIONS).build();
+        server = new NioServer(0, serverContext(), Mockito.mock(FunkoService.class), config, AdmissionController.unlimited());
+        acceptor = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                // La prueba falla al no poder conectar
+            }
+        });
+        acceptor.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (server.localPort() < 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stopAccepting();
+        server.close();
+        acceptor.join(5_000);
+    }
+
+    @Test
+    void lineModeHandshakeAndRequest() throws Exception {
+        try (var socket = connect()) {
+            var out = socket.getOutputStream();
+            out.write(json(ping(5L)));
+            out.write('\n');
+            out.flush();
+
+            var response = read(Framing.reader(Framing.Mode.LINE, socket.getInputStream(), MAX_FRAME_SIZE));
+
+            assertAll("Respuesta en modo líneas",
+                    () -> assertEquals(Response.Status.HEARTBEAT, response.status()),
+                    () -> assertEquals(5L, response.id())
+            );
+        }
+    }
+
+    @Test
+    void frameModeHandshakeAndRequest() throws Exception {
+        try (var socket = connect()) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = socket.getOutputStream();
+            Framing.request(in, out);
+            var writer = Framing.writer(Framing.Mode.FRAME, out);
+            writer.append(json(ping(6L)));
+            writer.flush();
+
+            var response = read(Framing.reader(Framing.Mode.FRAME, in, MAX_FRAME_SIZE));
+
+            assertAll("Respuesta en modo tramas",
+                    () -> assertEquals(Response.Status.HEARTBEAT, response.status()),
+                    () -> assertEquals(6L, response.id())
+            );
+        }
+    }
+
+    @Test
+    void requestSplitAcrossReadsIsReassembled() throws Exception {
+        try (var socket = connect()) {
+            socket.setTcpNoDelay(true);
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = socket.getOutputStream();
+            Framing.request(in, out);
+            byte[] body = json(ping(7L));
+            byte[] frame = new byte[Framing.HEADER_SIZE + body.length];
+            Framing.writeHeader(frame, body.length);
+            System.arraycopy(body, 0, frame, Framing.HEADER_SIZE, body.length);
+
+            // Cada trozo va en su propio registro TLS: la cabecera partida y el cuerpo en dos mitades
+            int[] cuts = {2, Framing.HEADER_SIZE + body.length / 2, frame.length};
+            int from = 0;
+            for (int cut : cuts) {
+                writeAndWait(out, frame, from, cut);
+                from = cut;
+            }
+            var response = read(Framing.reader(Framing.Mode.FRAME, in, MAX_FRAME_SIZE));
+
+            assertEquals(7L, response.id());
+        }
+    }
+
+    @Test
+    void oversizeFrameClosesTheConnection() throws Exception {
+        try (var socket = connect()) {
+            var in = new BufferedInputStream(socket.getInputStream());
+            var out = socket.getOutputStream();
+            Framing.request(in, out);
+            byte[] header = new byte[Framing.HEADER_SIZE];
+            Framing.writeHeader(header, MAX_FRAME_SIZE + 1);
+            out.write(header);
+            out.write(new byte[16]);
+            out.flush();
+
+            assertTrue(closedByServer(Framing.reader(Framing.Mode.FRAME, in, MAX_FRAME_SIZE)));
+        }
+    }
+
+    @Test
+    void closeResponseIsFollowedByTlsShutdown() throws Exception {
+        try (var socket = connect()) {
+            var out = socket.getOutputStream();
+            out.write(json(new Request<>(Request.Type.SALIR, null, null, null).withId(8L)));
+            out.write('\n');
+            out.flush();
+            var reader = Framing.reader(Framing.Mode.LINE, socket.getInputStream(), MAX_FRAME_SIZE);
+
+            var response = read(reader);
+
+            assertAll("CLOSE y cierre TLS ordenado",
+                    () -> assertEquals(Response.Status.CLOSE, response.status()),
+                    () -> assertEquals(8L, response.id()),
+                    // Con close_notify el cliente lee el fin de la conexión, no un error
+                    () -> assertNull(reader.read())
+            );
+        }
+    }
+
+    @Test
+    void connectionsOverTheLimitAreClosedUntilOneIsFreed() throws Exception {
+        var first = connect();
+        try (var second = connect()) {
+            assertThrows(IOException.class, () -> connect().close(), "La tercera conexión pasa del límite");
+
+            first.close();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (server.connections() >= MAX_CONNECTIONS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            try (var third = connect()) {
+                var out = third.getOutputStream();
+                out.write(json(ping(9L)));
+                out.write('\n');
+                out.flush();
+
+                assertEquals(9L, read(Framing.reader(Framing.Mode.LINE, third.getInputStream(), MAX_FRAME_SIZE)).id());
+            }
+        }
+    }
+
+    private SSLSocket connect() throws Exception {
+        var socket = (SSLSocket) clientContext().getSocketFactory().createSocket("localhost", server.localPort());
+        socket.setSoTimeout(5_000);
+        socket.setEnabledProtocols(new String[]{"TLSv1.3"});
+        socket.startHandshake();
+        return socket;
+    }
+
+    private static Request<String> ping(long id) {
+        return new Request<String>(Request.Type.PING, null, null, null).withId(id);
+    }
+
+    private static byte[] json(Request<?> request) {
+        return Codecs.JSON.encode(request);
+    }
+
+    private static Response read(MessageReader reader) throws IOException {
+        ByteBuffer message = reader.read();
+        assertNotNull(message, "El servidor ha cerrado la conexión");
+        return Codecs.JSON.decodeResponse(message);
+    }
+
+    private static void writeAndWait(OutputStream out, byte[] bytes, int from, int to) throws Exception {
+        out.write(bytes, from, to - from);
+        out.flush();
+        Thread.sleep(50);
+    }
+
+    private static boolean closedByServer(MessageReader reader) {
+        try {
+            return reader.read() == null;
+        } catch (IOException e) {
+            // Cierre sin close_notify
+            return true;
+        }
+    }
+
+    private static SSLContext serverContext() throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/server_keystore.p12")) {
+            keyStore.load(in, PASSWORD);
+        }
+        var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static SSLContext clientContext() throws Exception {
+        var trustStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/client_keystore.p12")) {
+            trustStore.load(in, PASSWORD);
+        }
+        var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -1,23 +1,38 @@
 package services;
 
+import model.BulkResult;
 import model.Funko;
+import model.FunkoEvent;
+import model.FunkoField;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import repository.funko.FunkoRepository;
 import services.funko.FunkoServiceImp;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class FunkoServiceTest {
@@ -204,6 +219,156 @@ class FunkoServiceTest {
 
     }
 
+    @Test
+    void findAllByPagesFollowsCursor() {
+        when(funkoRepository.findAfter(0L, 3, FunkoField.ALL)).thenReturn(Flux.just(getFunko(1L, 10.0), getFunko(2L, 20.0), getFunko(3L, 30.0)));
+        when(funkoRepository.findAfter(2L, 3, FunkoField.ALL)).thenReturn(Flux.just(getFunko(3L, 30.0)));
+
+        var first = service.findAll(null, 2).block();
+        var second = service.findAll(first.next(), 2).block();
+
+        assertAll("Páginas de funkos por cursor",
+                () -> assertEquals(List.of(1L, 2L), first.funkos().stream().map(Funko::getId).toList()),
+                () -> assertTrue(first.hasNext()),
+                () -> assertEquals(List.of(3L), second.funkos().stream().map(Funko::getId).toList()),
+                () -> assertFalse(second.hasNext())
+        );
+    }
+
+    @Test
+    void findAllWithInvalidCursorFails() {
+        assertThrows(Exception.class, () -> service.findAll("no-es-un-cursor", 2).block());
+    }
+
+    @Test
+    void bulkChunksRunOneAtATime() {
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var funkos = List.of(getFunko(1L, 10.0), getFunko(2L, 20.0), getFunko(3L, 30.0));
+        when(funkoRepository.saveAll(anyList())).thenAnswer(call -> {
+            List<Funko> chunk = call.getArgument(0);
+            return Flux.fromIterable(chunk).map(BulkResult::ok)
+                    .delaySubscription(Duration.ofMillis(20))
+                    .doOnSubscribe(subscription -> maxActive.accumulateAndGet(active.incrementAndGet(), Math::max))
+                    .doOnTerminate(active::decrementAndGet);
+        });
+
+        var results = service.saveAll(funkos, 1).collectList().block();
+
+        assertAll("Un trozo detrás de otro",
+                () -> assertEquals(3, results.size()),
+                () -> assertEquals(1, maxActive.get())
+        );
+    }
+
+    @Test
+    void watchSendsChangesOfItsModel() {
+        var funko = getFunko(1L, 10.0);
+        when(funkoRepository.save(funko)).thenReturn(Mono.just(funko));
+        when(funkoRepository.findByUuid(funko.getCod())).thenReturn(Mono.just(funko));
+        when(funkoRepository.findById(1L)).thenReturn(Mono.just(funko));
+        when(funkoRepository.deleteById(1L)).thenReturn(Mono.just(true));
+        List<FunkoEvent> marvel = new CopyOnWriteArrayList<>();
+        List<FunkoEvent> disney = new CopyOnWriteArrayList<>();
+        var delivered = new CountDownLatch(2);
+        var marvelWatch = service.watch("MARVEL", 10).subscribe(event -> {
+            marvel.add(event);
+            delivered.countDown();
+        });
+        var disneyWatch = service.watch("DISNEY", 10).subscribe(disney::add);
+
+        service.save(funko).block();
+        service.deleteById(1L).block();
+        assertTrue(await(delivered));
+        marvelWatch.dispose();
+        disneyWatch.dispose();
+
+        assertAll("Cambios del modelo suscrito",
+                () -> assertEquals(List.of(FunkoEvent.Type.CREATED, FunkoEvent.Type.DELETED), marvel.stream().map(FunkoEvent::type).toList()),
+                () -> assertEquals(1L, marvel.get(1).id()),
+                () -> assertTrue(disney.isEmpty())
+        );
+    }
+
+    @Test
+    void slowWatcherIsToldToResync() {
+        var funko = getFunko(1L, 10.0);
+        when(funkoRepository.save(funko)).thenReturn(Mono.just(funko));
+        when(funkoRepository.findByUuid(funko.getCod())).thenReturn(Mono.just(funko));
+        List<FunkoEvent> received = new CopyOnWriteArrayList<>();
+        var completed = new CountDownLatch(1);
+        var slow = new BaseSubscriber<FunkoEvent>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // No pide nada hasta que se llena su buffer
+            }
+
+            @Override
+            protected void hookOnNext(FunkoEvent event) {
+                received.add(event);
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                completed.countDown();
+            }
+        };
+        service.watch(null, 2).subscribe(slow);
+
+        for (int i = 0; i < 3; i++) {
+            service.save(funko).block();
+        }
+        slow.requestUnbounded();
+
+        assertAll("Suscriptor lento descartado",
+                () -> assertTrue(await(completed)),
+                () -> assertEquals(FunkoEvent.Type.RESYNC, received.get(received.size() - 1).type())
+        );
+    }
+
+    @Test
+    void blockedWatcherDoesNotBlockSaves() throws Exception {
+        var funko = getFunko(1L, 10.0);
+        when(funkoRepository.save(funko)).thenReturn(Mono.just(funko));
+        when(funkoRepository.findByUuid(funko.getCod())).thenReturn(Mono.just(funko));
+        var writing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var watch = service.watch(null, 10).subscribe(event -> {
+            // Como un socket con el buffer de envío lleno
+            writing.countDown();
+            await(release);
+        });
+        var saver = Executors.newSingleThreadExecutor();
+        try {
+            service.save(funko).block();
+            assertTrue(await(writing));
+
+            var saves = saver.submit(() -> {
+                for (int i = 0; i < 3; i++) {
+                    service.save(funko).block();
+                }
+            });
+
+            assertAll("Guardados con un suscriptor bloqueado",
+                    () -> saves.get(5, TimeUnit.SECONDS),
+                    () -> assertEquals(1, release.getCount())
+            );
+        } finally {
+            release.countDown();
+            watch.dispose();
+            saver.shutdownNow();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     private Funko getFunko(Long id, double precio) {
     return Funko.builder()
             .id(id)
@@ -0,0 +1,84 @@
+package services.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevocationListTest {
+
+    @Test
+    void revokedTokensAndUsersAreFoundUntilTheyExpire() {
+        var now = new AtomicLong(10_000);
+        var revocations = new RevocationList(now::get);
+
+        revocations.revokeToken("jti-1", 20_000);
+        revocations.revokeUser(7, 30_000);
+
+        assertAll("Revocaciones en vigor",
+                () -> assertTrue(revocations.isRevoked("jti-1", 1, 5_000)),
+                () -> assertFalse(revocations.isRevoked("jti-2", 1, 5_000)),
+                () -> assertTrue(revocations.isRevoked("jti-2", 7, 9_000)),
+                () -> assertFalse(revocations.isRevoked("jti-3", 7, 11_000), "Los tokens emitidos después siguen siendo válidos"),
+                () -> assertFalse(IntStream.range(0, 10_000).anyMatch(i -> revocations.isRevoked("otro-" + i, 100 + i, 5_000)))
+        );
+
+        now.set(20_000);
+        revocations.purge();
+
+        assertAll("La revocación del token caduca con el token",
+                () -> assertFalse(revocations.isRevoked("jti-1", 1, 5_000)),
+                () -> assertTrue(revocations.isRevoked("jti-1", 7, 5_000)),
+                () -> assertEquals(1, revocations.size())
+        );
+
+        now.set(30_000);
+        revocations.purge();
+
+        assertAll("Todas caducadas",
+                () -> assertFalse(revocations.isRevoked("jti-1", 7, 5_000)),
+                () -> assertEquals(0, revocations.size())
+        );
+    }
+
+    @Test
+    void tokenIssuedInTheSameSecondAfterRevokingTheUserIsValid() {
+        var now = new AtomicLong(10_400);
+        var revocations = new RevocationList(now::get);
+
+        revocations.revokeUser(7, 30_000);
+        now.set(10_900);
+
+        assertAll("Revocación a precisión de milisegundos",
+                // Un nuevo inicio de sesión justo después se emite en el mismo segundo que la revocación
+                () -> assertFalse(revocations.isRevoked("jti-nuevo", 7, 10_900)),
+                () -> assertFalse(revocations.isRevoked("jti-nuevo", 7, 10_401)),
+                () -> assertTrue(revocations.isRevoked("jti-viejo", 7, 9_000))
+        );
+    }
+
+    @Test
+    void tokenIssuedInTheSameSecondBeforeRevokingTheUserIsRevoked() {
+        var now = new AtomicLong(10_400);
+        var revocations = new RevocationList(now::get);
+
+        revocations.revokeUser(7, 30_000);
+
+        assertAll("Tokens del mismo segundo emitidos antes de la revocación",
+                () -> assertTrue(revocations.isRevoked("jti-robado", 7, 10_000)),
+                () -> assertTrue(revocations.isRevoked("jti-robado", 7, 10_399)),
+                () -> assertTrue(revocations.isRevoked("jti-robado", 7, 10_400))
+        );
+    }
+
+    @Test
+    void alreadyExpiredTokensAreNotStored() {
+        var revocations = new RevocationList(() -> 10_000);
+
+        revocations.revokeToken("jti-1", 9_000);
+
+        assertEquals(0, revocations.size());
+    }
+}
@@ -0,0 +1,131 @@
+package services.token;
+
+import common.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+    private final User pepe = new User(1, "pepe", "hash", User.Role.ADMIN);
+    private final User ana = new User(2, "ana", "hash", User.Role.USER);
+
+    @Test
+    void tokenIsServedUntilItExpires() {
+        var now = new AtomicLong(1_000);
+        var cache = new VerifiedTokenCache(10, now::get);
+
+        cache.put("a", entry(pepe, 2_000));
+        var beforeExpiry = cache.get("a");
+        now.set(2_000);
+        var afterExpiry = cache.get("a");
+
+        assertAll("Caducidad de los tokens",
+                () -> assertEquals(Optional.of(pepe), beforeExpiry.map(VerifiedTokenCache.Entry::user)),
+                () -> assertEquals(Optional.empty(), afterExpiry),
+                () -> assertEquals(0, cache.size())
+        );
+    }
+
+    @Test
+    void fullCacheDropsExpiredTokensBeforeLeastUsed() {
+        var now = new AtomicLong(1_000);
+        var cache = new VerifiedTokenCache(2, now::get);
+
+        cache.put("a", entry(pepe, 5_000));
+        cache.put("b", entry(ana, 1_500));
+        now.set(2_000);
+        cache.put("c", entry(ana, 5_000));
+        cache.put("d", entry(pepe, 5_000));
+        cache.get("c");
+
+        assertAll("Expulsión de tokens",
+                () -> assertEquals(2, cache.size()),
+                () -> assertEquals(Optional.empty(), cache.get("a")),
+                () -> assertEquals(Optional.of(ana), cache.get("c").map(VerifiedTokenCache.Entry::user)),
+                () -> assertEquals(Optional.of(pepe), cache.get("d").map(VerifiedTokenCache.Entry::user))
+        );
+    }
+
+    @Test
+    void concurrentUseStaysBoundedAndServesRecentTokens() throws InterruptedException {
+        var cache = new VerifiedTokenCache(100);
+        var pool = Executors.newFixedThreadPool(8);
+        var misses = new AtomicInteger();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    var token = thread + "-" + i;
+                    cache.put(token, entry(pepe, Long.MAX_VALUE));
+                    if (cache.get(token).isEmpty()) {
+                        misses.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertAll("Caché compartida entre hilos",
+                () -> assertTrue(cache.size() <= 100 + 8, "Tamaño " + cache.size()),
+                () -> assertTrue(misses.get() < 8 * 5_000 / 10, "Fallos " + misses.get())
+        );
+    }
+
+    @Test
+    void tokenServiceVerifiesOnceAndRejectsOtherSecrets() {
+        var tokens = TokenService.getInstance();
+        var token = tokens.createToken(pepe, "secreto", 10_000);
+
+        var decoded = tokens.decode(token, "secreto").orElseThrow();
+        tokens.remember(token, "secreto", decoded, pepe);
+
+        assertAll("Verificación y caché de tokens",
+                () -> assertEquals(1L, decoded.getClaim("userid").asLong()),
+                () -> assertEquals(Optional.of(pepe), tokens.cachedUser(token, "secreto")),
+                () -> assertTrue(tokens.decode(token, "otro").isEmpty()),
+                () -> assertEquals(Optional.empty(), tokens.cachedUser(token, "otro")),
+                () -> assertTrue(tokens.verifyToken(token, "secreto", pepe))
+        );
+    }
+
+    @Test
+    void revokedTokenIsNotServedFromTheCache() {
+        var tokens = TokenService.getInstance();
+        var token = tokens.createToken(ana, "revocados", 10_000);
+        tokens.remember(token, "revocados", tokens.decode(token, "revocados").orElseThrow(), ana);
+
+        assertTrue(tokens.revokeToken(token, "revocados"));
+
+        assertAll("Token revocado",
+                () -> assertEquals(Optional.empty(), tokens.cachedUser(token, "revocados")),
+                () -> assertTrue(tokens.decode(token, "revocados").isEmpty())
+        );
+    }
+
+    @Test
+    void revokingTheUserRevokesTokensIssuedJustBefore() {
+        var tokens = TokenService.getInstance();
+        var luis = new User(99, "luis", "hash", User.Role.USER);
+        long before = System.currentTimeMillis();
+        var token = tokens.createToken(luis, "usuarios", 10_000);
+        var issuedAt = TokenService.issuedAt(tokens.read(token).orElseThrow());
+
+        tokens.revokeUser(luis.id(), 10_000);
+
+        assertAll("Revocación del usuario",
+                () -> assertTrue(issuedAt >= before, "El token lleva la emisión en milisegundos"),
+                () -> assertTrue(tokens.decode(token, "usuarios").isEmpty())
+        );
+    }
+
+    private static VerifiedTokenCache.Entry entry(User user, long expiresAt) {
+        return new VerifiedTokenCache.Entry(user, null, 0, expiresAt);
+    }
+}
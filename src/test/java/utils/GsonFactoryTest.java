@@ -0,0 +1,99 @@
+package utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import common.Login;
+import common.Request;
+import common.Response;
+import model.Funko;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GsonFactoryTest {
+    private final Gson gson = GsonFactory.create();
+
+    @Test
+    void funkoAdapterWritesSameJsonAsReflection() {
+        var reflective = new GsonBuilder().registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
+        var funko = funko();
+
+        assertAll("Mismo JSON que con reflexión",
+                () -> assertEquals(reflective.toJson(funko), gson.toJson(funko)),
+                () -> assertEquals(funko, gson.fromJson(reflective.toJson(funko), Funko.class))
+        );
+    }
+
+    @Test
+    void responseContentIsWrittenOnceAndReadTyped() {
+        var response = new Response<>(Response.Status.OK, List.of(funko(), funko()), LocalDateTime.now().toString(), 9L);
+
+        var json = gson.toJson(response);
+        var read = gson.fromJson(json, Response.class);
+
+        assertAll("Contenido tipado sin doble codificación",
+                () -> assertFalse(json.contains("\\\""), "El contenido no debe ir escapado: " + json),
+                () -> assertEquals(response, read),
+                () -> assertInstanceOf(Funko.class, ((List<?>) read.content()).get(0))
+        );
+    }
+
+    @Test
+    void responseWithoutKindIsReadByShape() {
+        var read = gson.fromJson("{\"content\":42,\"status\":\"END\"}", Response.class);
+
+        assertAll("Tipo deducido de la forma del JSON",
+                () -> assertEquals(Response.Status.END, read.status()),
+                () -> assertEquals(42L, read.content())
+        );
+    }
+
+    @Test
+    void requestContentIsTypedByRequestType() {
+        var save = new Request<>(Request.Type.SAVE_FUNKO, funko(), "token", LocalDateTime.now().toString()).withId(1L);
+        var login = new Request<>(Request.Type.LOGIN, new Login("pepe", "pepe1234"), null, LocalDateTime.now().toString());
+
+        assertAll("Contenido según el tipo de petición",
+                () -> assertEquals(save, gson.fromJson(gson.toJson(save), Request.class)),
+                () -> assertEquals(login, gson.fromJson(gson.toJson(login), Request.class))
+        );
+    }
+
+    @Test
+    void requestAcceptsFunkoAsJsonString() {
+        var funko = funko();
+        var json = "{\"content\":" + gson.toJson(gson.toJson(funko)) + ",\"type\":\"UPDATE_FUNKO\"}";
+
+        var read = gson.fromJson(json, Request.class);
+
+        assertEquals(funko, read.content());
+    }
+
+    @Test
+    void sharedGsonUsesHandWrittenAdapters() {
+        var shared = GsonFactory.shared();
+        var login = new Login("pepe", "pepe1234", "binary", null);
+        var reflective = new Gson();
+
+        assertAll("Gson compartido sin reflexión",
+                () -> assertSame(shared, GsonFactory.shared()),
+                () -> assertInstanceOf(FunkoAdapter.class, shared.getAdapter(Funko.class)),
+                () -> assertInstanceOf(LoginAdapter.class, shared.getAdapter(Login.class)),
+                () -> assertInstanceOf(RequestAdapter.class, shared.getAdapter(Request.class)),
+                () -> assertInstanceOf(ResponseAdapter.class, shared.getAdapter(Response.class)),
+                () -> assertEquals(reflective.toJson(login), shared.toJson(login)),
+                () -> assertEquals(login, shared.fromJson(reflective.toJson(login), Login.class))
+        );
+    }
+
+    private static Funko funko() {
+        return Funko.builder().id(1L).cod(UUID.randomUUID()).nombre("Funko").modelo("MARVEL").precio(12.5)
+                .fecha_lanzamiento(LocalDate.parse("2021-01-01")).build();
+    }
+}
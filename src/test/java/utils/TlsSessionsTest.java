@@ -0,0 +1,85 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TlsSessionsTest {
+    private static final char[] PASSWORD = "1234567".toCharArray();
+
+    @Test
+    void reconnectingWithSameContextResumesSession() throws Exception {
+        var serverContext = serverContext();
+        TlsSessions.configure(serverContext.getServerSessionContext(), 100, 60);
+        List<Boolean> resumed = new CopyOnWriteArrayList<>();
+        try (var serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0)) {
+            serverSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
+            var acceptor = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        try (var socket = (SSLSocket) serverSocket.accept()) {
+                            long start = System.currentTimeMillis();
+                            socket.startHandshake();
+                            resumed.add(TlsSessions.isResumed(socket.getSession(), start));
+                            // El ticket de sesión viaja tras la negociación: el cliente lo recibe al leer
+                            socket.getOutputStream().write(1);
+                            socket.getOutputStream().flush();
+                            socket.getInputStream().read();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Cerramos el servidor al terminar la prueba
+                }
+            });
+            acceptor.start();
+
+            var clientContext = clientContext();
+            TlsSessions.configure(clientContext.getClientSessionContext(), 100, 60);
+            for (int i = 0; i < 2; i++) {
+                try (var socket = (SSLSocket) clientContext.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort())) {
+                    socket.setEnabledProtocols(new String[]{"TLSv1.3"});
+                    socket.startHandshake();
+                    assertEquals(1, socket.getInputStream().read());
+                }
+            }
+            acceptor.join(5000);
+        }
+
+        assertEquals(List.of(false, true), resumed, "Primera negociación completa y segunda reanudada");
+    }
+
+    private static SSLContext serverContext() throws Exception {
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/server_keystore.p12")) {
+            keyStore.load(in, PASSWORD);
+        }
+        var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static SSLContext clientContext() throws Exception {
+        var trustStore = KeyStore.getInstance("PKCS12");
+        try (var in = new FileInputStream("cert/client_keystore.p12")) {
+            trustStore.load(in, PASSWORD);
+        }
+        var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore);
+        var context = SSLContext.getInstance("TLSv1.3");
+        context.init(null, trustManagers.getTrustManagers(), null);
+        return context;
+    }
+}